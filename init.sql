@@ -39,9 +39,84 @@ create trigger checkStatusOnDelete before delete on expense
 for each row 
 execute function checkExpenseStatus();
 
+create function notifyEntityChanges()
+returns trigger
+language plpgsql
+as $$
+declare
+	changed bigint;
+	payload text;
+begin
+	-- One message per statement, so a bulk load or a set-based update doesn't queue one for every row.
+	if (TG_OP = 'DELETE') then
+		select count(*) into changed from old_rows;
+	else
+		select count(*) into changed from new_rows;
+	end if;
+	if (changed = 0) then
+		return null;
+	end if;
+	if (changed <= 100) then
+		if (TG_OP = 'INSERT') then
+			payload := json_build_object('table', TG_TABLE_NAME, 'op', TG_OP, 'count', changed,
+				'new', (select json_agg(n) from new_rows n))::text;
+		elsif (TG_OP = 'UPDATE') then
+			payload := json_build_object('table', TG_TABLE_NAME, 'op', TG_OP, 'count', changed,
+				'old', (select json_agg(o) from old_rows o),
+				'new', (select json_agg(n) from new_rows n))::text;
+		else
+			payload := json_build_object('table', TG_TABLE_NAME, 'op', TG_OP, 'count', changed,
+				'old', (select json_agg(o) from old_rows o))::text;
+		end if;
+	end if;
+	-- Too many rows to list, or too long for a notification: only say that the table changed.
+	if (payload is null or octet_length(payload) > 7900) then
+		payload := json_build_object('table', TG_TABLE_NAME, 'op', TG_OP, 'count', changed)::text;
+	end if;
+	perform pg_notify('entity_changes', payload);
+	return null;
+end; $$
+
+create trigger notifyExpenseInsert after insert on expense
+referencing new table as new_rows
+for each statement
+execute function notifyEntityChanges();
+
+create trigger notifyExpenseUpdate after update on expense
+referencing old table as old_rows new table as new_rows
+for each statement
+execute function notifyEntityChanges();
+
+create trigger notifyExpenseDelete after delete on expense
+referencing old table as old_rows
+for each statement
+execute function notifyEntityChanges();
+
+create trigger notifyEmployeeInsert after insert on employee
+referencing new table as new_rows
+for each statement
+execute function notifyEntityChanges();
+
+create trigger notifyEmployeeUpdate after update on employee
+referencing old table as old_rows new table as new_rows
+for each statement
+execute function notifyEntityChanges();
+
+create trigger notifyEmployeeDelete after delete on employee
+referencing old table as old_rows
+for each statement
+execute function notifyEntityChanges();
+
 drop trigger checkStatusOnUpdate on expense;
 drop trigger checkStatusOnDelete on expense;
 drop function checkexpensestatus;
+drop trigger notifyExpenseInsert on expense;
+drop trigger notifyExpenseUpdate on expense;
+drop trigger notifyExpenseDelete on expense;
+drop trigger notifyEmployeeInsert on employee;
+drop trigger notifyEmployeeUpdate on employee;
+drop trigger notifyEmployeeDelete on employee;
+drop function notifyEntityChanges;
 drop table employee;
 drop table expense;
 
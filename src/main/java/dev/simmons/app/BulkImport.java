@@ -0,0 +1,56 @@
+package dev.simmons.app;
+
+import dev.simmons.data.BulkLoadReport;
+import dev.simmons.data.BulkSources;
+import dev.simmons.data.PostgresORM;
+import dev.simmons.entities.Employee;
+import dev.simmons.entities.Expense;
+import dev.simmons.service.ORMExpensesService;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+
+/**
+ * Command line entry point for bulk loading a CSV or NDJSON file, e.g. from a nightly job:
+ * {@code java -cp app.jar dev.simmons.app.BulkImport expenses feed.csv}
+ */
+public class BulkImport {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !(args[0].equals("expenses") || args[0].equals("employees"))) {
+            System.err.println("Usage: BulkImport (expenses|employees) <file.csv|file.ndjson>");
+            System.exit(2);
+        }
+
+        PostgresORM<Employee> empORM = new PostgresORM<>(Employee.class);
+        PostgresORM<Expense> expORM = new PostgresORM<>(Expense.class);
+        ORMExpensesService service = new ORMExpensesService(empORM, expORM);
+        boolean csv = args[1].toLowerCase().endsWith(".csv");
+
+        BulkLoadReport report;
+        try (Reader reader = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            if (args[0].equals("expenses")) {
+                Iterator<Expense> rows = csv ? BulkSources.csv(reader, expORM.getPlan()) : BulkSources.ndjson(reader, Expense.class);
+                report = service.bulkLoadExpenses(rows);
+            } else {
+                Iterator<Employee> rows = csv ? BulkSources.csv(reader, empORM.getPlan()) : BulkSources.ndjson(reader, Employee.class);
+                report = service.bulkLoadEmployees(rows);
+            }
+        }
+
+        if (report == null) {
+            System.err.println("Bulk load failed; nothing was loaded. See the log for details.");
+            System.exit(1);
+        }
+        System.out.println(report);
+        for (BulkLoadReport.Reject reject : report.getRejects()) {
+            System.out.println("  rejected " + reject);
+        }
+        if (report.getRejected() > report.getRejects().size()) {
+            System.out.println("  ... and " + (report.getRejected() - report.getRejects().size()) + " more.");
+        }
+    }
+}
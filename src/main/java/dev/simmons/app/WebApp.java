@@ -1,24 +1,45 @@
 package dev.simmons.app;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
+import dev.simmons.data.BatchingORM;
+import dev.simmons.data.CachingORM;
+import dev.simmons.data.ChangeListener;
+import dev.simmons.data.DataWrapperORM;
+import dev.simmons.data.EntityChange;
+import dev.simmons.data.OffHeapExpenseStore;
 import dev.simmons.data.PostgresEmployeeDAO;
+import dev.simmons.data.CompareAndSetResult;
 import dev.simmons.data.PostgresExpenseDAO;
 import dev.simmons.data.PostgresORM;
 import dev.simmons.entities.Employee;
 import dev.simmons.entities.Expense;
 import dev.simmons.exceptions.*;
+import dev.simmons.service.CoalescingExpensesService;
 import dev.simmons.service.ExpensesService;
 import dev.simmons.service.ExpensesServiceImpl;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import dev.simmons.service.ORMExpensesService;
+import dev.simmons.utilities.Environment;
+import dev.simmons.utilities.cache.QueryResultCache;
 import dev.simmons.utilities.logging.Logger;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
 public class WebApp {
     private static final int port = 5000;
     private static ExpensesService service;
@@ -31,10 +52,49 @@ public class WebApp {
     private static final String expenses = "/expenses";
     private static final String employeeById = employees + index_path;
     private static final String expenseById = expenses + index_path;
+    private static final String batch = "/batch";
+    private static final String limit = "limit";
+    private static final String after = "after";
+    private static final String next = "next";
+    private static final int default_page_size = 100;
+    private static final int max_page_size = 1000;
+    private static final String cursor_prefix = "id:";
+    private static final String id_list = "ids";
+    private static final String missing = "missing";
+    // Employees hardly change, so they are kept much longer than expenses, whose status moves along.
+    private static CachingORM<Employee> employeeCache;
+    private static CachingORM<Expense> expenseCache;
+    private static QueryResultCache resultCache;
+    private static CoalescingExpensesService coalescing;
+    private static BatchingORM<Employee> employeeBatches;
+    private static BatchingORM<Expense> expenseBatches;
 
 
     public static void main(String[] args) {
-        service = new ORMExpensesService(new PostgresORM<>(Employee.class), new PostgresORM<>(Expense.class));
+        int cacheSize = Environment.getInt("ORM_CACHE_SIZE", 10000, 1);
+        int offHeapExpenses = Environment.getInt("ORM_OFF_HEAP_EXPENSES", 0, 0);
+        // Each entity type expires on its own schedule: employees rarely change, expenses move through approval.
+        int employeeTtlSeconds = Environment.getInt("ORM_EMPLOYEE_CACHE_TTL_SECONDS", 600, 1);
+        int expenseTtlSeconds = Environment.getInt("ORM_EXPENSE_CACHE_TTL_SECONDS", 30, 1);
+        // Only cache misses reach the batches, so the window is only paid on the way to the database.
+        int batchWindow = Environment.getInt("ORM_LOOKUP_WINDOW_MICROS", 200, 0);
+        int batchMax = Environment.getInt("ORM_LOOKUP_BATCH_MAX", 100, 1);
+        employeeBatches = new BatchingORM<>(new PostgresORM<>(Employee.class), batchWindow, batchMax);
+        expenseBatches = new BatchingORM<>(new PostgresORM<>(Expense.class), batchWindow, batchMax);
+        DataWrapperORM<Expense> expenseORM = expenseBatches;
+        OffHeapExpenseStore offHeap = null;
+        if (offHeapExpenses > 0) {
+            expenseORM = offHeap = new OffHeapExpenseStore(expenseORM, offHeapExpenses, expenseTtlSeconds);
+        }
+        employeeCache = new CachingORM<>(employeeBatches, cacheSize, employeeTtlSeconds * 1000L);
+        expenseCache = new CachingORM<>(expenseORM, cacheSize, expenseTtlSeconds * 1000L);
+        ORMExpensesService ormService = new ORMExpensesService(employeeCache, expenseCache, Environment.getInt("RESULT_CACHE_MB", 32, 1) * 1024L * 1024);
+        resultCache = ormService.getResultCache();
+        coalescing = new CoalescingExpensesService(ormService);
+        service = coalescing;
+        if (!"false".equalsIgnoreCase(System.getenv("CACHE_NOTIFICATIONS"))) {
+            listenForChanges(ormService, offHeap);
+        }
         //service = new ExpensesServiceImpl(new PostgresEmployeeDAO(), new PostgresExpenseDAO());
 
         Javalin server = Javalin.create();
@@ -46,6 +106,7 @@ public class WebApp {
          * +++++++++++++++++++++++++++
          */
         server.get("/", ctx -> ctx.status(200));
+        server.get("/cache", WebApp::handleCacheStats);
 
         /*
          * +++++++++++++++++++++++++++++
@@ -53,9 +114,13 @@ public class WebApp {
          * +++++++++++++++++++++++++++++
          */
         server.post(employees,          WebApp::handleCreateEmployee);
+        server.post(employees + batch,  WebApp::handleCreateEmployees);
         server.get(employees,           WebApp::handleGetEmployees);
         server.get(employeeById,        WebApp::handleGetEmployee);
+        // Before employeeById, which would otherwise take "batch" for an id.
+        server.put(employees + batch,   WebApp::handleUpsertEmployees);
         server.put(employeeById,        WebApp::handleReplaceEmployee);
+        server.patch(employeeById,      WebApp::handlePatchEmployee);
         server.delete(employeeById,     WebApp::handleDeleteEmployee);
 
         /*
@@ -64,11 +129,16 @@ public class WebApp {
          * ++++++++++++++++++++++++++++
          */
         server.post(expenses,                        WebApp::handleCreateExpense);
+        server.post(expenses + batch,                WebApp::handleCreateExpenses);
         server.post(employeeById + expenses,    WebApp::handleAssigningExpense);
         server.get(expenses,                         WebApp::handleGetExpenses);
         server.get(expenseById,                      WebApp::handleGetExpense);
         server.get(employeeById + expenses,     WebApp::handleGetEmployeeExpenses);
         server.put(expenseById,                      WebApp::handleReplaceExpense);
+        // Before expenseById, which would otherwise take "approve" and "deny" for an id.
+        server.patch(expenses + "/approve",          ctx -> handleBulkTransition(ctx, Expense.Status.APPROVED));
+        server.patch(expenses + "/deny",             ctx -> handleBulkTransition(ctx, Expense.Status.DENIED));
+        server.patch(expenseById,                    WebApp::handlePatchExpense);
         server.patch(expenseById + "/approve",  WebApp::handleExpenseApproval);
         server.patch(expenseById + "/deny",     WebApp::handleExpenseDenial);
         server.delete(expenseById,                   WebApp::handleExpenseDeletion);
@@ -95,6 +165,10 @@ public class WebApp {
            }
            ctx.result(response);
         });
+        server.exception(InvalidPageException.class, (ex, ctx) -> {
+            ctx.status(bad_request);
+            ctx.result(formatResponse(error, ex.getMessage()));
+        });
         server.exception(ExpenseNotPendingException.class, (ex, ctx) -> {
             ctx.status(bad_request);
             ctx.result(formatResponse(error, ex.getMessage()));
@@ -167,12 +241,7 @@ public class WebApp {
 
         String param = ctx.pathParam(index) + "";
         int id = Integer.parseInt(param);
-        Expense exp = service.getExpenseById(id);
-        if (exp == null) {
-            throw new NoSuchExpenseException(id);
-        }
-        exp.setStatus(Expense.Status.DENIED);
-        exp = service.replaceExpense(exp);
+        Expense exp = service.transitionStatus(id, Expense.Status.PENDING, Expense.Status.DENIED);
         if (exp == null) {
             status = internal_error;
             response = formatResponse(error, "Unable to deny expense" +
@@ -192,12 +261,7 @@ public class WebApp {
 
         String param = ctx.pathParam(index) + "";
         int id = Integer.parseInt(param);
-        Expense exp = service.getExpenseById(id);
-        if (exp == null) {
-            throw new NoSuchExpenseException(id);
-        }
-        exp.setStatus(Expense.Status.APPROVED);
-        exp = service.replaceExpense(exp);
+        Expense exp = service.transitionStatus(id, Expense.Status.PENDING, Expense.Status.APPROVED);
         if (exp == null) {
             status = internal_error;
             response = formatResponse(error, "Unable to approve expense" +
@@ -238,14 +302,81 @@ public class WebApp {
         ctx.result(response);
     }
 
+    // The body of PATCH /expenses/approve and /expenses/deny: either ids, or a filter on issuer and date.
+    private static final class BulkTransition {
+        int[] ids;
+        Integer issuer;
+        Long dateFrom;
+        Long dateTo;
+    }
+
+    /**
+     * Approve or deny many pending expenses with one set-based update. Responds with the outcome for each id:
+     * UPDATED, MISMATCH (the expense wasn't pending) or NOT_FOUND.
+     */
+    private static void handleBulkTransition(Context ctx, Expense.Status to) {
+        BulkTransition request = gson.fromJson(ctx.body(), BulkTransition.class);
+        if (request == null) {
+            ctx.status(bad_request);
+            ctx.result(formatResponse(error, "Unable to parse the provided expenses. Give 'ids', or an 'issuer' and/or 'dateFrom'/'dateTo'."));
+            return;
+        }
+
+        Map<Integer, CompareAndSetResult.Outcome> outcomes = request.ids != null
+                ? service.transitionStatuses(request.ids, Expense.Status.PENDING, to)
+                : service.transitionStatusesWhere(request.issuer, request.dateFrom, request.dateTo, Expense.Status.PENDING, to);
+        if (outcomes == null) {
+            ctx.status(internal_error);
+            ctx.result(formatResponse(error, "Unable to update the expenses."));
+            return;
+        }
+
+        ctx.status(ok);
+        ctx.result(formatResponse(result, gson.toJson(outcomes)));
+    }
+
+    private static void handlePatchExpense(Context ctx) {
+        int id = Integer.parseInt(ctx.pathParam(index));
+        Expense exp = service.getExpenseById(id);
+        if (exp == null) {
+            throw new NoSuchExpenseException(id);
+        }
+
+        JsonObject merged = gson.toJsonTree(exp).getAsJsonObject();
+        Set<String> changed;
+        try {
+            changed = applyPatch(merged, ctx.body());
+        } catch (IllegalArgumentException iae) {
+            ctx.status(bad_request);
+            ctx.result(formatResponse(error, iae.getMessage()));
+            return;
+        }
+
+        if (!changed.isEmpty()) {
+            exp = service.updateExpense(gson.fromJson(merged, Expense.class), changed);
+        }
+        if (exp == null) {
+            ctx.status(internal_error);
+            ctx.result(formatResponse(error, "Unable to update the expense matching (id: " + id + ")."));
+        } else {
+            ctx.status(ok);
+            ctx.result(formatResponse(result, gson.toJson(exp)));
+        }
+    }
+
     private static void handleGetEmployeeExpenses(Context ctx) {
         String response;
 
         String param = ctx.pathParam(index) + "";
         int id = Integer.parseInt(param);
-        List<Expense> expenses = service.getExpensesByEmployee(id);
-
-        response = formatResponse(result, gson.toJson(expenses));
+        Integer pageSize = pageSize(ctx);
+        if (pageSize == null) {
+            List<Expense> expenses = service.getExpensesByEmployee(id);
+            response = formatResponse(result, gson.toJson(expenses));
+        } else {
+            List<Expense> page = service.getExpensesByEmployeePage(id, pageAfter(ctx), pageSize + 1);
+            response = formatPage(page, pageSize, Expense::getId);
+        }
 
 
         ctx.status(ok);
@@ -274,25 +405,78 @@ public class WebApp {
     private static void handleGetExpenses(Context ctx) {
         String response;
 
-        List<Expense> expenses;
-        if (ctx.queryString() != null && !Objects.equals(ctx.queryString(), "")) {
+        if (ctx.queryParam(id_list) != null) {
+            handleGetExpensesByIds(ctx);
+            return;
+        }
+
+        Integer pageSize = pageSize(ctx);
+        Expense.Status filter = null;
+        if (ctx.queryString() != null && !Objects.equals(ctx.queryString(), "")
+                && (pageSize == null || ctx.queryParam(status) != null)) {
             String query = ctx.queryParam(status);
             try {
                 query = query.toUpperCase();
-                expenses = service.getExpensesByStatus(Expense.Status.valueOf(query));
+                filter = Expense.Status.valueOf(query);
             } catch (IllegalArgumentException | NullPointerException iae) {
                 throw new InvalidExpenseStatusException("Unable to parse the status from query string: " + ctx.queryString());
             }
-        } else {
-            expenses = service.getAllExpenses();
         }
 
-        response = formatResponse(result, gson.toJson(expenses));
+        if (pageSize != null) {
+            int afterId = pageAfter(ctx);
+            List<Expense> page = filter == null
+                    ? service.getExpensesPage(afterId, pageSize + 1)
+                    : service.getExpensesByStatusPage(filter, afterId, pageSize + 1);
+            response = formatPage(page, pageSize, Expense::getId);
+        } else {
+            List<Expense> expenses = filter == null ? service.getAllExpenses() : service.getExpensesByStatus(filter);
+            response = formatResponse(result, gson.toJson(expenses));
+        }
 
         ctx.status(ok);
         ctx.result(response);
     }
 
+    /**
+     * GET /expenses?ids=1,2,3 looks up every listed expense in one query. Ids without an expense are listed under
+     * "missing" instead of failing the request the way GET /expenses/{index} does.
+     */
+    private static void handleGetExpensesByIds(Context ctx) {
+        String list = ctx.queryParam(id_list);
+        int[] requested;
+        try {
+            requested = Arrays.stream(list.split(","))
+                    .map(String::trim)
+                    .filter(id -> !id.isEmpty())
+                    .mapToInt(Integer::parseInt)
+                    .toArray();
+        } catch (NumberFormatException nfe) {
+            ctx.status(bad_request);
+            ctx.result(formatResponse(error, "Unable to parse the ids provided: '" + list + "'. Use a comma separated list of numbers."));
+            return;
+        }
+        if (requested.length > max_page_size) {
+            ctx.status(bad_request);
+            ctx.result(formatResponse(error, "At most " + max_page_size + " ids can be looked up at once."));
+            return;
+        }
+
+        Map<Integer, Expense> found = service.getExpensesByIds(requested);
+        if (found == null) {
+            ctx.status(internal_error);
+            ctx.result(formatResponse(error, "Unable to get the expenses " + list + "."));
+            return;
+        }
+
+        String absent = Arrays.stream(requested).distinct()
+                .filter(id -> !found.containsKey(id))
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(", "));
+        ctx.status(ok);
+        ctx.result("{\"" + result + "\": \"" + gson.toJson(found.values()) + "\", \"" + missing + "\": \"[" + absent + "]\"}");
+    }
+
     private static void handleAssigningExpense(Context ctx) {
         String response;
         int status = ok;
@@ -305,17 +489,17 @@ public class WebApp {
         if (exp == null) {
             status = bad_request;
             response = formatResponse(error,"Unable to parse the provided expense. Check the syntax: '" + ctx.body() + "'.");
-        } else {
-            if (exp.getId() > 0) {
-                exp = service.getExpenseById(exp.getId());
-            }
-            exp.setIssuer(id);
-            Expense received;
-            if (exp.getId() > 0) {
-                received = service.replaceExpense(exp);
+        } else if (exp.getId() > 0) {
+            // Only the issuer of an existing expense changes; the rest of the body is ignored.
+            if (!service.assignExpense(exp.getId(), id)) {
+                status = internal_error;
+                response = formatResponse(error, "Unable to assign expense " + exp.getId() + " to employee " + id + ".");
             } else {
-                received = service.createExpense(exp);
+                response = formatResponse(error, "Expense, " + exp.getId() + ", successfully assigned to employee " + id + ".");
             }
+        } else {
+            exp.setIssuer(id);
+            Expense received = service.createExpense(exp);
             if (received == null) {
                 status = internal_error;
                 response = formatResponse(error, "Unable to assign the provided expense, " + exp + ", to employee " + id + ".");
@@ -352,6 +536,30 @@ public class WebApp {
         ctx.result(response);
     }
 
+    private static void handleCreateExpenses(Context ctx) {
+        String response;
+        int status = created;
+
+        Expense[] exps = gson.fromJson(ctx.body(), Expense[].class);
+        if (exps == null || exps.length == 0) {
+            status = bad_request;
+            response = formatResponse(error, "Unable to parse the provided expenses. " +
+                    "Check the syntax: '" + ctx.body() + "'.");
+            Logger.log(Logger.Level.WARNING, response);
+        } else {
+            List<Expense> received = service.createExpenses(Arrays.asList(exps));
+            if (received == null) {
+                status = internal_error;
+                response = formatResponse(error, "Unable to save the provided " + exps.length + " expenses. None were created.");
+            } else {
+                response = formatResponse(result, "Created " + received.size() + " new expenses, " + ids(received, Expense::getId) + ".");
+            }
+        }
+
+        ctx.status(status);
+        ctx.result(response);
+    }
+
     private static void handleDeleteEmployee(Context ctx) {
         String param = ctx.pathParam(index) + "";
         int id = Integer.parseInt(param);
@@ -391,6 +599,35 @@ public class WebApp {
         ctx.result(response);
     }
 
+    private static void handlePatchEmployee(Context ctx) {
+        int id = Integer.parseInt(ctx.pathParam(index));
+        Employee emp = service.getEmployeeById(id);
+        if (emp == null) {
+            throw new NoSuchEmployeeException(id);
+        }
+
+        JsonObject merged = gson.toJsonTree(emp).getAsJsonObject();
+        Set<String> changed;
+        try {
+            changed = applyPatch(merged, ctx.body());
+        } catch (IllegalArgumentException iae) {
+            ctx.status(bad_request);
+            ctx.result(formatResponse(error, iae.getMessage()));
+            return;
+        }
+
+        if (!changed.isEmpty()) {
+            emp = service.updateEmployee(gson.fromJson(merged, Employee.class), changed);
+        }
+        if (emp == null) {
+            ctx.status(internal_error);
+            ctx.result(formatResponse(error, "Unable to update the employee."));
+        } else {
+            ctx.status(ok);
+            ctx.result(formatResponse(result, gson.toJson(emp)));
+        }
+    }
+
     private static void handleGetEmployee(Context ctx) {
         String param = ctx.pathParam(index) + "";
         int id = Integer.parseInt(param);
@@ -403,10 +640,15 @@ public class WebApp {
     }
 
     private static void handleGetEmployees(Context ctx) {
-        List<Employee> employeeList = service.getAllEmployees();
         String response;
-
-        response = formatResponse(error, gson.toJson(employeeList));
+        Integer pageSize = pageSize(ctx);
+        if (pageSize == null) {
+            List<Employee> employeeList = service.getAllEmployees();
+            response = formatResponse(error, gson.toJson(employeeList));
+        } else {
+            List<Employee> page = service.getEmployeesPage(pageAfter(ctx), pageSize + 1);
+            response = formatPage(page, pageSize, Employee::getId);
+        }
 
         ctx.status(ok);
         ctx.result(response);
@@ -433,6 +675,204 @@ public class WebApp {
         ctx.result(response);
     }
 
+    private static void handleCreateEmployees(Context ctx) {
+        Employee[] emps = gson.fromJson(ctx.body(), Employee[].class);
+        int status = created;
+        String response;
+        if (emps == null || emps.length == 0) {
+            status = bad_request;
+            response = formatResponse(error, "Unable to parse the provided employees. Check the syntax: '" + ctx.body() + "'.");
+        } else {
+            List<Employee> received = service.createEmployees(Arrays.asList(emps));
+            if (received == null) {
+                status = internal_error;
+                response = formatResponse(error, "Unable to save the provided " + emps.length + " employees. None were created.");
+            } else {
+                response = formatResponse(result, "Created " + received.size() + " new employees, " + ids(received, Employee::getId) + ".");
+            }
+        }
+
+        ctx.status(status);
+        ctx.result(response);
+    }
+
+    /**
+     * PUT /employees/batch creates the employees without an id and replaces the ones with one, in one transaction.
+     */
+    private static void handleUpsertEmployees(Context ctx) {
+        Employee[] emps = gson.fromJson(ctx.body(), Employee[].class);
+        int status = ok;
+        String response;
+        if (emps == null || emps.length == 0) {
+            status = bad_request;
+            response = formatResponse(error, "Unable to parse the provided employees. Check the syntax: '" + ctx.body() + "'.");
+        } else {
+            List<Employee> received = service.upsertEmployees(Arrays.asList(emps));
+            if (received == null) {
+                status = internal_error;
+                response = formatResponse(error, "Unable to save the provided " + emps.length + " employees. None were saved.");
+            } else {
+                response = formatResponse(result, "Saved " + received.size() + " employees, " + ids(received, Employee::getId) + ".");
+            }
+        }
+
+        ctx.status(status);
+        ctx.result(response);
+    }
+
+    /**
+     * Apply a PATCH body to the JSON form of the stored entity.
+     * @param current The stored entity as JSON; it is changed in place to hold the patched values.
+     * @param body The request body, a JSON object with only the fields to change.
+     * @return The fields whose value actually changed, which are the only columns the update needs to write.
+     * @throws IllegalArgumentException If the body isn't a JSON object, or names the id or a field the entity doesn't have.
+     */
+    private static Set<String> applyPatch(JsonObject current, String body) {
+        JsonObject patch = gson.fromJson(body, JsonObject.class);
+        if (patch == null) {
+            throw new IllegalArgumentException("Unable to parse the provided changes. Check the syntax: '" + body + "'.");
+        }
+
+        Set<String> changed = new LinkedHashSet<>();
+        for (Map.Entry<String, JsonElement> field : patch.entrySet()) {
+            if (field.getKey().equals("id") || !current.has(field.getKey())) {
+                throw new IllegalArgumentException("Unable to change the field '" + field.getKey() + "'.");
+            }
+            if (!current.get(field.getKey()).equals(field.getValue())) {
+                current.add(field.getKey(), field.getValue());
+                changed.add(field.getKey());
+            }
+        }
+        return changed;
+    }
+
+    private static <T> String ids(List<T> entities, ToIntFunction<T> id) {
+        return entities.stream().map(e -> String.valueOf(id.applyAsInt(e))).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * The page size asked for with ?limit=, capped at max_page_size. An ?after= cursor alone gets the default size.
+     * @return The page size, or null when the request isn't paged and should get the whole list.
+     */
+    private static Integer pageSize(Context ctx) {
+        String size = ctx.queryParam(limit);
+        if (size == null) {
+            return ctx.queryParam(after) == null ? null : default_page_size;
+        }
+        try {
+            int parsed = Integer.parseInt(size);
+            if (parsed > 0) {
+                return Math.min(parsed, max_page_size);
+            }
+        } catch (NumberFormatException nfe) {
+            // Reported below.
+        }
+        throw new InvalidPageException("The limit must be a positive number, not '" + size + "'.");
+    }
+
+    private static int pageAfter(Context ctx) {
+        String cursor = ctx.queryParam(after);
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(cursor_prefix)) {
+                int id = Integer.parseInt(decoded.substring(cursor_prefix.length()));
+                if (id >= 0) {
+                    return id;
+                }
+            }
+        } catch (IllegalArgumentException iae) {
+            // Not base64, or not a number inside; both are reported below.
+        }
+        throw new InvalidPageException("Unrecognized page cursor '" + cursor + "'. Use the next value of a previous page.");
+    }
+
+    /**
+     * Format one page. The page is expected to hold one entity more than the page size when another page follows;
+     * that extra entity is dropped and the cursor for the next page points past the last one kept.
+     */
+    private static <T> String formatPage(List<T> page, int pageSize, ToIntFunction<T> id) {
+        String cursor = null;
+        if (page.size() > pageSize) {
+            page = page.subList(0, pageSize);
+            String last = cursor_prefix + id.applyAsInt(page.get(pageSize - 1));
+            cursor = Base64.getUrlEncoder().withoutPadding().encodeToString(last.getBytes(StandardCharsets.UTF_8));
+        }
+        return "{\"" + result + "\": \"" + gson.toJson(page) + "\", \"" + next + "\": " +
+                (cursor == null ? "null" : "\"" + cursor + "\"") + "}";
+    }
+
+    /**
+     * Keep the caches in step with writes made by other instances, reported by the notifyEntityChange trigger.
+     */
+    private static void listenForChanges(ORMExpensesService ormService, OffHeapExpenseStore offHeap) {
+        new ChangeListener()
+                .subscribe(employeeCache.getPlan(), new ChangeListener.Subscriber<Employee>() {
+                    @Override
+                    public void changed(List<EntityChange<Employee>> changes) {
+                        for (EntityChange<Employee> change : changes) {
+                            employeeCache.evict(change.getId());
+                        }
+                    }
+
+                    @Override
+                    public void missed() {
+                        employeeCache.invalidateAll();
+                    }
+                })
+                .subscribe(expenseCache.getPlan(), new ChangeListener.Subscriber<Expense>() {
+                    @Override
+                    public void changed(List<EntityChange<Expense>> changes) {
+                        List<Expense> touched = new ArrayList<>();
+                        for (EntityChange<Expense> change : changes) {
+                            if (offHeap != null) {
+                                offHeap.evict(change.getId());
+                            }
+                            expenseCache.evict(change.getId());
+                            touched.add(change.getBefore());
+                            touched.add(change.getAfter());
+                        }
+                        ormService.expensesChangedElsewhere(touched);
+                    }
+
+                    @Override
+                    public void missed() {
+                        if (offHeap != null) {
+                            offHeap.clear();
+                        }
+                        expenseCache.invalidateAll();
+                        resultCache.invalidateAll();
+                    }
+                })
+                .start();
+    }
+
+    private static void handleCacheStats(Context ctx) {
+        JsonObject stats = new JsonObject();
+        stats.add("employees", gson.toJsonTree(employeeCache.getStats()));
+        stats.add("expenses", gson.toJsonTree(expenseCache.getStats()));
+        JsonObject lists = new JsonObject();
+        lists.addProperty("hits", resultCache.getHits());
+        lists.addProperty("misses", resultCache.getMisses());
+        lists.addProperty("hitRatio", resultCache.getHitRatio());
+        lists.addProperty("evictions", resultCache.getEvictions());
+        lists.addProperty("stale", resultCache.getStale());
+        lists.addProperty("bytes", resultCache.getWeight());
+        stats.add("expenseLists", lists);
+        JsonObject reads = new JsonObject();
+        reads.addProperty("queries", coalescing.getReads().getLoads());
+        reads.addProperty("collapsed", coalescing.getReads().getCollapsed());
+        stats.add("coalescedReads", reads);
+        JsonObject lookups = new JsonObject();
+        lookups.addProperty("lookups", employeeBatches.getLookups() + expenseBatches.getLookups());
+        lookups.addProperty("queries", employeeBatches.getBatches() + expenseBatches.getBatches());
+        stats.add("batchedLookups", lookups);
+        ctx.status(ok);
+        ctx.result(stats.toString());
+    }
+
     private static String formatResponse(String label, String contents) {
         return "{\"" + label + "\": \"" + contents + "\"}";
     }
@@ -0,0 +1,320 @@
+package dev.simmons.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a {@code <Entity>_Mapping} class next to every @DBEntity class at compile time. It holds the entity's
+ * SQL as constants, a mapping plan built from method references and a straight-line mapper, so PostgresORM can
+ * pick them up instead of scanning the entity's fields with reflection when it starts.
+ * Entities the processor can't express are skipped with a note and keep using the runtime plan.
+ * <p>
+ * The annotations are matched by name so this package compiles on its own, ahead of the rest of the sources.
+ */
+@SupportedAnnotationTypes(EntityMappingProcessor.dbEntity)
+public class EntityMappingProcessor extends AbstractProcessor {
+    static final String dbEntity = "dev.simmons.annotation.DBEntity";
+    static final String dbField = "dev.simmons.annotation.DbField";
+    static final String primaryKey = "dev.simmons.annotation.PrimaryKey";
+    static final String foreignKey = "dev.simmons.annotation.ForeignKey";
+    static final String suffix = "_Mapping";
+
+    private static final class Field {
+        final String name;
+        final String column;
+        final String typeName;
+        final MapperSource.Kind kind;
+        final boolean key;
+        final AnnotationMirror foreignKey;
+
+        Field(String name, String column, String typeName, MapperSource.Kind kind, boolean key, AnnotationMirror foreignKey) {
+            this.name = name;
+            this.column = column;
+            this.typeName = typeName;
+            this.kind = kind;
+            this.key = key;
+            this.foreignKey = foreignKey;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    generate((TypeElement) element);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement entity) {
+        String skipped = unsupported(entity);
+        List<Field> fields = new ArrayList<>();
+        if (skipped == null) {
+            skipped = collectFields(entity, fields);
+        }
+        if (skipped != null) {
+            note(entity, "No compile-time mapping for " + entity.getQualifiedName() + ": " + skipped);
+            return;
+        }
+
+        String table = stringValue(annotation(entity, dbEntity), "value");
+        String name = entity.getQualifiedName().toString();
+        String pkg = processingEnv.getElementUtils().getPackageOf(entity).getQualifiedName().toString();
+        String className = entity.getSimpleName() + suffix;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                    pkg.isEmpty() ? className : pkg + "." + className, entity);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source(pkg, className, name, table, fields));
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write " + className + ": " + e.getMessage(), entity);
+        }
+    }
+
+    /**
+     * @return Why the entity class itself can't get a generated mapping, or null if it can.
+     */
+    private String unsupported(TypeElement entity) {
+        if (entity.getNestingKind() != NestingKind.TOP_LEVEL) {
+            return "only top-level classes are supported";
+        }
+        if (!entity.getModifiers().contains(Modifier.PUBLIC) || entity.getModifiers().contains(Modifier.ABSTRACT)) {
+            return "the class must be public and concrete";
+        }
+        if (!entity.getTypeParameters().isEmpty()) {
+            return "generic entities are not supported";
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return null;
+            }
+        }
+        return "no public no-arg constructor";
+    }
+
+    /**
+     * Collect the @DbField fields in declaration order, which is the order the runtime plan uses too.
+     * @return Why a field can't be mapped, or null if all of them can.
+     */
+    private String collectFields(TypeElement entity, List<Field> fields) {
+        boolean hasKey = false;
+        for (VariableElement field : ElementFilter.fieldsIn(entity.getEnclosedElements())) {
+            AnnotationMirror column = annotation(field, dbField);
+            if (column == null || field.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+
+            String name = field.getSimpleName().toString();
+            TypeMirror type = field.asType();
+            String typeName;
+            boolean isEnum = false;
+            if (type.getKind().isPrimitive()) {
+                typeName = type.toString();
+            } else if (type.getKind() == TypeKind.DECLARED) {
+                TypeElement typeElement = (TypeElement) ((DeclaredType) type).asElement();
+                typeName = typeElement.getQualifiedName().toString();
+                isEnum = typeElement.getKind() == ElementKind.ENUM;
+            } else {
+                return "unsupported type for field " + name;
+            }
+
+            MapperSource.Kind kind = MapperSource.Kind.of(typeName, isEnum);
+            if (kind == null) {
+                return "unsupported type for field " + name;
+            }
+            if (!hasAccessors(entity, name, type)) {
+                return "no public getter and setter for field " + name;
+            }
+
+            boolean key = annotation(field, primaryKey) != null;
+            hasKey |= key;
+            fields.add(new Field(name, stringValue(column, "name"), typeName, kind, key, annotation(field, foreignKey)));
+        }
+        return hasKey ? null : "no @PrimaryKey field";
+    }
+
+    private boolean hasAccessors(TypeElement entity, String fieldName, TypeMirror type) {
+        String capitalized = MapperSource.capitalize(fieldName);
+        boolean getter = false;
+        boolean setter = false;
+        for (ExecutableElement method : ElementFilter.methodsIn(entity.getEnclosedElements())) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+                continue;
+            }
+            String name = method.getSimpleName().toString();
+            if (name.equals("get" + capitalized) && method.getParameters().isEmpty()
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), type)) {
+                getter = true;
+            } else if (name.equals("set" + capitalized) && method.getParameters().size() == 1
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), type)) {
+                setter = true;
+            }
+        }
+        return getter && setter;
+    }
+
+    private static String source(String pkg, String className, String entity, String table, List<Field> fields) {
+        List<String> columnNames = new ArrayList<>();
+        List<String> valueColumnNames = new ArrayList<>();
+        List<MapperSource.Column> columns = new ArrayList<>();
+        List<MapperSource.Column> valueColumns = new ArrayList<>();
+        MapperSource.Column key = null;
+        String keyColumn = null;
+        for (Field field : fields) {
+            MapperSource.Column column = new MapperSource.Column(field.name, field.typeName, field.kind, columns.size() + 1);
+            columns.add(column);
+            columnNames.add(field.column);
+            if (field.key) {
+                key = column;
+                keyColumn = field.column;
+            } else {
+                valueColumns.add(column);
+                valueColumnNames.add(field.column);
+            }
+        }
+        EntitySql sql = new EntitySql(table, keyColumn, columnNames, valueColumnNames);
+
+        StringBuilder source = new StringBuilder();
+        if (!pkg.isEmpty()) {
+            source.append("package ").append(pkg).append(";\n\n");
+        }
+        source.append("/**\n * Generated from the annotations on {@link ").append(entity).append("}; do not edit.\n */\n");
+        source.append("public final class ").append(className)
+                .append(" implements dev.simmons.data.GeneratedMapping<").append(entity).append("> {\n");
+
+        constant(source, "TABLE", table);
+        for (Field field : fields) {
+            constant(source, "COLUMN_" + constantName(field.name), field.column);
+        }
+        for (Field field : fields) {
+            if (field.foreignKey != null) {
+                constant(source, "FK_" + constantName(field.name) + "_TABLE", stringValue(field.foreignKey, "references"));
+                constant(source, "FK_" + constantName(field.name) + "_COLUMN", stringValue(field.foreignKey, "column"));
+            }
+        }
+        constant(source, "SELECT_LIST", sql.selectList);
+        constant(source, "CREATE_SQL", sql.create);
+        constant(source, "GET_BY_ID_SQL", sql.getById);
+        constant(source, "GET_BY_IDS_SQL", sql.getByIds);
+        constant(source, "GET_ALL_SQL", sql.getAll);
+        constant(source, "UPDATE_SQL", sql.update);
+        constant(source, "UPSERT_SQL", sql.upsert);
+        constant(source, "DELETE_SQL", sql.delete);
+        constant(source, "PAGE_SQL", sql.page);
+        source.append("\n");
+
+        source.append("    private static final dev.simmons.data.EntityPlan<").append(entity).append("> PLAN =\n");
+        source.append("            dev.simmons.data.EntityPlan.builder(").append(entity).append(".class, TABLE, ")
+                .append(entity).append("::new)\n");
+        for (Field field : fields) {
+            String capitalized = MapperSource.capitalize(field.name);
+            String cast = field.typeName.equals(field.kind.primitive()) ? "java.lang." + field.kind.boxed() : field.typeName;
+            source.append("                    .").append(field.key ? "key" : "column").append("(\"").append(field.name)
+                    .append("\", COLUMN_").append(constantName(field.name)).append(", ").append(field.typeName).append(".class, ")
+                    .append(entity).append("::get").append(capitalized).append(", ")
+                    .append("(entity, value) -> entity.set").append(capitalized).append("((").append(cast).append(") value))\n");
+        }
+        source.append("                    .build();\n");
+        source.append("    private static final Mapper MAPPER = new Mapper();\n\n");
+
+        method(source, "dev.simmons.data.EntityPlan<" + entity + ">", "plan", "PLAN");
+        method(source, "dev.simmons.data.EntityMapper<" + entity + ">", "mapper", "MAPPER");
+        method(source, "String", "createSql", "CREATE_SQL");
+        method(source, "String", "getByIdSql", "GET_BY_ID_SQL");
+        method(source, "String", "getByIdsSql", "GET_BY_IDS_SQL");
+        method(source, "String", "getAllSql", "GET_ALL_SQL");
+        method(source, "String", "updateSql", "UPDATE_SQL");
+        method(source, "String", "upsertSql", "UPSERT_SQL");
+        method(source, "String", "deleteSql", "DELETE_SQL");
+        method(source, "String", "pageSql", "PAGE_SQL");
+
+        source.append(MapperSource.mapperClass("private static final class", "Mapper", entity, columns, valueColumns, key, "    "));
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static void constant(StringBuilder source, String name, String value) {
+        source.append("    public static final String ").append(name).append(" = \"").append(escape(value)).append("\";\n");
+    }
+
+    private static void method(StringBuilder source, String type, String name, String value) {
+        source.append("    @Override\n");
+        source.append("    public ").append(type).append(" ").append(name).append("() {\n");
+        source.append("        return ").append(value).append(";\n");
+        source.append("    }\n\n");
+    }
+
+    // firstName -> FIRST_NAME
+    static String constantName(String fieldName) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < fieldName.length(); i++) {
+            char c = fieldName.charAt(i);
+            if (Character.isUpperCase(c) && i > 0) {
+                name.append('_');
+            }
+            name.append(Character.toUpperCase(c));
+        }
+        return name.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static AnnotationMirror annotation(Element element, String type) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(type)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static String stringValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return String.valueOf(entry.getValue().getValue());
+            }
+        }
+        return "";
+    }
+
+    private void note(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message, element);
+    }
+}
@@ -0,0 +1,58 @@
+package dev.simmons.codegen;
+
+import java.util.List;
+
+/**
+ * The CRUD statements for an entity's table. Shared by PostgresORM and the annotation processor,
+ * so SQL generated at compile time matches what the ORM would build at runtime.
+ */
+public final class EntitySql {
+    public final String selectList;
+    public final String create;
+    public final String getById;
+    public final String getByIds;
+    public final String getAll;
+    public final String update;
+    public final String upsert;
+    public final String delete;
+    public final String page;
+
+    /**
+     * @param table The table name.
+     * @param key The primary key column.
+     * @param columns Every mapped column, in select-list order.
+     * @param valueColumns The non-key columns, in insert/update parameter order.
+     */
+    public EntitySql(String table, String key, List<String> columns, List<String> valueColumns) {
+        selectList = String.join(", ", columns);
+        StringBuilder insertValues = new StringBuilder();
+        StringBuilder updateColumns = new StringBuilder();
+        StringBuilder excludedColumns = new StringBuilder();
+        for (String column : valueColumns) {
+            if (insertValues.length() > 0) {
+                insertValues.append(", ");
+                updateColumns.append(", ");
+                excludedColumns.append(", ");
+            }
+            insertValues.append("?");
+            updateColumns.append(column).append(" = ?");
+            excludedColumns.append(column).append(" = excluded.").append(column);
+        }
+
+        // Explicit select lists keep the column order fixed, so rows are read by position instead of by name.
+        create = "insert into " + table + " (" + String.join(", ", valueColumns) + ") values (" + insertValues + ");";
+        getById = "select " + selectList + " from " + table + " where " + key + " = ?;";
+        // One array parameter for any number of ids, so a single prepared statement serves every lookup.
+        getByIds = "select " + selectList + " from " + table + " where " + key + " = any(?);";
+        getAll = "select " + selectList + " from " + table + ";";
+        update = "update " + table + " set " + updateColumns + " where " + key + " = ?;";
+        // The key goes last, after the values, so it binds at the same index as in update. A key of 0 means a new
+        // row and takes the next value of the key's sequence, as a plain insert would.
+        upsert = "insert into " + table + " (" + String.join(", ", valueColumns) + ", " + key + ") values (" + insertValues +
+                ", coalesce(nullif(?, 0), nextval(pg_get_serial_sequence('" + table + "', '" + key + "')))) " +
+                "on conflict (" + key + ") do update set " + excludedColumns + ";";
+        delete = "delete from " + table + " where " + key + " = ?;";
+        // Keyset pagination: seeking past the last key seen costs the same however deep the page is.
+        page = "select " + selectList + " from " + table + " where " + key + " > ? order by " + key + " limit ?;";
+    }
+}
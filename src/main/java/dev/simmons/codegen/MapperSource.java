@@ -0,0 +1,170 @@
+package dev.simmons.codegen;
+
+import java.util.List;
+
+/**
+ * Writes the Java source of a straight-line EntityMapper. Used both by the annotation processor at compile time
+ * and by the ORM's runtime generator, so the two produce the same code.
+ */
+public final class MapperSource {
+    /**
+     * The column types a generated mapper knows how to read and bind.
+     */
+    public enum Kind {
+        LONG("long", "Long", -5),
+        INT("int", "Integer", 4),
+        FLOAT("float", "Float", 6),
+        STRING(null, "String", 12),
+        ENUM(null, null, 12);
+
+        private final String primitive;
+        private final String boxed;
+        private final int sqlType;
+
+        Kind(String primitive, String boxed, int sqlType) {
+            this.primitive = primitive;
+            this.boxed = boxed;
+            this.sqlType = sqlType;
+        }
+
+        /**
+         * @return The matching kind, or null when generated mappers can't handle the type.
+         */
+        public static Kind of(String typeName, boolean isEnum) {
+            if (isEnum) {
+                return ENUM;
+            }
+            for (Kind kind : values()) {
+                if (typeName.equals(kind.primitive) || ("java.lang." + kind.boxed).equals(typeName)) {
+                    return kind;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return The primitive keyword of the type, or null for reference-only kinds.
+         */
+        public String primitive() {
+            return primitive;
+        }
+
+        /**
+         * @return The simple name of the boxed type in java.lang, or null for enums.
+         */
+        public String boxed() {
+            return boxed;
+        }
+
+        private String accessor() {
+            return primitive == null ? "String" : capitalize(primitive);
+        }
+    }
+
+    /**
+     * One mapped field, as seen by the source writer.
+     */
+    public static final class Column {
+        final String fieldName;
+        final String typeName;
+        final Kind kind;
+        final boolean primitive;
+        final int selectIndex;
+
+        /**
+         * @param fieldName The Java field name, used to derive the getter and setter names.
+         * @param typeName The field's type as it should appear in source (canonical name or primitive keyword).
+         * @param kind How the column is read and bound.
+         * @param selectIndex The 1-based position of the column in the entity's select list.
+         */
+        public Column(String fieldName, String typeName, Kind kind, int selectIndex) {
+            this.fieldName = fieldName;
+            this.typeName = typeName;
+            this.kind = kind;
+            this.primitive = typeName.equals(kind.primitive);
+            this.selectIndex = selectIndex;
+        }
+    }
+
+    private MapperSource() {
+
+    }
+
+    /**
+     * Write a mapper class.
+     * @param declaration Everything before the class name, e.g. "public final class" or "private static final class".
+     * @param className The simple name of the mapper class.
+     * @param entity The entity's canonical name.
+     * @param columns Every mapped column, in select-list order.
+     * @param valueColumns The non-key columns, in insert/update parameter order.
+     * @param key The primary key column.
+     * @param indent Prefix for every line, for nesting the class inside another.
+     * @return The class source.
+     */
+    public static String mapperClass(String declaration, String className, String entity, List<Column> columns,
+                                     List<Column> valueColumns, Column key, String indent) {
+        StringBuilder source = new StringBuilder();
+        source.append(indent).append(declaration).append(" ").append(className)
+                .append(" implements dev.simmons.data.EntityMapper<").append(entity).append("> {\n");
+
+        source.append(indent).append("    @Override\n");
+        source.append(indent).append("    public ").append(entity).append(" map(java.sql.ResultSet rs) throws java.sql.SQLException {\n");
+        source.append(indent).append("        ").append(entity).append(" entity = new ").append(entity).append("();\n");
+        for (Column column : columns) {
+            source.append(indent).append("        ").append(read(column)).append("\n");
+        }
+        source.append(indent).append("        return entity;\n");
+        source.append(indent).append("    }\n\n");
+
+        source.append(indent).append("    @Override\n");
+        source.append(indent).append("    public void bindValues(java.sql.PreparedStatement statement, ").append(entity)
+                .append(" entity) throws java.sql.SQLException {\n");
+        int index = 1;
+        for (Column column : valueColumns) {
+            source.append(indent).append("        ").append(bind(column, String.valueOf(index++))).append("\n");
+        }
+        source.append(indent).append("    }\n\n");
+
+        source.append(indent).append("    @Override\n");
+        source.append(indent).append("    public void bindKey(java.sql.PreparedStatement statement, int index, ").append(entity)
+                .append(" entity) throws java.sql.SQLException {\n");
+        source.append(indent).append("        ").append(bind(key, "index")).append("\n");
+        source.append(indent).append("    }\n");
+
+        source.append(indent).append("}\n");
+        return source.toString();
+    }
+
+    private static String read(Column column) {
+        String setter = "entity.set" + capitalize(column.fieldName);
+        String get = "rs.get" + column.kind.accessor() + "(" + column.selectIndex + ")";
+        switch (column.kind) {
+            case ENUM:
+                return "{ String v = " + get + "; " + setter + "(v == null ? null : " + column.typeName + ".valueOf(v)); }";
+            case STRING:
+                return setter + "(" + get + ");";
+            default:
+                if (column.primitive) {
+                    return setter + "(" + get + ");";
+                }
+                return "{ " + column.kind.primitive + " v = " + get + "; " +
+                        setter + "(rs.wasNull() ? null : " + column.kind.boxed + ".valueOf(v)); }";
+        }
+    }
+
+    private static String bind(Column column, String index) {
+        String getter = "entity.get" + capitalize(column.fieldName) + "()";
+        String set = "statement.set" + column.kind.accessor();
+        if (column.primitive) {
+            return set + "(" + index + ", " + getter + ");";
+        }
+        String value = column.kind == Kind.ENUM ? "v.name()" : "v";
+        return "{ " + column.typeName + " v = " + getter + "; " +
+                "if (v == null) { statement.setNull(" + index + ", " + column.kind.sqlType + "); } " +
+                "else { " + set + "(" + index + ", " + value + "); } }";
+    }
+
+    public static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
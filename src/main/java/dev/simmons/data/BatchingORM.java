@@ -0,0 +1,183 @@
+package dev.simmons.data;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gathers getEntityById calls made by different threads within a short window into one getEntitiesByIds query.
+ * The first caller of a batch waits out the window, then runs the query for everyone who joined; a batch that
+ * reaches its key limit first is run at once by the caller that filled it. Each caller's future is completed
+ * from the combined result, and an id the query didn't find fails only its own callers.
+ * <p>
+ * Lookups inside a {@link UnitOfWork} aren't batched, as they have to run on the unit's connection.
+ * @param <T> The entity type.
+ */
+public class BatchingORM<T> extends ForwardingORM<T> {
+    private final EntityPlan<T> plan;
+    private final long windowNanos;
+    private final int maxKeys;
+    private final Object lock = new Object();
+    private Batch<T> open; // Guarded by lock.
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * @param delegate The ORM to run the combined lookups through.
+     * @param windowMicros How long a batch stays open for more lookups after its first; 0 turns batching off.
+     * @param maxKeys The most ids in one batch; a full batch runs without waiting out the window.
+     */
+    public BatchingORM(DataWrapperORM<T> delegate, long windowMicros, int maxKeys) {
+        super(delegate);
+        if (windowMicros < 0 || maxKeys <= 0) {
+            throw new IllegalArgumentException("The batching window can't be negative, and batches need room for a key.");
+        }
+        this.plan = delegate.getPlan();
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxKeys = maxKeys;
+    }
+
+    @Override
+    public T getEntityById(int id) throws SQLException {
+        if (windowNanos == 0 || UnitOfWork.isActive()) {
+            return delegate.getEntityById(id);
+        }
+        lookups.increment();
+
+        Lookup<T> lookup = new Lookup<>(id);
+        Batch<T> batch;
+        boolean first;
+        boolean full;
+        synchronized (lock) {
+            first = open == null;
+            if (first) {
+                open = new Batch<>();
+            }
+            batch = open;
+            batch.lookups.add(lookup);
+            full = batch.lookups.size() >= maxKeys;
+            if (full) {
+                open = null;
+            }
+        }
+
+        if (full) {
+            dispatch(batch);
+        } else if (first) {
+            // Done early if someone else fills the batch and runs it meanwhile.
+            try {
+                lookup.result.get(windowNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException te) {
+                closeAndDispatch(batch);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                closeAndDispatch(batch);
+            } catch (ExecutionException ee) {
+                // Rethrown by await.
+            }
+        }
+        return await(lookup.result);
+    }
+
+    /**
+     * @return How many lookups went through batches.
+     */
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return How many batch queries were run.
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    private void closeAndDispatch(Batch<T> batch) {
+        synchronized (lock) {
+            if (open != batch) {
+                return;
+            }
+            open = null;
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(Batch<T> batch) {
+        batches.increment();
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (Lookup<T> lookup : batch.lookups) {
+            ids.add(lookup.id);
+        }
+        int[] keys = new int[ids.size()];
+        int i = 0;
+        for (int id : ids) {
+            keys[i++] = id;
+        }
+
+        Map<Integer, T> found;
+        try {
+            found = delegate.getEntitiesByIds(keys);
+        } catch (SQLException | RuntimeException e) {
+            for (Lookup<T> lookup : batch.lookups) {
+                lookup.result.completeExceptionally(e);
+            }
+            return;
+        }
+
+        Set<Integer> handedOut = new LinkedHashSet<>();
+        for (Lookup<T> lookup : batch.lookups) {
+            T entity = found.get(lookup.id);
+            if (entity == null) {
+                // Same state the ORM reports for a single lookup that finds nothing.
+                lookup.result.completeExceptionally(new SQLException("No " + plan.getTable().toUpperCase()
+                        + " matching (id: " + lookup.id + ").", "24000"));
+            } else {
+                // Callers asking for the same id each get their own copy.
+                lookup.result.complete(handedOut.add(lookup.id) ? entity : plan.copy(entity));
+            }
+        }
+    }
+
+    /**
+     * Wait for a lookup. A failure is rethrown as a new exception, so each caller's stack trace shows its own call.
+     */
+    private static <T> T await(CompletableFuture<T> result) throws SQLException {
+        try {
+            return result.join();
+        } catch (CompletionException ce) {
+            Throwable cause = ce.getCause();
+            if (cause instanceof SQLException) {
+                SQLException se = (SQLException) cause;
+                throw new SQLException(se.getMessage(), se.getSQLState(), se);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw ce;
+        }
+    }
+
+    private static final class Batch<T> {
+        private final List<Lookup<T>> lookups = new ArrayList<>();
+    }
+
+    private static final class Lookup<T> {
+        private final int id;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Lookup(int id) {
+            this.id = id;
+        }
+    }
+}
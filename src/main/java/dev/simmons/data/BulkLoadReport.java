@@ -0,0 +1,85 @@
+package dev.simmons.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a bulk load: how many rows made it in, which were rejected and why, and how fast it went.
+ */
+public final class BulkLoadReport {
+    /**
+     * A row that was left out of the load.
+     */
+    public static final class Reject {
+        private final long row;
+        private final String reason;
+
+        Reject(long row, String reason) {
+            this.row = row;
+            this.reason = reason;
+        }
+
+        /**
+         * @return The 1-based position of the row in the input.
+         */
+        public long getRow() {
+            return row;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "row " + row + ": " + reason;
+        }
+    }
+
+    private final long loaded;
+    private final long rejected;
+    private final List<Reject> rejects;
+    private final long elapsedNanos;
+
+    BulkLoadReport(long loaded, long rejected, List<Reject> rejects, long elapsedNanos) {
+        this.loaded = loaded;
+        this.rejected = rejected;
+        this.rejects = Collections.unmodifiableList(rejects);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return How many rows were rejected, which can be more than {@link #getRejects()} holds.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return The rejected rows, up to the loader's limit on how many it keeps.
+     */
+    public List<Reject> getRejects() {
+        return rejects;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * @return Loaded rows per second of wall-clock time, including reading and validating the input.
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : loaded * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Loaded " + loaded + " rows, rejected " + rejected + ", in " + getElapsedMillis() + " ms ("
+                + String.format("%.0f", getRowsPerSecond()) + " rows/s).";
+    }
+}
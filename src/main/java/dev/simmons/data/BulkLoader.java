@@ -0,0 +1,163 @@
+package dev.simmons.data;
+
+import dev.simmons.utilities.logging.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Loads entities with PostgreSQL's COPY, which is far faster than inserting them even in batches.
+ * Rows are validated, written in COPY's text format and streamed to the server in chunks as they are read,
+ * so the input is never held in memory. Rows failing validation are reported and skipped; an error from the
+ * server, such as a foreign key violation, aborts the whole load since COPY is a single statement.
+ * Generated ids are not read back.
+ * @param <T> The entity type.
+ */
+public class BulkLoader<T> {
+    private static final int flushSize = 64 * 1024;
+
+    private final EntityPlan<T> plan;
+    private final Consumer<T> validator;
+    private final String copySql;
+    private int maxRejects = 1000;
+
+    /**
+     * @param plan The entity's mapping plan.
+     * @param validator Checks each row before it is sent, throwing a RuntimeException to reject it.
+     */
+    public BulkLoader(EntityPlan<T> plan, Consumer<T> validator) {
+        this.plan = plan;
+        this.validator = validator;
+
+        StringBuilder columns = new StringBuilder();
+        for (ColumnMapping<T> column : plan.getValueColumns()) {
+            if (columns.length() > 0) {
+                columns.append(", ");
+            }
+            columns.append(column.getColumn());
+        }
+        copySql = "copy " + plan.getTable() + " (" + columns + ") from stdin";
+    }
+
+    /**
+     * @param maxRejects The most rejected rows kept in the report. Rejects beyond that are only counted.
+     */
+    public void setMaxRejects(int maxRejects) {
+        this.maxRejects = maxRejects;
+    }
+
+    /**
+     * Stream the rows into the entity's table.
+     * @param rows The rows to load. Exceptions thrown while reading a row reject that row and move on to the next.
+     * @return What was loaded and rejected.
+     * @throws SQLException If the server refuses the data; nothing is loaded then.
+     */
+    public BulkLoadReport load(Iterator<T> rows) throws SQLException {
+        long start = System.nanoTime();
+        List<BulkLoadReport.Reject> rejects = new ArrayList<>();
+        long rejected = 0;
+        long loaded;
+
+        try (Connection conn = UnitOfWork.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("Unable to connect for a bulk load of " + plan.getTable() + ".", "08001");
+            }
+            CopyIn copy = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql);
+            try {
+                StringBuilder buffer = new StringBuilder(flushSize + 256);
+                long row = 0;
+                while (rows.hasNext()) {
+                    row++;
+                    try {
+                        T entity = rows.next();
+                        validator.accept(entity);
+                        appendRow(buffer, entity);
+                    } catch (RuntimeException e) {
+                        rejected++;
+                        if (rejects.size() < maxRejects) {
+                            rejects.add(new BulkLoadReport.Reject(row, e.getMessage() == null ? e.toString() : e.getMessage()));
+                        }
+                        continue;
+                    }
+
+                    if (buffer.length() >= flushSize) {
+                        write(copy, buffer);
+                    }
+                }
+                write(copy, buffer);
+                loaded = copy.endCopy();
+            } finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+        }
+
+        BulkLoadReport report = new BulkLoadReport(loaded, rejected, rejects, System.nanoTime() - start);
+        Logger.log(Logger.Level.INFO, "Bulk load into " + plan.getTable().toUpperCase() + ": " + report);
+        return report;
+    }
+
+    private void appendRow(StringBuilder buffer, T entity) {
+        // Format the whole row first so a failing value doesn't leave half a row in the buffer.
+        int mark = buffer.length();
+        try {
+            boolean first = true;
+            for (ColumnMapping<T> column : plan.getValueColumns()) {
+                if (!first) {
+                    buffer.append('\t');
+                }
+                first = false;
+                Object value = column.get(entity);
+                if (value == null) {
+                    buffer.append("\\N");
+                } else {
+                    escape(buffer, column.getCodec().format(value));
+                }
+            }
+            buffer.append('\n');
+        } catch (RuntimeException e) {
+            buffer.setLength(mark);
+            throw e;
+        }
+    }
+
+    // COPY text format: backslash, tab, newline and carriage return must be escaped.
+    private static void escape(StringBuilder buffer, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                default:
+                    buffer.append(c);
+            }
+        }
+    }
+
+    private static void write(CopyIn copy, StringBuilder buffer) throws SQLException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+}
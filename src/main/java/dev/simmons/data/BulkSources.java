@@ -0,0 +1,184 @@
+package dev.simmons.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily parsed inputs for a {@link BulkLoader}, read one line at a time.
+ * A line that fails to parse throws from {@code next()} without stopping the iteration, so the loader can
+ * reject it and carry on with the following lines.
+ */
+public final class BulkSources {
+    private static final Gson gson = new Gson();
+
+    private BulkSources() {
+
+    }
+
+    /**
+     * Read newline-delimited JSON, one entity object per line, as the REST endpoints accept them.
+     * @param reader The input; closed once it is exhausted.
+     * @param type The entity type.
+     */
+    public static <T> Iterator<T> ndjson(Reader reader, Class<T> type) {
+        return new LineIterator<T>(reader) {
+            @Override
+            T parse(String line) {
+                T entity = gson.fromJson(line, type);
+                if (entity == null) {
+                    throw new IllegalArgumentException("Empty row.");
+                }
+                return entity;
+            }
+        };
+    }
+
+    /**
+     * Read comma separated values with a header line. Headers are matched against the entity's field names
+     * or column names, ignoring case; other columns are ignored. Values may be double quoted, with "" for a quote,
+     * but can't span lines.
+     * @param reader The input; closed once it is exhausted.
+     * @param plan The entity's mapping plan.
+     */
+    public static <T> Iterator<T> csv(Reader reader, EntityPlan<T> plan) {
+        Map<String, String> fieldsByHeader = new HashMap<>();
+        for (ColumnMapping<T> column : plan.getColumns()) {
+            fieldsByHeader.put(column.getFieldName().toLowerCase(), column.getFieldName());
+            fieldsByHeader.put(column.getColumn().toLowerCase(), column.getFieldName());
+        }
+
+        return new LineIterator<T>(reader) {
+            private String[] fields;
+
+            @Override
+            boolean header(String line) {
+                List<String> headers = split(line);
+                fields = new String[headers.size()];
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = fieldsByHeader.get(headers.get(i).trim().toLowerCase());
+                }
+                return true;
+            }
+
+            @Override
+            T parse(String line) {
+                List<String> values = split(line);
+                if (values.size() != fields.length) {
+                    throw new IllegalArgumentException("Expected " + fields.length + " values but got " + values.size() + ".");
+                }
+                // Let Gson do the conversions, exactly as for a JSON body.
+                JsonObject object = new JsonObject();
+                for (int i = 0; i < fields.length; i++) {
+                    if (fields[i] != null && !values.get(i).isEmpty()) {
+                        object.addProperty(fields[i], values.get(i));
+                    }
+                }
+                return gson.fromJson(object, plan.getType());
+            }
+        };
+    }
+
+    static List<String> split(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted value.");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private abstract static class LineIterator<T> implements Iterator<T> {
+        private final BufferedReader reader;
+        private String next;
+        private boolean started;
+        private boolean done;
+
+        LineIterator(Reader reader) {
+            this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        }
+
+        /**
+         * Handle the first non-blank line.
+         * @return True if it was a header and not data.
+         */
+        boolean header(String line) {
+            return false;
+        }
+
+        abstract T parse(String line);
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                next = readLine();
+                if (!started && next != null) {
+                    started = true;
+                    if (header(next)) {
+                        next = readLine();
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = next;
+            next = null;
+            return parse(line);
+        }
+
+        // The next non-blank line, or null at the end.
+        private String readLine() {
+            try {
+                String line;
+                do {
+                    line = reader.readLine();
+                } while (line != null && line.trim().isEmpty());
+                if (line == null) {
+                    done = true;
+                    reader.close();
+                }
+                return line;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
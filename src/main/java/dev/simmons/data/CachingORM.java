@@ -0,0 +1,196 @@
+package dev.simmons.data;
+
+import dev.simmons.utilities.cache.LruCache;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps entities looked up by id in a bounded LRU cache with a time to live, so repeated lookups of the same
+ * entity don't each go to the database. Every write through this ORM drops the entities it touched; a write
+ * made inside a {@link UnitOfWork} drops them again once the transaction ends, so no lookup racing the
+ * transaction can put the old row back. Writes made around this ORM are seen once their entries expire, or once
+ * they are reported to {@link #evict(int)}, which is what a {@link ChangeListener} subscriber does.
+ * Lookups inside a unit of work skip the cache, as they have to see the transaction's own writes.
+ * Entities are copied going in and coming out, so callers are free to change what they get.
+ * @param <T> The entity type.
+ */
+public class CachingORM<T> extends ForwardingORM<T> {
+    private final EntityPlan<T> plan;
+    private final LruCache<Integer, T> cache;
+
+    /**
+     * @param delegate The ORM to load entities through.
+     * @param maxSize The most entities to keep.
+     * @param ttlMillis How long an entity is served from the cache after it was loaded. Each entity type gets
+     *                  its own instance, and so its own time to live.
+     */
+    public CachingORM(DataWrapperORM<T> delegate, int maxSize, long ttlMillis) {
+        super(delegate);
+        this.plan = delegate.getPlan();
+        this.cache = new LruCache<>(maxSize, ttlMillis);
+    }
+
+    @Override
+    public T getEntityById(int id) throws SQLException {
+        if (UnitOfWork.isActive()) {
+            return delegate.getEntityById(id);
+        }
+        T cached = cache.get(id);
+        if (cached != null) {
+            return plan.copy(cached);
+        }
+        long stamp = cache.stamp(id);
+        T loaded = delegate.getEntityById(id);
+        cache.put(id, plan.copy(loaded), stamp);
+        return loaded;
+    }
+
+    /**
+     * Serve the ids that are cached from the cache, and look the rest up in one query.
+     */
+    @Override
+    public Map<Integer, T> getEntitiesByIds(int[] ids) throws SQLException {
+        if (UnitOfWork.isActive()) {
+            return delegate.getEntitiesByIds(ids);
+        }
+        // Misses hold their place with null, so the result stays in request order.
+        Map<Integer, T> found = new LinkedHashMap<>();
+        int[] misses = new int[ids.length];
+        long[] stamps = new long[ids.length];
+        int missCount = 0;
+        for (int id : ids) {
+            if (found.containsKey(id)) {
+                continue;
+            }
+            T cached = cache.get(id);
+            if (cached != null) {
+                found.put(id, plan.copy(cached));
+            } else {
+                found.put(id, null);
+                misses[missCount] = id;
+                stamps[missCount++] = cache.stamp(id);
+            }
+        }
+        if (missCount == 0) {
+            return found;
+        }
+
+        Map<Integer, T> loaded = delegate.getEntitiesByIds(Arrays.copyOf(misses, missCount));
+        for (int i = 0; i < missCount; i++) {
+            T entity = loaded.get(misses[i]);
+            if (entity == null) {
+                found.remove(misses[i]);
+            } else {
+                cache.put(misses[i], plan.copy(entity), stamps[i]);
+                found.put(misses[i], entity);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public T upsertEntity(T entity) throws SQLException {
+        T upserted = delegate.upsertEntity(entity);
+        invalidate(idOf(upserted));
+        return upserted;
+    }
+
+    @Override
+    public List<T> upsertEntities(List<T> entities) throws SQLException {
+        List<T> upserted = delegate.upsertEntities(entities);
+        for (T entity : upserted) {
+            invalidate(idOf(entity));
+        }
+        return upserted;
+    }
+
+    @Override
+    public T replaceEntity(T entity) throws SQLException {
+        T replaced = delegate.replaceEntity(entity);
+        invalidate(idOf(entity));
+        return replaced;
+    }
+
+    @Override
+    public T updateFields(T entity, Collection<String> fields) throws SQLException {
+        T updated = delegate.updateFields(entity, fields);
+        invalidate(idOf(entity));
+        return updated;
+    }
+
+    @Override
+    public CompareAndSetResult<T> compareAndSet(int id, String field, Object expected, Object value) throws SQLException {
+        CompareAndSetResult<T> result = delegate.compareAndSet(id, field, expected, value);
+        if (result.getOutcome() == CompareAndSetResult.Outcome.UPDATED) {
+            invalidate(id);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Integer, CompareAndSetResult<T>> compareAndSetAll(Criteria criteria, String field, Object expected, Object value) throws SQLException {
+        Map<Integer, CompareAndSetResult<T>> results = delegate.compareAndSetAll(criteria, field, expected, value);
+        for (Map.Entry<Integer, CompareAndSetResult<T>> result : results.entrySet()) {
+            if (result.getValue().getOutcome() == CompareAndSetResult.Outcome.UPDATED) {
+                invalidate(result.getKey());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public boolean deleteEntity(int id) throws SQLException {
+        boolean deleted = delegate.deleteEntity(id);
+        invalidate(id);
+        return deleted;
+    }
+
+    /**
+     * Which entities matched isn't known without another query, so this drops the whole cache.
+     */
+    @Override
+    public int deleteWhere(Criteria criteria) throws SQLException {
+        int deleted = delegate.deleteWhere(criteria);
+        if (deleted > 0) {
+            UnitOfWork.afterEnd(cache::invalidateAll);
+        }
+        return deleted;
+    }
+
+    /**
+     * @return The cache's hit, miss and eviction counts.
+     */
+    public LruCache.Stats getStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Drop one cached entity, for when its row was changed some other way.
+     */
+    public void evict(int id) {
+        cache.invalidate(id);
+    }
+
+    /**
+     * Drop every cached entity, for when the table was changed some other way.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private void invalidate(int id) {
+        cache.invalidate(id);
+        if (UnitOfWork.isActive()) {
+            UnitOfWork.afterEnd(() -> cache.invalidate(id));
+        }
+    }
+
+    private int idOf(T entity) {
+        return (Integer) plan.getPrimaryKey().get(entity);
+    }
+}
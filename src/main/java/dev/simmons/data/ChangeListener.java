@@ -0,0 +1,237 @@
+package dev.simmons.data;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.simmons.utilities.connection.PostgresConnection;
+import dev.simmons.utilities.logging.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Listens for the row changes the notifyEntityChanges triggers publish, so caches in this process can drop what
+ * other processes wrote. The triggers send one message per statement, listing the rows it changed before and after.
+ * A background thread holds a connection of its own, outside the pool, and hands each subscriber every change to
+ * its table that arrived in one poll as a single batch.
+ * <p>
+ * A statement that changed too many rows to list, such as a bulk load, only says which table it changed, and its
+ * table's subscriber is told it {@link Subscriber#missed() missed} changes.
+ * <p>
+ * If the connection drops, the thread reconnects with a growing delay. Notifications sent meanwhile are lost,
+ * so every subscriber is told it {@link Subscriber#missed() missed} some and should drop everything it holds.
+ */
+public final class ChangeListener implements AutoCloseable {
+    public static final String channel = "entity_changes";
+    private static final int pollMillis = 500;
+    private static final long minRetryMillis = 100;
+    private static final long maxRetryMillis = 30_000;
+
+    /**
+     * Told about changes to one table.
+     * @param <T> The table's entity type.
+     */
+    public interface Subscriber<T> {
+        void changed(List<EntityChange<T>> changes);
+
+        /**
+         * Changes may have gone by unreported, or too many rows changed at once to list; nothing cached can be trusted.
+         */
+        void missed();
+    }
+
+    private final Map<String, Subscription<?>> subscriptions = new ConcurrentHashMap<>();
+    private volatile boolean running;
+    private volatile boolean listening;
+    private Thread thread;
+
+    /**
+     * Be told about changes to the entity's table. Subscribe before starting; one subscriber per table.
+     */
+    public <T> ChangeListener subscribe(EntityPlan<T> plan, Subscriber<T> subscriber) {
+        subscriptions.put(plan.getTable().toLowerCase(), new Subscription<>(plan, subscriber));
+        return this;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("The change listener is already started.");
+        }
+        running = true;
+        thread = new Thread(this::listen, "change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop listening. Returns once the thread is done, at most one poll later.
+     */
+    @Override
+    public synchronized void close() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.join();
+            thread = null;
+        }
+        listening = false;
+    }
+
+    /**
+     * @return Whether the thread is connected and receiving changes.
+     */
+    public boolean isListening() {
+        return listening;
+    }
+
+    private void listen() {
+        long retryMillis = minRetryMillis;
+        boolean firstAttempt = true;
+        while (running) {
+            try (Connection conn = PostgresConnection.getDedicatedConnection()) {
+                try (Statement statement = conn.createStatement()) {
+                    statement.execute("listen " + channel + ";");
+                }
+                if (!firstAttempt) {
+                    missed();
+                }
+                listening = true;
+                retryMillis = minRetryMillis;
+
+                PGConnection pgConnection = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollMillis);
+                    if (notifications != null && notifications.length > 0) {
+                        dispatch(notifications);
+                    }
+                }
+            } catch (SQLException se) {
+                listening = false;
+                if (!running) {
+                    break;
+                }
+                Logger.log(Logger.Level.WARNING, "Change notifications interrupted, reconnecting in " + retryMillis + "ms: " + se.getMessage());
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                retryMillis = Math.min(retryMillis * 2, maxRetryMillis);
+            }
+            firstAttempt = false;
+        }
+    }
+
+    private void dispatch(PGNotification[] notifications) {
+        Map<String, List<JsonObject>> byTable = new LinkedHashMap<>();
+        for (PGNotification notification : notifications) {
+            if (!channel.equals(notification.getName())) {
+                continue;
+            }
+            try {
+                JsonObject payload = JsonParser.parseString(notification.getParameter()).getAsJsonObject();
+                byTable.computeIfAbsent(payload.get("table").getAsString(), t -> new ArrayList<>()).add(payload);
+            } catch (RuntimeException re) {
+                Logger.log(Logger.Level.WARNING, "Ignoring unreadable change notification: " + notification.getParameter());
+            }
+        }
+
+        for (Map.Entry<String, List<JsonObject>> table : byTable.entrySet()) {
+            Subscription<?> subscription = subscriptions.get(table.getKey());
+            if (subscription != null) {
+                try {
+                    subscription.deliver(table.getValue());
+                } catch (RuntimeException re) {
+                    // A change the subscriber couldn't take in may leave it stale.
+                    Logger.log(Logger.Level.ERROR, re);
+                    subscription.subscriber.missed();
+                }
+            }
+        }
+    }
+
+    private void missed() {
+        for (Subscription<?> subscription : subscriptions.values()) {
+            subscription.subscriber.missed();
+        }
+    }
+
+    private static final class Subscription<T> {
+        private final EntityPlan<T> plan;
+        private final Subscriber<T> subscriber;
+
+        private Subscription(EntityPlan<T> plan, Subscriber<T> subscriber) {
+            this.plan = plan;
+            this.subscriber = subscriber;
+        }
+
+        private void deliver(List<JsonObject> payloads) {
+            List<EntityChange<T>> changes = new ArrayList<>();
+            boolean missed = false;
+            for (JsonObject payload : payloads) {
+                JsonElement oldRows = payload.get("old");
+                JsonElement newRows = payload.get("new");
+                if (!isRows(oldRows) && !isRows(newRows)) {
+                    missed = true;
+                    continue;
+                }
+                EntityChange.Operation operation = EntityChange.Operation.valueOf(payload.get("op").getAsString());
+                // An update lists the old rows and the new ones separately; pair them up by key.
+                Map<Object, T> before = new LinkedHashMap<>();
+                if (isRows(oldRows)) {
+                    for (JsonElement row : oldRows.getAsJsonArray()) {
+                        T entity = decode(row);
+                        before.put(plan.getPrimaryKey().get(entity), entity);
+                    }
+                }
+                if (isRows(newRows)) {
+                    for (JsonElement row : newRows.getAsJsonArray()) {
+                        T after = decode(row);
+                        Object id = plan.getPrimaryKey().get(after);
+                        changes.add(new EntityChange<>(operation, (Integer) id, before.remove(id), after));
+                    }
+                }
+                for (Map.Entry<Object, T> gone : before.entrySet()) {
+                    changes.add(new EntityChange<>(operation, (Integer) gone.getKey(), gone.getValue(), null));
+                }
+            }
+            if (!changes.isEmpty()) {
+                subscriber.changed(changes);
+            }
+            if (missed) {
+                subscriber.missed();
+            }
+        }
+
+        private static boolean isRows(JsonElement rows) {
+            return rows != null && rows.isJsonArray();
+        }
+
+        /**
+         * Read a row as row_to_json writes it, keyed by column name, with each column's codec reading its text form.
+         */
+        private T decode(JsonElement row) {
+            if (row == null || row.isJsonNull()) {
+                return null;
+            }
+            JsonObject json = row.getAsJsonObject();
+            T entity = plan.newInstance();
+            for (ColumnMapping<T> column : plan.getColumns()) {
+                JsonElement value = json.get(column.getColumn().toLowerCase());
+                if (value == null || value.isJsonNull()) {
+                    continue;
+                }
+                column.set(entity, column.getCodec().parse(value.getAsString()));
+            }
+            return entity;
+        }
+    }
+}
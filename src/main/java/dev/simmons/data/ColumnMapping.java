@@ -0,0 +1,125 @@
+package dev.simmons.data;
+
+import java.lang.invoke.MethodType;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * How one @DbField of an entity maps onto its column: the column's position in the select list,
+ * the codec for its type and precompiled accessors for the Java field.
+ * @param <T> The entity type.
+ */
+public final class ColumnMapping<T> {
+    private final String fieldName;
+    private final String column;
+    private final Class<?> javaType;
+    private final int selectIndex;
+    private final boolean primaryKey;
+    private final Function<T, Object> getter;
+    private final BiConsumer<T, Object> setter;
+    private final TypeCodec<Object> codec;
+
+    @SuppressWarnings("unchecked")
+    ColumnMapping(String fieldName, String column, Class<?> javaType, int selectIndex, boolean primaryKey,
+                  Function<T, Object> getter, BiConsumer<T, Object> setter) {
+        this.fieldName = fieldName;
+        this.column = column;
+        this.javaType = javaType;
+        this.selectIndex = selectIndex;
+        this.primaryKey = primaryKey;
+        this.getter = getter;
+        this.setter = setter;
+        this.codec = (TypeCodec<Object>) TypeCodecs.forType(javaType);
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Class<?> getJavaType() {
+        return javaType;
+    }
+
+    /**
+     * @return The java.sql.Types constant used for the column.
+     */
+    public int getSqlType() {
+        return codec.sqlType();
+    }
+
+    public TypeCodec<Object> getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return The 1-based position of the column in the entity's select list.
+     */
+    public int getSelectIndex() {
+        return selectIndex;
+    }
+
+    public boolean isPrimaryKey() {
+        return primaryKey;
+    }
+
+    /**
+     * @return Whether the value is of this column's Java type, counting boxed values for primitive fields.
+     */
+    public boolean accepts(Object value) {
+        if (value == null) {
+            return !javaType.isPrimitive();
+        }
+        return boxed(javaType).isInstance(value);
+    }
+
+    public Object get(T entity) {
+        return getter.apply(entity);
+    }
+
+    public void set(T entity, Object value) {
+        setter.accept(entity, value);
+    }
+
+    /**
+     * Read this column from the current row by its select-list position and store it on the entity.
+     * @param rs A result set positioned on a row selected with the entity's select list.
+     * @param entity The entity to fill.
+     */
+    void read(ResultSet rs, T entity) throws SQLException {
+        setter.accept(entity, codec.read(rs, selectIndex));
+    }
+
+    /**
+     * Bind this column's value from the entity to a statement parameter.
+     * @param statement The statement to bind to.
+     * @param index The 1-based parameter index.
+     * @param entity The entity holding the value.
+     */
+    void bind(PreparedStatement statement, int index, T entity) throws SQLException {
+        Object value = getter.apply(entity);
+        if (value == null) {
+            statement.setNull(index, codec.sqlType());
+        } else {
+            codec.bind(statement, index, value);
+        }
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    @Override
+    public String toString() {
+        return fieldName + " -> " + column + " (#" + selectIndex + ")";
+    }
+}
@@ -0,0 +1,53 @@
+package dev.simmons.data;
+
+/**
+ * The outcome of a compare-and-set update: whether the row was changed and, if it wasn't, why not.
+ * @param <T> The entity type.
+ */
+public final class CompareAndSetResult<T> {
+    public enum Outcome {
+        /** The field held the expected value and now holds the new one. */
+        UPDATED,
+        /** No row has the key. */
+        NOT_FOUND,
+        /** The row exists, but its field held something other than the expected value. */
+        MISMATCH
+    }
+
+    private final Outcome outcome;
+    private final T entity;
+    private final Object previous;
+
+    CompareAndSetResult(Outcome outcome, T entity, Object previous) {
+        this.outcome = outcome;
+        this.entity = entity;
+        this.previous = previous;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public boolean isUpdated() {
+        return outcome == Outcome.UPDATED;
+    }
+
+    /**
+     * @return The row as it is after the update, or null if it wasn't updated.
+     */
+    public T getEntity() {
+        return entity;
+    }
+
+    /**
+     * @return The value the field held before the statement ran, or null if there was no row.
+     */
+    public Object getPrevious() {
+        return previous;
+    }
+
+    @Override
+    public String toString() {
+        return outcome + (outcome == Outcome.MISMATCH ? " (was " + previous + ")" : "");
+    }
+}
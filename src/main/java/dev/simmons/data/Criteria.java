@@ -0,0 +1,123 @@
+package dev.simmons.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Conditions on an entity's fields, all of which must hold, for querying through the ORM.
+ * Fields are named by their Java field name or their column name; the ORM checks them against the entity's
+ * mapping and binds every value as a parameter, so nothing from a criteria is pasted into the SQL.
+ * Criteria are immutable: {@code and} returns a new one.
+ */
+public final class Criteria {
+    enum Operator {
+        EQUALS("="), IN("= any"), AT_LEAST(">="), AT_MOST("<=");
+
+        final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    static final class Condition {
+        final String field;
+        final Operator operator;
+        final Object value;
+        final List<Object> values;
+
+        private Condition(String field, Operator operator, Object value, List<Object> values) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+            this.values = values;
+        }
+
+        @Override
+        public String toString() {
+            return operator == Operator.IN ? field + " in " + values : field + " " + operator.symbol + " " + value;
+        }
+    }
+
+    private final List<Condition> conditions;
+
+    private Criteria(List<Condition> conditions) {
+        this.conditions = Collections.unmodifiableList(conditions);
+    }
+
+    /**
+     * @return Criteria without conditions, which every entity meets; add to it with the {@code and} methods.
+     */
+    public static Criteria all() {
+        return new Criteria(Collections.<Condition>emptyList());
+    }
+
+    /**
+     * @param field The field or column name.
+     * @param value The value to match, or null to match nulls.
+     */
+    public static Criteria where(String field, Object value) {
+        return all().and(field, value);
+    }
+
+    /**
+     * @param field The field or column name.
+     * @param values The values to match any of. An empty collection matches nothing.
+     */
+    public static Criteria whereIn(String field, Collection<?> values) {
+        return all().andIn(field, values);
+    }
+
+    public Criteria and(String field, Object value) {
+        return with(new Condition(field, Operator.EQUALS, value, null));
+    }
+
+    public Criteria andIn(String field, Collection<?> values) {
+        return with(new Condition(field, Operator.IN, null, Collections.unmodifiableList(new ArrayList<Object>(values))));
+    }
+
+    /**
+     * Require the field to be greater than or equal to the value.
+     */
+    public Criteria andAtLeast(String field, Object value) {
+        return with(new Condition(field, Operator.AT_LEAST, value, null));
+    }
+
+    /**
+     * Require the field to be less than or equal to the value.
+     */
+    public Criteria andAtMost(String field, Object value) {
+        return with(new Condition(field, Operator.AT_MOST, value, null));
+    }
+
+    public boolean isEmpty() {
+        return conditions.isEmpty();
+    }
+
+    List<Condition> getConditions() {
+        return conditions;
+    }
+
+    private Criteria with(Condition condition) {
+        if (condition.field == null) {
+            throw new IllegalArgumentException("A criteria needs a field name.");
+        }
+        List<Condition> combined = new ArrayList<>(conditions);
+        combined.add(condition);
+        return new Criteria(combined);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Condition condition : conditions) {
+            if (builder.length() > 0) {
+                builder.append(" and ");
+            }
+            builder.append(condition);
+        }
+        return builder.toString();
+    }
+}
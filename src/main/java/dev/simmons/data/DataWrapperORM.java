@@ -1,16 +1,49 @@
 package dev.simmons.data;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface DataWrapperORM<T> {
     T createEntity(T entity) throws SQLException; // creates an employee
 
+    List<T> createEntities(List<T> entities) throws SQLException; // creates all of them in one transaction, or none
+
+    T upsertEntity(T entity) throws SQLException; // creates it, or replaces the one with its id
+
+    List<T> upsertEntities(List<T> entities) throws SQLException; // upserts all of them in one transaction, or none
+
     T getEntityById(int id) throws SQLException; // Get an employee by ID
 
+    Map<Integer, T> getEntitiesByIds(int[] ids) throws SQLException; // Get several by ID in one query; missing IDs are left out
+
     List<T> getAllEntities() throws SQLException;// get all instances of the employee
 
+    Stream<T> streamAllEntities() throws SQLException;// the same, read through a cursor; close the stream when done
+
+    List<T> getPage(int afterId, int limit) throws SQLException;// up to limit instances with an id above afterId, by id
+
+    List<T> getPage(Criteria criteria, int afterId, int limit) throws SQLException;// the same, only counting instances matching every condition
+
+    List<T> findBy(String field, Object value) throws SQLException;// instances whose field equals the value
+
+    List<T> find(Criteria criteria) throws SQLException;// instances matching every condition
+
+    boolean exists(Criteria criteria) throws SQLException;// whether any instance matches every condition
+
     T replaceEntity(T entity) throws SQLException;// update an instance
 
+    T updateFields(T entity, Collection<String> fields) throws SQLException;// update only the named fields of an instance
+
+    CompareAndSetResult<T> compareAndSet(int id, String field, Object expected, Object value) throws SQLException;// set a field only if it holds the expected value
+
+    Map<Integer, CompareAndSetResult<T>> compareAndSetAll(Criteria criteria, String field, Object expected, Object value) throws SQLException;// the same for every match, in one statement
+
     boolean deleteEntity(int id) throws SQLException;
+
+    int deleteWhere(Criteria criteria) throws SQLException;// delete every instance matching the conditions, returning how many
+
+    EntityPlan<T> getPlan();// how the entity maps onto its table
 }
@@ -0,0 +1,50 @@
+package dev.simmons.data;
+
+/**
+ * A row change reported by the database, with the entity as it was and as it is.
+ * @param <T> The entity type.
+ */
+public final class EntityChange<T> {
+    public enum Operation {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final Operation operation;
+    private final int id;
+    private final T before;
+    private final T after;
+
+    EntityChange(Operation operation, int id, T before, T after) {
+        this.operation = operation;
+        this.id = id;
+        this.before = before;
+        this.after = after;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return The entity before the change, or null for an insert.
+     */
+    public T getBefore() {
+        return before;
+    }
+
+    /**
+     * @return The entity after the change, or null for a delete.
+     */
+    public T getAfter() {
+        return after;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " " + id + ": " + before + " -> " + after;
+    }
+}
@@ -0,0 +1,9 @@
+package dev.simmons.data;
+
+/**
+ * A mapper that both reads an entity from a row and binds it to the ORM's statements.
+ * PostgresORM uses a generated implementation when one is available and a plan-based one otherwise.
+ * @param <T> The entity type.
+ */
+public interface EntityMapper<T> extends RowMapper<T>, StatementBinder<T> {
+}
@@ -0,0 +1,281 @@
+package dev.simmons.data;
+
+import dev.simmons.annotation.DBEntity;
+import dev.simmons.annotation.DbField;
+import dev.simmons.annotation.PrimaryKey;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Immutable description of how a @DBEntity class maps onto its table, built once per entity type.
+ * All reflection happens while building the plan; using it afterwards only goes through precompiled accessors.
+ * @param <T> The entity type.
+ */
+public final class EntityPlan<T> {
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    private final Class<T> type;
+    private final String table;
+    private final Supplier<T> constructor;
+    private final ColumnMapping<T> primaryKey;
+    private final List<ColumnMapping<T>> columns;
+    private final List<ColumnMapping<T>> valueColumns;
+
+    private EntityPlan(Class<T> type, String table, Supplier<T> constructor, ColumnMapping<T> primaryKey,
+                       List<ColumnMapping<T>> columns, List<ColumnMapping<T>> valueColumns) {
+        this.type = type;
+        this.table = table;
+        this.constructor = constructor;
+        this.primaryKey = primaryKey;
+        this.columns = Collections.unmodifiableList(columns);
+        this.valueColumns = Collections.unmodifiableList(valueColumns);
+    }
+
+    /**
+     * Start a plan for an entity whose accessors are already known, as generated mapping classes do.
+     * Columns must be added in select-list order.
+     * @param clazz The entity class.
+     * @param table The table the entity is stored in.
+     * @param constructor Creates an empty entity.
+     * @return A builder for the plan.
+     */
+    public static <T> Builder<T> builder(Class<T> clazz, String table, Supplier<T> constructor) {
+        return new Builder<>(clazz, table, constructor);
+    }
+
+    /**
+     * Build the plan for an entity class from its @DBEntity, @DbField and @PrimaryKey annotations.
+     * @param clazz The entity class. It needs a public no-arg constructor and public getters/setters for each @DbField.
+     * @return The mapping plan.
+     * @throws IllegalArgumentException If the class doesn't follow those conventions.
+     */
+    public static <T> EntityPlan<T> of(Class<T> clazz) {
+        DBEntity entity = clazz.getAnnotation(DBEntity.class);
+        if (entity == null) {
+            throw new IllegalArgumentException(clazz.getName() + " is not annotated with @DBEntity.");
+        }
+
+        List<ColumnMapping<T>> columns = new ArrayList<>();
+        List<ColumnMapping<T>> valueColumns = new ArrayList<>();
+        ColumnMapping<T> primaryKey = null;
+        for (Field field : clazz.getDeclaredFields()) {
+            DbField dbField = field.getAnnotation(DbField.class);
+            if (dbField == null || Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+
+            boolean isKey = field.isAnnotationPresent(PrimaryKey.class);
+            ColumnMapping<T> column = new ColumnMapping<>(field.getName(), dbField.name(), field.getType(),
+                    columns.size() + 1, isKey, getter(clazz, field), setter(clazz, field));
+            columns.add(column);
+            if (isKey) {
+                primaryKey = column;
+            } else {
+                valueColumns.add(column);
+            }
+        }
+
+        if (primaryKey == null) {
+            throw new IllegalArgumentException(clazz.getName() + " has no @PrimaryKey field.");
+        }
+
+        return new EntityPlan<>(clazz, entity.value(), constructor(clazz), primaryKey, columns, valueColumns);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public ColumnMapping<T> getPrimaryKey() {
+        return primaryKey;
+    }
+
+    /**
+     * @return Every mapped column, in select-list order.
+     */
+    public List<ColumnMapping<T>> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return The mapped columns other than the primary key, in insert/update parameter order.
+     */
+    public List<ColumnMapping<T>> getValueColumns() {
+        return valueColumns;
+    }
+
+    public T newInstance() {
+        return constructor.get();
+    }
+
+    /**
+     * @return A new entity with every mapped field of the given one, for handing out without sharing the original.
+     */
+    public T copy(T entity) {
+        T copy = newInstance();
+        for (ColumnMapping<T> column : columns) {
+            column.set(copy, column.get(entity));
+        }
+        return copy;
+    }
+
+    /**
+     * @return The comma separated column names, in select-list order.
+     */
+    public String selectList() {
+        StringBuilder builder = new StringBuilder();
+        for (ColumnMapping<T> column : columns) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(column.getColumn());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Collects the columns of a plan whose accessors are supplied directly instead of looked up.
+     * @param <T> The entity type.
+     */
+    public static final class Builder<T> {
+        private final Class<T> type;
+        private final String table;
+        private final Supplier<T> constructor;
+        private final List<ColumnMapping<T>> columns = new ArrayList<>();
+        private final List<ColumnMapping<T>> valueColumns = new ArrayList<>();
+        private ColumnMapping<T> primaryKey;
+
+        private Builder(Class<T> type, String table, Supplier<T> constructor) {
+            this.type = type;
+            this.table = table;
+            this.constructor = constructor;
+        }
+
+        public Builder<T> key(String fieldName, String column, Class<?> javaType, Function<T, Object> getter, BiConsumer<T, Object> setter) {
+            primaryKey = new ColumnMapping<>(fieldName, column, javaType, columns.size() + 1, true, getter, setter);
+            columns.add(primaryKey);
+            return this;
+        }
+
+        public Builder<T> column(String fieldName, String column, Class<?> javaType, Function<T, Object> getter, BiConsumer<T, Object> setter) {
+            ColumnMapping<T> mapping = new ColumnMapping<>(fieldName, column, javaType, columns.size() + 1, false, getter, setter);
+            columns.add(mapping);
+            valueColumns.add(mapping);
+            return this;
+        }
+
+        public EntityPlan<T> build() {
+            if (primaryKey == null) {
+                throw new IllegalArgumentException(type.getName() + " has no primary key column.");
+            }
+            return new EntityPlan<>(type, table, constructor, primaryKey, columns, valueColumns);
+        }
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Function<T, Object> getter(Class<T> clazz, Field field) {
+        Class<?> fieldType = field.getType();
+        MethodHandle handle;
+        try {
+            handle = lookup.findVirtual(clazz, "get" + capitalize(field.getName()), MethodType.methodType(fieldType));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("No public getter for " + clazz.getName() + "." + field.getName(), e);
+        }
+
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    handle,
+                    MethodType.methodType(MethodType.methodType(fieldType).wrap().returnType(), clazz));
+            return (Function<T, Object>) site.getTarget().invoke();
+        } catch (Throwable t) {
+            // Classes the metafactory can't link against still work through the plain method handle.
+            MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+            return entity -> {
+                try {
+                    return generic.invokeExact((Object) entity);
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> BiConsumer<T, Object> setter(Class<T> clazz, Field field) {
+        Class<?> fieldType = field.getType();
+        MethodHandle handle;
+        try {
+            handle = lookup.findVirtual(clazz, "set" + capitalize(field.getName()), MethodType.methodType(void.class, fieldType));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("No public setter for " + clazz.getName() + "." + field.getName(), e);
+        }
+
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    handle,
+                    MethodType.methodType(void.class, clazz, MethodType.methodType(fieldType).wrap().returnType()));
+            return (BiConsumer<T, Object>) site.getTarget().invoke();
+        } catch (Throwable t) {
+            MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (entity, value) -> {
+                try {
+                    generic.invokeExact((Object) entity, value);
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> constructor(Class<T> clazz) {
+        MethodHandle handle;
+        try {
+            handle = lookup.findConstructor(clazz, MethodType.methodType(void.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("No public no-arg constructor for " + clazz.getName(), e);
+        }
+
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    handle,
+                    MethodType.methodType(clazz));
+            return (Supplier<T>) site.getTarget().invoke();
+        } catch (Throwable t) {
+            MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return (T) generic.invokeExact();
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
+    }
+}
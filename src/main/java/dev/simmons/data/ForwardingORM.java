@@ -0,0 +1,122 @@
+package dev.simmons.data;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * An ORM that hands every call to another one. Decorators extend it and override only the calls they change.
+ * @param <T> The entity type.
+ */
+public abstract class ForwardingORM<T> implements DataWrapperORM<T> {
+    protected final DataWrapperORM<T> delegate;
+
+    protected ForwardingORM(DataWrapperORM<T> delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("A forwarding ORM needs an ORM to forward to.");
+        }
+        this.delegate = delegate;
+    }
+
+    @Override
+    public T createEntity(T entity) throws SQLException {
+        return delegate.createEntity(entity);
+    }
+
+    @Override
+    public List<T> createEntities(List<T> entities) throws SQLException {
+        return delegate.createEntities(entities);
+    }
+
+    @Override
+    public T upsertEntity(T entity) throws SQLException {
+        return delegate.upsertEntity(entity);
+    }
+
+    @Override
+    public List<T> upsertEntities(List<T> entities) throws SQLException {
+        return delegate.upsertEntities(entities);
+    }
+
+    @Override
+    public T getEntityById(int id) throws SQLException {
+        return delegate.getEntityById(id);
+    }
+
+    @Override
+    public Map<Integer, T> getEntitiesByIds(int[] ids) throws SQLException {
+        return delegate.getEntitiesByIds(ids);
+    }
+
+    @Override
+    public List<T> getAllEntities() throws SQLException {
+        return delegate.getAllEntities();
+    }
+
+    @Override
+    public Stream<T> streamAllEntities() throws SQLException {
+        return delegate.streamAllEntities();
+    }
+
+    @Override
+    public List<T> getPage(int afterId, int limit) throws SQLException {
+        return delegate.getPage(afterId, limit);
+    }
+
+    @Override
+    public List<T> getPage(Criteria criteria, int afterId, int limit) throws SQLException {
+        return delegate.getPage(criteria, afterId, limit);
+    }
+
+    @Override
+    public List<T> findBy(String field, Object value) throws SQLException {
+        return delegate.findBy(field, value);
+    }
+
+    @Override
+    public List<T> find(Criteria criteria) throws SQLException {
+        return delegate.find(criteria);
+    }
+
+    @Override
+    public boolean exists(Criteria criteria) throws SQLException {
+        return delegate.exists(criteria);
+    }
+
+    @Override
+    public T replaceEntity(T entity) throws SQLException {
+        return delegate.replaceEntity(entity);
+    }
+
+    @Override
+    public T updateFields(T entity, Collection<String> fields) throws SQLException {
+        return delegate.updateFields(entity, fields);
+    }
+
+    @Override
+    public CompareAndSetResult<T> compareAndSet(int id, String field, Object expected, Object value) throws SQLException {
+        return delegate.compareAndSet(id, field, expected, value);
+    }
+
+    @Override
+    public Map<Integer, CompareAndSetResult<T>> compareAndSetAll(Criteria criteria, String field, Object expected, Object value) throws SQLException {
+        return delegate.compareAndSetAll(criteria, field, expected, value);
+    }
+
+    @Override
+    public boolean deleteEntity(int id) throws SQLException {
+        return delegate.deleteEntity(id);
+    }
+
+    @Override
+    public int deleteWhere(Criteria criteria) throws SQLException {
+        return delegate.deleteWhere(criteria);
+    }
+
+    @Override
+    public EntityPlan<T> getPlan() {
+        return delegate.getPlan();
+    }
+}
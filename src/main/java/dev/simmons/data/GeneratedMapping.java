@@ -0,0 +1,31 @@
+package dev.simmons.data;
+
+/**
+ * Mapping information generated at compile time for a @DBEntity class by the annotation processor.
+ * PostgresORM looks for a class named after the entity with a "_Mapping" suffix, in the entity's package,
+ * and uses it instead of scanning the entity's fields.
+ * @param <T> The entity type.
+ */
+public interface GeneratedMapping<T> {
+    String suffix = "_Mapping";
+
+    EntityPlan<T> plan();
+
+    EntityMapper<T> mapper();
+
+    String createSql();
+
+    String getByIdSql();
+
+    String getByIdsSql();
+
+    String getAllSql();
+
+    String updateSql();
+
+    String upsertSql();
+
+    String deleteSql();
+
+    String pageSql();
+}
@@ -0,0 +1,244 @@
+package dev.simmons.data;
+
+import dev.simmons.codegen.MapperSource;
+import dev.simmons.utilities.logging.Logger;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generates, compiles and loads a dedicated RowMapper/StatementBinder class for an entity at runtime.
+ * The generated code is straight-line getter/setter calls on fixed column positions, which the JIT can inline fully.
+ * Entities the generator can't express, or runtimes without a system Java compiler, get null back and should
+ * keep using the plan-based mapper.
+ */
+final class MapperGenerator {
+    static final String generatedPackage = "dev.simmons.data.generated";
+
+    // One generation attempt per entity class, including the ones that failed.
+    private static final Map<Class<?>, Optional<EntityMapper<?>>> generated = new ConcurrentHashMap<>();
+
+    private MapperGenerator() {
+
+    }
+
+    /**
+     * Get the generated mapper for the plan's entity, generating it the first time it is asked for.
+     * @param plan The mapping plan of the entity.
+     * @return The generated mapper, or null if one couldn't be generated.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> EntityMapper<T> forPlan(EntityPlan<T> plan) {
+        return (EntityMapper<T>) generated.computeIfAbsent(plan.getType(), type -> Optional.<EntityMapper<?>>ofNullable(generate(plan))).orElse(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> EntityMapper<T> generate(EntityPlan<T> plan) {
+        String source = generateSource(plan);
+        if (source == null) {
+            return null;
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            Logger.log(Logger.Level.INFO, "No system Java compiler available; " + plan.getType().getSimpleName() + " keeps the plan-based mapper.");
+            return null;
+        }
+
+        String className = generatedPackage + "." + mapperName(plan.getType());
+        try {
+            Class<?> mapperClass = compile(compiler, plan.getType(), className, source);
+            if (mapperClass == null) {
+                return null;
+            }
+            return (EntityMapper<T>) mapperClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Logger.log(Logger.Level.WARNING, "Unable to load the generated mapper for " + plan.getType().getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    static String mapperName(Class<?> type) {
+        return type.getSimpleName() + "RowMapper";
+    }
+
+    /**
+     * Write the mapper's Java source.
+     * @return The source, or null when the entity has a column or accessor the generator can't express.
+     */
+    static <T> String generateSource(EntityPlan<T> plan) {
+        Class<T> type = plan.getType();
+        String entity = type.getCanonicalName();
+        if (entity == null || !Modifier.isPublic(type.getModifiers())) {
+            return null;
+        }
+
+        List<MapperSource.Column> columns = new ArrayList<>();
+        List<MapperSource.Column> valueColumns = new ArrayList<>();
+        MapperSource.Column key = null;
+        for (ColumnMapping<T> mapping : plan.getColumns()) {
+            MapperSource.Column column = sourceColumn(type, mapping);
+            if (column == null) {
+                return null;
+            }
+            columns.add(column);
+            if (mapping.isPrimaryKey()) {
+                key = column;
+            } else {
+                valueColumns.add(column);
+            }
+        }
+
+        return "package " + generatedPackage + ";\n\n" +
+                MapperSource.mapperClass("public final class", mapperName(type), entity, columns, valueColumns, key, "");
+    }
+
+    private static MapperSource.Column sourceColumn(Class<?> type, ColumnMapping<?> mapping) {
+        Class<?> javaType = mapping.getJavaType();
+        String typeName = javaType.isPrimitive() ? javaType.getName() : javaType.getCanonicalName();
+        if (typeName == null || !Modifier.isPublic(javaType.getModifiers())) {
+            return null;
+        }
+        MapperSource.Kind kind = MapperSource.Kind.of(typeName, javaType.isEnum());
+        if (kind == null) {
+            return null;
+        }
+
+        String name = MapperSource.capitalize(mapping.getFieldName());
+        try {
+            type.getMethod("get" + name);
+            type.getMethod("set" + name, javaType);
+            type.getConstructor();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        return new MapperSource.Column(mapping.getFieldName(), typeName, kind, mapping.getSelectIndex());
+    }
+
+    private static Class<?> compile(JavaCompiler compiler, Class<?> entityType, String className, String source) throws ClassNotFoundException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, null);
+        InMemoryFileManager fileManager = new InMemoryFileManager(standard);
+
+        List<String> options = Arrays.asList("-classpath", classpath(entityType), "-proc:none", "-nowarn");
+        JavaFileObject unit = new SourceFile(className, source);
+        Boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, Collections.singletonList(unit)).call();
+        if (success == null || !success) {
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    Logger.log(Logger.Level.WARNING, "Generated mapper " + className + " failed to compile: " + diagnostic.getMessage(null));
+                    break;
+                }
+            }
+            return null;
+        }
+
+        GeneratedClassLoader loader = new GeneratedClassLoader(entityType.getClassLoader(), fileManager.classes);
+        return loader.loadClass(className);
+    }
+
+    // The running classpath, plus wherever the entity and the ORM were loaded from in case they came from elsewhere.
+    private static String classpath(Class<?> entityType) {
+        Set<String> entries = new LinkedHashSet<>();
+        String current = System.getProperty("java.class.path");
+        if (current != null && !current.isEmpty()) {
+            entries.addAll(Arrays.asList(current.split(File.pathSeparator)));
+        }
+        for (Class<?> type : new Class<?>[]{entityType, RowMapper.class}) {
+            CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+            if (codeSource != null && codeSource.getLocation() != null) {
+                try {
+                    entries.add(new File(codeSource.getLocation().toURI()).getPath());
+                } catch (Exception e) {
+                    // Not a file location; rely on java.class.path.
+                }
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        private SourceFile(String className, String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private ClassFile(String className) {
+            super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+    }
+
+    private static final class InMemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+        private final Map<String, ClassFile> classes = new HashMap<>();
+
+        private InMemoryFileManager(JavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            ClassFile file = new ClassFile(className);
+            classes.put(className, file);
+            return file;
+        }
+    }
+
+    private static final class GeneratedClassLoader extends ClassLoader {
+        private final Map<String, ClassFile> classes;
+
+        private GeneratedClassLoader(ClassLoader parent, Map<String, ClassFile> classes) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            ClassFile file = classes.get(name);
+            if (file == null) {
+                return super.findClass(name);
+            }
+            byte[] bytes = file.bytes.toByteArray();
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
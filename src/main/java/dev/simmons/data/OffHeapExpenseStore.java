@@ -0,0 +1,461 @@
+package dev.simmons.data;
+
+import dev.simmons.entities.Expense;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps expenses looked up by id outside the Java heap, so a working set of millions of them costs the garbage
+ * collector nothing. An expense is a fixed-width record, packed into direct buffer slabs allocated as the store
+ * fills; an open-addressing table of primitive ints maps ids to record slots. Once the store is full, a clock sweep
+ * gives up a record that hasn't been read since the hand last passed it.
+ * <p>
+ * Writes through the store drop the expenses they touched, again once the unit of work they ran in ends, the same
+ * way {@link CachingORM} does; lookups inside a unit of work skip the store. {@link #readInto(int, Expense)} decodes
+ * into an expense the caller reuses, for scans that shouldn't allocate one per record.
+ */
+public class OffHeapExpenseStore extends ForwardingORM<Expense> {
+    // Record layout. The referenced flag is the clock's "read since last sweep" bit.
+    private static final int idOffset = 0;
+    private static final int issuerOffset = 4;
+    private static final int amountOffset = 8;
+    private static final int dateOffset = 16;
+    private static final int statusOffset = 24;
+    private static final int referencedOffset = 25;
+    private static final int storedAtOffset = 28;
+    private static final int recordSize = 32;
+
+    private static final int slabShift = 15;
+    private static final int slabRecords = 1 << slabShift;
+    private static final int noSlot = -1;
+    private static final Expense.Status[] statuses = Expense.Status.values();
+
+    private final int capacity;
+    private final int ttlSeconds;
+    private final long start = System.nanoTime();
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // The index: keys[i] is an id, or 0 for a free entry, and slots[i] its record. Guarded by the lock.
+    private int[] keys = new int[1024];
+    private int[] slots = new int[1024];
+    private int size;
+    private int nextSlot;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int hand;
+    private volatile long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param delegate The ORM to load expenses through.
+     * @param capacity The most expenses to keep; memory is taken in slabs of 32768 as they are needed.
+     * @param ttlSeconds How long an expense is served after it was loaded.
+     */
+    public OffHeapExpenseStore(DataWrapperORM<Expense> delegate, int capacity, int ttlSeconds) {
+        super(delegate);
+        if (capacity <= 0 || ttlSeconds <= 0) {
+            throw new IllegalArgumentException("The store's capacity and time to live have to be positive.");
+        }
+        this.capacity = capacity;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * Decode a stored expense into the given one, without allocating.
+     * @param id The expense's id.
+     * @param target The expense to overwrite.
+     * @return Whether the store held the expense; the target is left alone if it didn't.
+     */
+    public boolean readInto(int id, Expense target) {
+        lock.readLock().lock();
+        try {
+            int slot = find(id);
+            if (slot == noSlot || expired(slot)) {
+                misses.increment();
+                return false;
+            }
+            ByteBuffer slab = slab(slot);
+            int offset = offset(slot);
+            target.setId(slab.getInt(offset + idOffset));
+            target.setIssuer(slab.getInt(offset + issuerOffset));
+            target.setAmount(slab.getLong(offset + amountOffset));
+            target.setDate(slab.getLong(offset + dateOffset));
+            target.setStatus(statuses[slab.get(offset + statusOffset)]);
+            // Readers may race on this byte; any of them setting it is all the clock needs.
+            slab.put(offset + referencedOffset, (byte) 1);
+            hits.increment();
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Expense getEntityById(int id) throws SQLException {
+        if (UnitOfWork.isActive()) {
+            return delegate.getEntityById(id);
+        }
+        Expense expense = new Expense();
+        if (readInto(id, expense)) {
+            return expense;
+        }
+        long stamp = generation;
+        Expense loaded = delegate.getEntityById(id);
+        store(Arrays.asList(loaded), stamp);
+        return loaded;
+    }
+
+    /**
+     * Serve the ids that are stored from the store, and look the rest up in one query.
+     */
+    @Override
+    public Map<Integer, Expense> getEntitiesByIds(int[] ids) throws SQLException {
+        if (UnitOfWork.isActive()) {
+            return delegate.getEntitiesByIds(ids);
+        }
+        // Misses hold their place with null, so the result stays in request order.
+        Map<Integer, Expense> found = new LinkedHashMap<>();
+        int[] missing = new int[ids.length];
+        int missCount = 0;
+        for (int id : ids) {
+            if (found.containsKey(id)) {
+                continue;
+            }
+            Expense expense = new Expense();
+            if (readInto(id, expense)) {
+                found.put(id, expense);
+            } else {
+                found.put(id, null);
+                missing[missCount++] = id;
+            }
+        }
+        if (missCount == 0) {
+            return found;
+        }
+
+        long stamp = generation;
+        Map<Integer, Expense> loaded = delegate.getEntitiesByIds(Arrays.copyOf(missing, missCount));
+        store(loaded.values(), stamp);
+        for (int i = 0; i < missCount; i++) {
+            Expense expense = loaded.get(missing[i]);
+            if (expense == null) {
+                found.remove(missing[i]);
+            } else {
+                found.put(missing[i], expense);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Expense upsertEntity(Expense entity) throws SQLException {
+        Expense upserted = delegate.upsertEntity(entity);
+        invalidate(upserted.getId());
+        return upserted;
+    }
+
+    @Override
+    public List<Expense> upsertEntities(List<Expense> entities) throws SQLException {
+        List<Expense> upserted = delegate.upsertEntities(entities);
+        for (Expense expense : upserted) {
+            invalidate(expense.getId());
+        }
+        return upserted;
+    }
+
+    @Override
+    public Expense replaceEntity(Expense entity) throws SQLException {
+        Expense replaced = delegate.replaceEntity(entity);
+        invalidate(entity.getId());
+        return replaced;
+    }
+
+    @Override
+    public Expense updateFields(Expense entity, Collection<String> fields) throws SQLException {
+        Expense updated = delegate.updateFields(entity, fields);
+        invalidate(entity.getId());
+        return updated;
+    }
+
+    @Override
+    public CompareAndSetResult<Expense> compareAndSet(int id, String field, Object expected, Object value) throws SQLException {
+        CompareAndSetResult<Expense> result = delegate.compareAndSet(id, field, expected, value);
+        if (result.isUpdated()) {
+            invalidate(id);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Integer, CompareAndSetResult<Expense>> compareAndSetAll(Criteria criteria, String field, Object expected, Object value) throws SQLException {
+        Map<Integer, CompareAndSetResult<Expense>> results = delegate.compareAndSetAll(criteria, field, expected, value);
+        for (Map.Entry<Integer, CompareAndSetResult<Expense>> result : results.entrySet()) {
+            if (result.getValue().isUpdated()) {
+                invalidate(result.getKey());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public boolean deleteEntity(int id) throws SQLException {
+        boolean deleted = delegate.deleteEntity(id);
+        invalidate(id);
+        return deleted;
+    }
+
+    /**
+     * Which expenses matched isn't known without another query, so this empties the store.
+     */
+    @Override
+    public int deleteWhere(Criteria criteria) throws SQLException {
+        int deleted = delegate.deleteWhere(criteria);
+        if (deleted > 0) {
+            UnitOfWork.afterEnd(this::clear);
+        }
+        return deleted;
+    }
+
+    /**
+     * Drop one stored expense, for when its row was changed some other way.
+     */
+    public void evict(int id) {
+        remove(id);
+    }
+
+    /**
+     * Drop every stored expense. The slabs are kept for reuse.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            Arrays.fill(keys, 0);
+            size = 0;
+            nextSlot = 0;
+            freeCount = 0;
+            hand = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return How many expenses are stored, including expired ones not yet replaced.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return How many expenses were given up to make room for others.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private void invalidate(int id) {
+        remove(id);
+        if (UnitOfWork.isActive()) {
+            UnitOfWork.afterEnd(() -> remove(id));
+        }
+    }
+
+    private void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            int slot = removeKey(id);
+            if (slot != noSlot) {
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                }
+                freeSlots[freeCount++] = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Store expenses loaded after taking the stamp, unless a write dropped something meanwhile, which could
+     * have been one of these.
+     */
+    private void store(Collection<Expense> expenses, long stamp) {
+        lock.writeLock().lock();
+        try {
+            if (generation != stamp) {
+                return;
+            }
+            int now = now();
+            for (Expense expense : expenses) {
+                if (expense.getId() <= 0) {
+                    continue;
+                }
+                int slot = find(expense.getId());
+                if (slot == noSlot) {
+                    slot = allocate();
+                    insertKey(expense.getId(), slot);
+                }
+                ByteBuffer slab = slab(slot);
+                int offset = offset(slot);
+                slab.putInt(offset + idOffset, expense.getId());
+                slab.putInt(offset + issuerOffset, expense.getIssuer());
+                slab.putLong(offset + amountOffset, expense.getAmount());
+                slab.putLong(offset + dateOffset, expense.getDate());
+                slab.put(offset + statusOffset, (byte) expense.getStatus().ordinal());
+                slab.put(offset + referencedOffset, (byte) 0);
+                slab.putInt(offset + storedAtOffset, now);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return A slot for a new record: a freed one, a never used one, or the first the clock hand finds
+     * expired or unread since its last pass.
+     */
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (nextSlot < capacity) {
+            if ((nextSlot >>> slabShift) == slabs.size()) {
+                int records = Math.min(slabRecords, capacity - nextSlot);
+                slabs.add(ByteBuffer.allocateDirect(records * recordSize));
+            }
+            return nextSlot++;
+        }
+        while (true) {
+            int slot = hand;
+            hand = (hand + 1) % nextSlot;
+            ByteBuffer slab = slab(slot);
+            int offset = offset(slot);
+            if (slab.get(offset + referencedOffset) == 0 || expired(slot)) {
+                removeKey(slab.getInt(offset + idOffset));
+                evictions.increment();
+                return slot;
+            }
+            slab.put(offset + referencedOffset, (byte) 0);
+        }
+    }
+
+    private boolean expired(int slot) {
+        return now() - slab(slot).getInt(offset(slot) + storedAtOffset) >= ttlSeconds;
+    }
+
+    private int now() {
+        return (int) TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+    }
+
+    private ByteBuffer slab(int slot) {
+        return slabs.get(slot >>> slabShift);
+    }
+
+    private static int offset(int slot) {
+        return (slot & (slabRecords - 1)) * recordSize;
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int find(int id) {
+        int mask = keys.length - 1;
+        for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == id) {
+                return slots[i];
+            }
+            if (keys[i] == 0) {
+                return noSlot;
+            }
+        }
+    }
+
+    private void insertKey(int id, int slot) {
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        int i = hash(id) & mask;
+        while (keys[i] != 0 && keys[i] != id) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == 0) {
+            size++;
+        }
+        keys[i] = id;
+        slots[i] = slot;
+    }
+
+    /**
+     * Remove an id, shifting back the entries after it so lookups never need tombstones.
+     * @return The id's slot, or noSlot if it wasn't there.
+     */
+    private int removeKey(int id) {
+        int mask = keys.length - 1;
+        int i = hash(id) & mask;
+        while (keys[i] != id) {
+            if (keys[i] == 0) {
+                return noSlot;
+            }
+            i = (i + 1) & mask;
+        }
+        int slot = slots[i];
+        for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            // The entry at j can fill the hole at i only if its home isn't cyclically between them.
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!stays) {
+                keys[i] = keys[j];
+                slots[i] = slots[j];
+                i = j;
+            }
+        }
+        keys[i] = 0;
+        size--;
+        return slot;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new int[oldKeys.length * 2];
+        slots = new int[oldSlots.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                insertKey(oldKeys[i], oldSlots[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package dev.simmons.data;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The default mapper, which walks the entity's mapping plan column by column.
+ * @param <T> The entity type.
+ */
+class PlanMapper<T> implements EntityMapper<T> {
+    private final EntityPlan<T> plan;
+    private final List<ColumnMapping<T>> columns;
+    private final List<ColumnMapping<T>> valueColumns;
+
+    PlanMapper(EntityPlan<T> plan) {
+        this.plan = plan;
+        this.columns = plan.getColumns();
+        this.valueColumns = plan.getValueColumns();
+    }
+
+    @Override
+    public T map(ResultSet rs) throws SQLException {
+        T entity = plan.newInstance();
+        for (ColumnMapping<T> column : columns) {
+            column.read(rs, entity);
+        }
+        return entity;
+    }
+
+    @Override
+    public void bindValues(PreparedStatement statement, T entity) throws SQLException {
+        int index = 1;
+        for (ColumnMapping<T> column : valueColumns) {
+            column.bind(statement, index++, entity);
+        }
+    }
+
+    @Override
+    public void bindKey(PreparedStatement statement, int index, T entity) throws SQLException {
+        plan.getPrimaryKey().bind(statement, index, entity);
+    }
+}
@@ -13,6 +13,9 @@ public class PostgresEmployeeDAO implements EmployeeDAO{
     private static final String emp_id = "employee_id";
     private static final String emp_first = "first_name";
     private static final String emp_last = "last_name";
+    // Rows are read by position, in this order.
+    private static final ResultLayout layout = new ResultLayout(emp_id, emp_first, emp_last);
+    private static final String select = "select " + layout.selectList() + " from employee";
     @Override
     public Employee createEmployee(Employee employee) {
         try (Connection conn = PostgresConnection.getConnection()) {
@@ -41,18 +44,15 @@ public class PostgresEmployeeDAO implements EmployeeDAO{
     @Override
     public Employee getEmployeeById(int id) {
         try (Connection conn = PostgresConnection.getConnection()) {
-            String sql = "select * from employee where employee_id = ?;";
+            String sql = select + " where employee_id = ?;";
             PreparedStatement statement = conn.prepareStatement(sql);
             statement.setInt(1, id);
 
             ResultSet rs = statement.executeQuery();
+            layout.verify(sql, rs);
             rs.next();
-            Employee employee = new Employee();
-            employee.setId(rs.getInt(emp_id));
-            employee.setFirstName(rs.getString(emp_first));
-            employee.setLastName(rs.getString(emp_last));
 
-            return employee;
+            return readEmployee(rs);
         } catch (SQLException se) {
             if (se.getSQLState().equals("24000")) {
                 Logger.log(Logger.Level.WARNING, "Search for non-existent employee with id: " + id);
@@ -68,17 +68,13 @@ public class PostgresEmployeeDAO implements EmployeeDAO{
         List<Employee> employees = new ArrayList<>();
 
         try (Connection conn = PostgresConnection.getConnection()) {
-            String sql = "select * from employee;";
+            String sql = select + ";";
             PreparedStatement statement = conn.prepareStatement(sql);
 
             ResultSet rs = statement.executeQuery();
-            Employee emp;
+            layout.verify(sql, rs);
             while (rs.next()) {
-                emp = new Employee();
-                emp.setId(rs.getInt(emp_id));
-                emp.setFirstName(rs.getString(emp_first));
-                emp.setLastName(rs.getString(emp_last));
-                employees.add(emp);
+                employees.add(readEmployee(rs));
             }
         } catch (SQLException se) {
             Logger.log(Logger.Level.ERROR, se);
@@ -128,4 +124,17 @@ public class PostgresEmployeeDAO implements EmployeeDAO{
         }
         return false;
     }
+
+    /**
+     * Read the employee on the result set's current row by column position.
+     * @param rs A result set positioned on an employee row, selected in the layout's column order.
+     * @return The employee.
+     */
+    static Employee readEmployee(ResultSet rs) throws SQLException {
+        Employee emp = new Employee();
+        emp.setId(rs.getInt(1));
+        emp.setFirstName(rs.getString(2));
+        emp.setLastName(rs.getString(3));
+        return emp;
+    }
 }
@@ -15,6 +15,9 @@ public class PostgresExpenseDAO implements ExpenseDAO{
     private static final String exp_date = "date";
     private static final String exp_issuer = "issuer";
     private static final String exp_status = "status";
+    // Rows are read by position, in this order.
+    private static final ResultLayout layout = new ResultLayout(exp_id, exp_amount, exp_status, exp_date, exp_issuer);
+    private static final String select = "select " + layout.selectList() + " from expense";
     @Override
     public Expense createExpense(Expense expense) {
         try (Connection conn = PostgresConnection.getConnection()) {
@@ -53,20 +56,15 @@ public class PostgresExpenseDAO implements ExpenseDAO{
     @Override
     public Expense getExpenseById(int id) {
         try (Connection conn = PostgresConnection.getConnection()) {
-            String sql = "select * from expense where expense_id = ?;";
+            String sql = select + " where expense_id = ?;";
             PreparedStatement statement = conn.prepareStatement(sql);
             statement.setInt(1, id);
 
             ResultSet rs = statement.executeQuery();
-            Expense exp = new Expense();
+            layout.verify(sql, rs);
             rs.next();
-            exp.setId(rs.getInt(exp_id));
-            exp.setIssuer(rs.getInt(exp_issuer));
-            exp.setAmount(rs.getLong(exp_amount));
-            exp.setDate(rs.getLong(exp_date));
-            exp.setStatus(Expense.Status.valueOf(rs.getString(exp_status)));
 
-            return exp;
+            return readExpense(rs);
         } catch (SQLException se) {
             if (se.getSQLState().equals("24000")) {
                 Logger.log(Logger.Level.WARNING, "Search for non-existent expense with id " + id);
@@ -82,20 +80,14 @@ public class PostgresExpenseDAO implements ExpenseDAO{
     public List<Expense> getAllExpenses() {
         List<Expense> expenses = new ArrayList<>();
         try (Connection conn = PostgresConnection.getConnection()) {
-            String sql = "select * from expense;";
+            String sql = select + ";";
             PreparedStatement statement = conn.prepareStatement(sql);
 
             ResultSet rs = statement.executeQuery();
+            layout.verify(sql, rs);
 
-            Expense exp;
             while (rs.next()) {
-                exp = new Expense();
-                exp.setIssuer(rs.getInt(exp_issuer));
-                exp.setId(rs.getInt(exp_id));
-                exp.setStatus(Expense.Status.valueOf(rs.getString(exp_status)));
-                exp.setDate(rs.getLong(exp_date));
-                exp.setAmount(rs.getLong(exp_amount));
-                expenses.add(exp);
+                expenses.add(readExpense(rs));
             }
         } catch (SQLException se) {
             Logger.log(Logger.Level.ERROR, se);
@@ -108,21 +100,15 @@ public class PostgresExpenseDAO implements ExpenseDAO{
     public List<Expense> getExpensesByStatus(Expense.Status status) {
         List<Expense> expenses = new ArrayList<>();
         try (Connection conn = PostgresConnection.getConnection()) {
-            String sql = "select * from expense where status = ?;";
+            String sql = select + " where status = ?;";
             PreparedStatement statement = conn.prepareStatement(sql);
             statement.setString(1, status.name());
 
             ResultSet rs = statement.executeQuery();
+            layout.verify(sql, rs);
 
-            Expense exp;
             while (rs.next()) {
-                    exp = new Expense();
-                    exp.setId(rs.getInt(exp_id));
-                    exp.setStatus(Expense.Status.valueOf(rs.getString(exp_status)));
-                    exp.setIssuer(rs.getInt(exp_issuer));
-                    exp.setDate(rs.getLong(exp_date));
-                    exp.setAmount(rs.getLong(exp_amount));
-                    expenses.add(exp);
+                expenses.add(readExpense(rs));
             }
         } catch (SQLException se) {
             Logger.log(Logger.Level.ERROR, se);
@@ -135,21 +121,15 @@ public class PostgresExpenseDAO implements ExpenseDAO{
     public List<Expense> getAllEmployeeExpenses(int employeeId) {
         List<Expense> expenses = new ArrayList<>();
         try (Connection conn = PostgresConnection.getConnection()) {
-            String sql = "select * from expense where issuer = ?;";
+            String sql = select + " where issuer = ?;";
             PreparedStatement statement = conn.prepareStatement(sql);
             statement.setInt(1, employeeId);
 
             ResultSet rs = statement.executeQuery();
+            layout.verify(sql, rs);
 
-            Expense exp;
             while (rs.next()) {
-                exp = new Expense();
-                exp.setId(rs.getInt(exp_id));
-                exp.setDate(rs.getLong(exp_date));
-                exp.setIssuer(rs.getInt(exp_issuer));
-                exp.setStatus(Expense.Status.valueOf(rs.getString(exp_status)));
-                exp.setAmount(rs.getLong(exp_amount));
-                expenses.add(exp);
+                expenses.add(readExpense(rs));
             }
 
         } catch (SQLException se) {
@@ -218,4 +198,19 @@ public class PostgresExpenseDAO implements ExpenseDAO{
         }
         return false;
     }
+
+    /**
+     * Read the expense on the result set's current row by column position.
+     * @param rs A result set positioned on an expense row, selected in the layout's column order.
+     * @return The expense.
+     */
+    static Expense readExpense(ResultSet rs) throws SQLException {
+        Expense exp = new Expense();
+        exp.setId(rs.getInt(1));
+        exp.setAmount(rs.getLong(2));
+        exp.setStatus(Expense.Status.valueOf(rs.getString(3)));
+        exp.setDate(rs.getLong(4));
+        exp.setIssuer(rs.getInt(5));
+        return exp;
+    }
 }
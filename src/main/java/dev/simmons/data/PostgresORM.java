@@ -1,219 +1,616 @@
 package dev.simmons.data;
 
-import dev.simmons.annotation.DBEntity;
-import dev.simmons.annotation.DbField;
-import dev.simmons.annotation.PrimaryKey;
-import dev.simmons.entities.Expense;
+import dev.simmons.codegen.EntitySql;
 import dev.simmons.exceptions.NoSuchEntityException;
-import dev.simmons.utilities.connection.PostgresConnection;
+import dev.simmons.utilities.Environment;
 import dev.simmons.utilities.logging.Logger;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class PostgresORM<T> implements DataWrapperORM<T>{
-
-    private final Class<T> typeClass;
-    protected Field[] fields;
-    protected Map<String, Method> getters;
-    protected Map<String, Method> setters;
-    protected String table;
+    private static final boolean generateMappersByDefault = "true".equalsIgnoreCase(System.getenv("ORM_GENERATED_MAPPERS"));
+    private static final int defaultBatchSize = Environment.getInt("ORM_BATCH_SIZE", 500, 1);
+    private static final int defaultFetchSize = Environment.getInt("ORM_FETCH_SIZE", 1000, 1);
+
+    protected final EntityPlan<T> plan;
+    private final boolean generateMapper;
+    private volatile EntityMapper<T> mapper;
+    private final ResultLayout layout;
+    private volatile int batchSize = defaultBatchSize;
+    private volatile int fetchSize = defaultFetchSize;
+    protected final String table;
 
     protected final String createSql;
     protected final String getByIdSql;
+    protected final String getByIdsSql;
     protected final String getAllSql;
     protected final String updateSql;
+    protected final String upsertSql;
     protected final String deleteSql;
+    protected final String pageSql;
+    // Partial update statements, keyed by the set of value columns they write.
+    private final ConcurrentMap<BitSet, String> partialUpdateSql = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ColumnMapping<T>, String> compareAndSetSql = new ConcurrentHashMap<>();
 
     public PostgresORM(Class<T> clazz) {
-        this.typeClass = clazz;
+        this(clazz, generateMappersByDefault);
+    }
 
-        if (clazz.isAnnotationPresent(DBEntity.class)) {
-            table = clazz.getAnnotation(DBEntity.class).value();
+    /**
+     * @param clazz The @DBEntity class to map.
+     * @param generateMapper Whether to generate a dedicated mapper class on first use for an entity compiled without
+     *                       the annotation processor, instead of walking the mapping plan for every row. Entities with
+     *                       a compile-time mapping always use its mapper.
+     */
+    public PostgresORM(Class<T> clazz, boolean generateMapper) {
+        this.generateMapper = generateMapper;
+        GeneratedMapping<T> mapping = generatedMapping(clazz);
+        if (mapping != null) {
+            // Built by the annotation processor: no field scanning, and the mapper is already compiled.
+            plan = mapping.plan();
+            mapper = mapping.mapper();
+            createSql = mapping.createSql();
+            getByIdSql = mapping.getByIdSql();
+            getByIdsSql = mapping.getByIdsSql();
+            getAllSql = mapping.getAllSql();
+            updateSql = mapping.updateSql();
+            upsertSql = mapping.upsertSql();
+            deleteSql = mapping.deleteSql();
+            pageSql = mapping.pageSql();
+        } else {
+            plan = EntityPlan.of(clazz);
+            List<String> columns = new ArrayList<>();
+            for (ColumnMapping<T> column : plan.getColumns()) {
+                columns.add(column.getColumn());
+            }
+            List<String> valueColumns = new ArrayList<>();
+            for (ColumnMapping<T> column : plan.getValueColumns()) {
+                valueColumns.add(column.getColumn());
+            }
+            EntitySql sql = new EntitySql(plan.getTable(), plan.getPrimaryKey().getColumn(), columns, valueColumns);
+            createSql = sql.create;
+            getByIdSql = sql.getById;
+            getByIdsSql = sql.getByIds;
+            getAllSql = sql.getAll;
+            updateSql = sql.update;
+            upsertSql = sql.upsert;
+            deleteSql = sql.delete;
+            pageSql = sql.page;
         }
+        table = plan.getTable();
 
-        StringBuilder createStatement = new StringBuilder("insert into ?? (--) values (++);");
-        StringBuilder getByIdStatement = new StringBuilder("select * from ?? where && = ?;");
-        StringBuilder getAllStatement = new StringBuilder("select * from ??;");
-        StringBuilder updateStatement = new StringBuilder("update ?? set <> where && = ?;");
-        StringBuilder deleteStatement = new StringBuilder("delete from ?? where && = ?;");
-
-        int index = createStatement.indexOf("??");
-        createStatement.replace(index, index + 2, table);
+        List<String> selected = new ArrayList<>();
+        for (ColumnMapping<T> column : plan.getColumns()) {
+            selected.add(column.getColumn());
+        }
+        layout = new ResultLayout(selected);
+    }
 
-        index = getByIdStatement.indexOf("??");
-        getByIdStatement.replace(index, index + 2, table);
+    /**
+     * Find the mapping the annotation processor generated for the entity, if it was compiled with one.
+     * @return The generated mapping, or null to fall back to building the plan at runtime.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> GeneratedMapping<T> generatedMapping(Class<T> clazz) {
+        try {
+            Class<?> mappingClass = Class.forName(clazz.getName() + GeneratedMapping.suffix, true, clazz.getClassLoader());
+            if (!GeneratedMapping.class.isAssignableFrom(mappingClass)) {
+                return null;
+            }
+            GeneratedMapping<T> mapping = (GeneratedMapping<T>) mappingClass.getDeclaredConstructor().newInstance();
+            return mapping.plan().getType() == clazz ? mapping : null;
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            Logger.log(Logger.Level.WARNING, "Ignoring the generated mapping for " + clazz.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
 
-        index = getAllStatement.indexOf("??");
-        getAllStatement.replace(index, index + 2, table);
+    @Override
+    public T createEntity(T entity) throws SQLException {
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(createSql, Statement.RETURN_GENERATED_KEYS)) {
+            mapper().bindValues(statement, entity);
 
-        index = updateStatement.indexOf("??");
-        updateStatement.replace(index, index + 2, table);
+            int updated = statement.executeUpdate();
+            if (updated != 1) {
+                Logger.log(Logger.Level.WARNING, "Failed to create for " + table.toUpperCase() + " using values: " + entity);
+            }
 
-        index = deleteStatement.indexOf("??");
-        deleteStatement.replace(index, index + 2, table);
+            try (ResultSet rs = statement.getGeneratedKeys()) {
+                rs.next();
+                plan.getPrimaryKey().set(entity, rs.getInt(1));
+            }
 
-        fields = clazz.getDeclaredFields();
-        for (Field field : fields) {
-            DbField dbField = field.getAnnotation(DbField.class);
-            if (field.isAnnotationPresent(PrimaryKey.class)) {
-                index = getByIdStatement.indexOf("&&");
-                getByIdStatement.replace(index, index + 2, dbField.name());
+            return entity;
+        }
+    }
 
-                index = updateStatement.indexOf("&&");
-                updateStatement.replace(index, index + 2, dbField.name());
+    /**
+     * Insert the entities with JDBC batches of at most {@link #getBatchSize()} rows, all in one transaction.
+     * Generated ids are assigned to the entities only once the transaction commits, so on failure nothing is
+     * stored and the entities are left untouched.
+     * @param entities The entities to create.
+     * @return The same entities, with their ids set.
+     * @throws SQLException If any row fails to insert.
+     */
+    @Override
+    public List<T> createEntities(List<T> entities) throws SQLException {
+        if (entities.isEmpty()) {
+            return entities;
+        }
 
-                index = deleteStatement.indexOf("&&");
-                deleteStatement.replace(index, index + 2, dbField.name());
-            } else {
-                index = createStatement.indexOf("--");
-                createStatement.replace(index, index + 2, dbField.name() + ", --");
+        int[] ids = new int[entities.size()];
+        try (Connection conn = UnitOfWork.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement statement = conn.prepareStatement(createSql, Statement.RETURN_GENERATED_KEYS)) {
+                EntityMapper<T> binder = mapper();
+                int chunk = batchSize;
+                int assigned = 0;
+                for (int start = 0; start < entities.size(); start += chunk) {
+                    int end = Math.min(start + chunk, entities.size());
+                    for (int i = start; i < end; i++) {
+                        binder.bindValues(statement, entities.get(i));
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+
+                    try (ResultSet rs = statement.getGeneratedKeys()) {
+                        while (rs.next() && assigned < end) {
+                            ids[assigned++] = rs.getInt(1);
+                        }
+                    }
+                    if (assigned != end) {
+                        throw new SQLException("Expected " + end + " generated keys for " + table.toUpperCase() + " but got " + assigned + ".");
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                Logger.log(Logger.Level.WARNING, "Rolled back batch create of " + entities.size() + " " + table.toUpperCase() + " rows.");
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
 
-                index = createStatement.indexOf("++");
-                createStatement.replace(index, index+2, "?, ++");
+        ColumnMapping<T> key = plan.getPrimaryKey();
+        for (int i = 0; i < ids.length; i++) {
+            key.set(entities.get(i), ids[i]);
+        }
+        return entities;
+    }
 
-                index = updateStatement.indexOf("<>");
-                updateStatement.replace(index, index + 2, dbField.name() + " = ?, <>");
+    /**
+     * Insert the entity, or update every column of the existing row if one already has its key, in one statement.
+     * An entity with an id of 0 is always inserted and gets a generated id, like {@link #createEntity(Object)}.
+     * @param entity The entity to store.
+     * @return The same entity, with its id set.
+     * @throws SQLException If the row can't be written.
+     */
+    @Override
+    public T upsertEntity(T entity) throws SQLException {
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(upsertSql, upsertReturning())) {
+            EntityMapper<T> binder = mapper();
+            binder.bindValues(statement, entity);
+            binder.bindKey(statement, plan.getValueColumns().size() + 1, entity);
+            statement.executeUpdate();
+
+            int[] ids = new int[1];
+            if (readUpserted(statement, Collections.singletonList(entity), 0, ids)) {
+                advanceKeySequence(conn);
             }
+            plan.getPrimaryKey().set(entity, ids[0]);
+            return entity;
         }
+    }
 
-        index = createStatement.indexOf("--");
-        createStatement.replace(index - 2, index + 2, "");
+    /**
+     * Upsert the entities with JDBC batches of at most {@link #getBatchSize()} rows, all in one transaction,
+     * instead of reading each one first to decide between an insert and an update.
+     * As with {@link #createEntities(List)}, ids are assigned only once the transaction commits.
+     * @param entities The entities to store.
+     * @return The same entities, with their ids set.
+     * @throws SQLException If any row fails; nothing is stored then.
+     * @see #upsertEntity(Object)
+     */
+    @Override
+    public List<T> upsertEntities(List<T> entities) throws SQLException {
+        if (entities.isEmpty()) {
+            return entities;
+        }
 
-        index = createStatement.indexOf("++");
-        createStatement.replace(index - 2, index + 2, "");
+        int[] ids = new int[entities.size()];
+        try (Connection conn = UnitOfWork.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement statement = conn.prepareStatement(upsertSql, upsertReturning())) {
+                EntityMapper<T> binder = mapper();
+                int keyIndex = plan.getValueColumns().size() + 1;
+                boolean explicitInserts = false;
+                for (int start = 0; start < entities.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, entities.size());
+                    for (int i = start; i < end; i++) {
+                        binder.bindValues(statement, entities.get(i));
+                        binder.bindKey(statement, keyIndex, entities.get(i));
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    explicitInserts |= readUpserted(statement, entities.subList(start, end), start, ids);
+                }
+                if (explicitInserts) {
+                    advanceKeySequence(conn);
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                Logger.log(Logger.Level.WARNING, "Rolled back batch upsert of " + entities.size() + " " + table.toUpperCase() + " rows.");
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
 
-        index = updateStatement.indexOf("<>");
-        updateStatement.replace(index - 2, index + 2, "");
+        ColumnMapping<T> key = plan.getPrimaryKey();
+        for (int i = 0; i < ids.length; i++) {
+            key.set(entities.get(i), ids[i]);
+        }
+        return entities;
+    }
 
-        createSql = createStatement.toString();
-        getByIdSql = getByIdStatement.toString();
-        getAllSql = getAllStatement.toString();
-        updateSql = updateStatement.toString();
-        deleteSql = deleteStatement.toString();
+    // xmax is 0 for a freshly inserted row version and set for one written by the conflict's update.
+    private String[] upsertReturning() {
+        return new String[]{plan.getPrimaryKey().getColumn(), "xmax"};
     }
 
-    @Override
-    public T createEntity(T entity) throws SQLException {
-        try (Connection conn = PostgresConnection.getConnection()) {
-            PreparedStatement statement = conn.prepareStatement(createSql, Statement.RETURN_GENERATED_KEYS);
-            int index = 1;
-            Field idField = null;
-            for (Field field : fields) {
-                if (field.isAnnotationPresent(PrimaryKey.class)) {
-                    idField = field;
-                    continue;
+    /**
+     * Read the returned keys of an upsert into ids, starting at offset.
+     * @return Whether any row was inserted with a key the caller chose rather than one from the sequence.
+     */
+    private boolean readUpserted(PreparedStatement statement, List<T> entities, int offset, int[] ids) throws SQLException {
+        ColumnMapping<T> key = plan.getPrimaryKey();
+        boolean explicitInsert = false;
+        int read = 0;
+        try (ResultSet rs = statement.getGeneratedKeys()) {
+            while (rs.next() && read < entities.size()) {
+                ids[offset + read] = rs.getInt(1);
+                boolean inserted = "0".equals(rs.getString(2));
+                Object given = key.get(entities.get(read));
+                if (inserted && given instanceof Number && ((Number) given).intValue() != 0) {
+                    explicitInsert = true;
                 }
+                read++;
+            }
+        }
+        if (read != entities.size()) {
+            throw new SQLException("Expected " + entities.size() + " upserted keys for " + table.toUpperCase() + " but got " + read + ".");
+        }
+        return explicitInsert;
+    }
 
-                Object obj = getGetter(this.typeClass, field.getName()).invoke(entity);
+    /**
+     * Move the key's sequence past the largest key in the table, so rows inserted with a chosen key
+     * can't collide with keys the sequence hands out later.
+     */
+    private void advanceKeySequence(Connection conn) throws SQLException {
+        String key = plan.getPrimaryKey().getColumn();
+        String sql = "select setval(seq, greatest((select max(" + key + ") from " + table + "), " +
+                "coalesce(pg_sequence_last_value(seq::regclass), 1))) from (select pg_get_serial_sequence('" + table + "', '" + key + "') as seq) s;";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.executeQuery().close();
+        }
+    }
 
-                prepareStatementField(field, statement, obj, index);
+    @Override
+    public T getEntityById(int id) throws SQLException {
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(getByIdSql)) {
+            statement.setInt(1, id);
 
-                index++;
+            try (ResultSet rs = statement.executeQuery()) {
+                layout.verify(getByIdSql, rs);
+                if (!rs.next()) {
+                    // Same state the driver reports for reading an empty result, which callers treat as "not found".
+                    throw new SQLException("No " + table.toUpperCase() + " matching (id: " + id + ").", "24000");
+                }
+                return mapper().map(rs);
             }
+        }
+    }
 
-            int updated = statement.executeUpdate();
-            if (updated != 1) {
-                Logger.log(Logger.Level.WARNING, "Failed to create for " + table.toUpperCase() + " using values: " + entity);
-            }
+    /**
+     * Get every entity with one of the ids in a single round trip, instead of one getEntityById call
+     * (and one connection) each.
+     * @param ids The ids to look up. Duplicates are looked up once.
+     * @return The entities found, keyed by id in the order the ids were given. Ids with no entity are simply
+     * not in the map, rather than failing the whole lookup.
+     */
+    @Override
+    public Map<Integer, T> getEntitiesByIds(int[] ids) throws SQLException {
+        Map<Integer, T> found = new LinkedHashMap<>();
+        if (ids.length == 0) {
+            return found;
+        }
 
-            ResultSet rs = statement.getGeneratedKeys();
-            rs.next();
-            int id = rs.getInt(1);
-            if (idField == null) {
-                Logger.log(Logger.Level.WARNING, "No id field found in field list.");
-                return null;
+        ColumnMapping<T> key = plan.getPrimaryKey();
+        Object[] elements = new Object[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            elements[i] = ids[i];
+        }
+        Map<Integer, T> byId = new HashMap<>();
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(getByIdsSql)) {
+            statement.setArray(1, conn.createArrayOf(arrayType(key), elements));
+            for (T entity : readAll(getByIdsSql, statement)) {
+                byId.put(((Number) key.get(entity)).intValue(), entity);
             }
+        }
 
-            Method idSetter = getSetter(this.typeClass, idField);
-            idSetter.invoke(entity, id);
+        for (int id : ids) {
+            T entity = byId.get(id);
+            if (entity != null) {
+                found.put(id, entity);
+            }
+        }
+        return found;
+    }
 
-            return entity;
-        } catch (IllegalAccessException | IllegalArgumentException |
-                NoSuchMethodException | InvocationTargetException iae) {
-            Logger.log(Logger.Level.ERROR, iae);
+    @Override
+    public List<T> getAllEntities() throws SQLException {
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(getAllSql)) {
+            return readAll(getAllSql, statement);
         }
+    }
 
-        return null;
+    @Override
+    public List<T> getPage(int afterId, int limit) throws SQLException {
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(pageSql)) {
+            statement.setInt(1, afterId);
+            statement.setInt(2, limit);
+            return readAll(pageSql, statement);
+        }
     }
 
     @Override
-    public T getEntityById(int id) throws SQLException {
-        try (Connection conn = PostgresConnection.getConnection()) {
-            PreparedStatement statement = conn.prepareStatement(getByIdSql);
-            statement.setInt(1, id);
+    public List<T> findBy(String field, Object value) throws SQLException {
+        return find(Criteria.where(field, value));
+    }
 
-            ResultSet rs = statement.executeQuery();
-            T entity = createNewEntity();
+    /**
+     * Get the entities matching every condition of the criteria, filtered by the database.
+     * @throws IllegalArgumentException If the criteria names a field that isn't mapped or has a value of the wrong type.
+     */
+    @Override
+    public List<T> find(Criteria criteria) throws SQLException {
+        String sql = "select " + plan.selectList() + " from " + table + " where " + where(criteria) + ";";
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(sql)) {
+            bind(conn, statement, criteria, 1);
+            return readAll(sql, statement);
+        }
+    }
 
-            rs.next();
-            for (Field field : fields) {
-                fillFieldFromResult(rs, entity, field);
+    /**
+     * Check whether any entity matches the criteria, without reading any of them.
+     */
+    @Override
+    public boolean exists(Criteria criteria) throws SQLException {
+        String sql = "select exists (select 1 from " + table + " where " + where(criteria) + ");";
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(sql)) {
+            bind(conn, statement, criteria, 1);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getBoolean(1);
             }
-
-            return entity;
-        } catch (InvocationTargetException | IllegalAccessException |
-                InstantiationException | NoSuchMethodException e) {
-            Logger.log(Logger.Level.ERROR, "Attempted to getEntityById " +
-                    "for Entity that did not conform to expectations.");
         }
+    }
 
-        return null;
+    /**
+     * Delete every entity matching the criteria with one statement.
+     * @return How many were deleted.
+     * @throws IllegalArgumentException For an empty criteria, which would empty the table.
+     */
+    @Override
+    public int deleteWhere(Criteria criteria) throws SQLException {
+        if (criteria.isEmpty()) {
+            throw new IllegalArgumentException("Refusing to delete every " + plan.getType().getSimpleName() + "; give at least one condition.");
+        }
+        String sql = "delete from " + table + " where " + where(criteria) + ";";
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(sql)) {
+            bind(conn, statement, criteria, 1);
+            return statement.executeUpdate();
+        }
     }
 
+    /**
+     * Get a page of the entities matching the criteria, in key order.
+     * @param criteria The conditions the entities must meet.
+     * @param afterId Only entities with a greater id are returned; 0 for the first page.
+     * @param limit The most entities to return.
+     * @return The page, which is shorter than the limit only if it is the last one.
+     */
     @Override
-    public List<T> getAllEntities() throws SQLException {
-        try (Connection conn = PostgresConnection.getConnection()) {
-            PreparedStatement statement = conn.prepareStatement(getAllSql);
+    public List<T> getPage(Criteria criteria, int afterId, int limit) throws SQLException {
+        String key = plan.getPrimaryKey().getColumn();
+        String sql = "select " + plan.selectList() + " from " + table + " where " + where(criteria) +
+                " and " + key + " > ? order by " + key + " limit ?;";
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(sql)) {
+            int index = bind(conn, statement, criteria, 1);
+            statement.setInt(index++, afterId);
+            statement.setInt(index, limit);
+            return readAll(sql, statement);
+        }
+    }
 
-            ResultSet rs = statement.executeQuery();
-            List<T> list = new ArrayList<>();
+    /**
+     * Get a page of the entities whose field equals the value, in key order.
+     * @see #getPage(Criteria, int, int)
+     */
+    public List<T> getPage(String field, Object value, int afterId, int limit) throws SQLException {
+        return getPage(Criteria.where(field, value), afterId, limit);
+    }
 
-            while (rs.next()) {
-                T entity = createNewEntity();
-                for (Field field : fields) {
-                    fillFieldFromResult(rs, entity, field);
+    /**
+     * Render the criteria as a where clause of parameter placeholders. The text only depends on which columns
+     * are compared and how, so it is the same statement, and a cached one, for any values.
+     * <p>
+     * Every field and value is checked here, before a connection is borrowed or a statement prepared.
+     * @throws IllegalArgumentException If the criteria names a field that isn't mapped or has a value of the wrong type.
+     */
+    protected String where(Criteria criteria) {
+        StringBuilder where = new StringBuilder();
+        for (Criteria.Condition condition : criteria.getConditions()) {
+            ColumnMapping<T> column = column(condition.field);
+            if (where.length() > 0) {
+                where.append(" and ");
+            }
+            if (condition.operator == Criteria.Operator.IN) {
+                for (Object value : condition.values) {
+                    checked(column, value);
                 }
-                list.add(entity);
+                // One array parameter instead of one placeholder per value keeps the SQL the same for any list.
+                where.append(column.getColumn()).append(" = any(?)");
+            } else if (condition.value == null && condition.operator == Criteria.Operator.EQUALS) {
+                where.append(column.getColumn()).append(" is null");
+            } else {
+                checked(column, condition.value);
+                where.append(column.getColumn()).append(" ").append(condition.operator.symbol).append(" ?");
             }
-
-            return list;
-        } catch (InvocationTargetException | IllegalAccessException |
-                InstantiationException | NoSuchMethodException e) {
-            Logger.log(Logger.Level.ERROR, "Attempted to getEntityById " +
-                    "for Entity that did not conform to expectations.");
         }
-        return null;
+        return where.length() == 0 ? "true" : where.toString();
     }
 
-    @Override
-    public T replaceEntity(T entity) throws SQLException {
-        try (Connection conn = PostgresConnection.getConnection()) {
-            PreparedStatement statement = conn.prepareStatement(updateSql);
-            int index = 1;
-            Field idField = null;
-            for (Field field : fields) {
-                if (field.isAnnotationPresent(PrimaryKey.class)) {
-                    idField = field;
-                    continue;
+    /**
+     * Bind the criteria's values in the order {@link #where(Criteria)} placed their parameters, once it has checked them.
+     * @return The next free parameter index.
+     */
+    protected int bind(Connection conn, PreparedStatement statement, Criteria criteria, int index) throws SQLException {
+        for (Criteria.Condition condition : criteria.getConditions()) {
+            ColumnMapping<T> column = column(condition.field);
+            if (condition.operator == Criteria.Operator.IN) {
+                Object[] elements = new Object[condition.values.size()];
+                for (int i = 0; i < elements.length; i++) {
+                    elements[i] = column.getCodec().format(condition.values.get(i));
                 }
+                statement.setArray(index++, conn.createArrayOf(arrayType(column), elements));
+            } else if (condition.value != null || condition.operator != Criteria.Operator.EQUALS) {
+                column.getCodec().bind(statement, index++, condition.value);
+            }
+        }
+        return index;
+    }
 
-                Object obj = getGetter(this.typeClass, field.getName()).invoke(entity);
+    private static Object checked(ColumnMapping<?> column, Object value) {
+        if (value == null || !column.accepts(value)) {
+            throw new IllegalArgumentException("Can't compare " + column.getFieldName() + " (" +
+                    column.getJavaType().getSimpleName() + ") with " + value + ".");
+        }
+        return value;
+    }
 
-                prepareStatementField(field, statement, obj, index);
+    // Element type of the array an IN list is sent as; the values go over in their text form.
+    private static String arrayType(ColumnMapping<?> column) {
+        switch (column.getSqlType()) {
+            case Types.BIGINT:
+                return "int8";
+            case Types.INTEGER:
+                return "int4";
+            case Types.FLOAT:
+                return "float4";
+            case Types.TIMESTAMP:
+                return "timestamp";
+            default:
+                return "varchar";
+        }
+    }
 
-                index++;
+    private List<T> readAll(String sql, PreparedStatement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery()) {
+            layout.verify(sql, rs);
+            List<T> list = new ArrayList<>();
+            RowMapper<T> rowMapper = mapper();
+            while (rs.next()) {
+                list.add(rowMapper.map(rs));
             }
+            return list;
+        }
+    }
+
+    /**
+     * Find a mapped column by its field name or column name.
+     * @throws IllegalArgumentException If neither matches, so only known column names ever reach the SQL.
+     */
+    protected ColumnMapping<T> column(String name) {
+        for (ColumnMapping<T> column : plan.getColumns()) {
+            if (column.getFieldName().equals(name) || column.getColumn().equalsIgnoreCase(name)) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException(plan.getType().getSimpleName() + " has no mapped field " + name + ".");
+    }
+
+    /**
+     * Read every row through a server-side cursor, {@link #getFetchSize()} rows at a time, instead of
+     * buffering the whole table. The stream holds a connection and an open transaction until it is closed,
+     * so use it in a try-with-resources block; it also lets go of them by itself once fully consumed.
+     * @return The entities, in no particular order. Read errors surface as UncheckedSQLException.
+     */
+    @Override
+    public Stream<T> streamAllEntities() throws SQLException {
+        Connection conn = UnitOfWork.getConnection();
+        if (conn == null) {
+            throw new SQLException("Unable to connect to stream " + table.toUpperCase() + ".", "08001");
+        }
+
+        Cursor cursor = null;
+        try {
+            cursor = new Cursor(conn);
+            Cursor open = cursor;
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(open::close);
+        } catch (SQLException | RuntimeException e) {
+            if (cursor != null) {
+                cursor.close();
+            } else {
+                conn.close();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public T replaceEntity(T entity) throws SQLException {
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(updateSql)) {
+            EntityMapper<T> binder = mapper();
+            binder.bindValues(statement, entity);
 
             // This is the id, we set it last so we don't need to worry about figuring out the index
-            int idValue = (Integer)getGetter(this.typeClass, idField.getName()).invoke(entity);
-            prepareStatementField(idField, statement, idValue, index);
+            binder.bindKey(statement, plan.getValueColumns().size() + 1, entity);
 
             int updated = statement.executeUpdate();
             if (updated != 1) {
@@ -222,19 +619,182 @@ public class PostgresORM<T> implements DataWrapperORM<T>{
             }
 
             return entity;
-        } catch (IllegalAccessException | IllegalArgumentException |
-                NoSuchMethodException | InvocationTargetException iae) {
-            Logger.log(Logger.Level.ERROR, "Issue with the generic-type given to PostgresORM: issues with method or field access.");
-            Logger.log(Logger.Level.ERROR, iae);
         }
+    }
+
+    /**
+     * Update only the named fields of an entity, leaving the rest of its row alone. Writing fewer columns
+     * means less WAL and less for triggers to look at than {@link #replaceEntity(Object)}.
+     * The statement for each combination of columns is built once and reused, whatever order the fields are named in.
+     * @param entity The entity, with its key and the new values of the named fields set.
+     * @param fields Field or column names of the entity's non-key columns. If empty, nothing is written.
+     * @return The entity, or null if no row has its key.
+     * @throws IllegalArgumentException If a name isn't a mapped non-key field.
+     */
+    @Override
+    public T updateFields(T entity, Collection<String> fields) throws SQLException {
+        List<ColumnMapping<T>> valueColumns = plan.getValueColumns();
+        BitSet selected = new BitSet(valueColumns.size());
+        for (String field : fields) {
+            ColumnMapping<T> column = column(field);
+            if (column.isPrimaryKey()) {
+                throw new IllegalArgumentException("The key of " + plan.getType().getSimpleName() + " can't be updated.");
+            }
+            selected.set(valueColumns.indexOf(column));
+        }
+        if (selected.isEmpty()) {
+            return entity;
+        }
+
+        String sql = partialUpdateSql.computeIfAbsent(selected, this::partialUpdate);
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+                valueColumns.get(i).bind(statement, index++, entity);
+            }
+            plan.getPrimaryKey().bind(statement, index, entity);
+
+            if (statement.executeUpdate() != 1) {
+                Logger.log(Logger.Level.WARNING, "Failed to update " + fields + " for " + table.toUpperCase() + " using values: " + entity);
+                return null;
+            }
+            return entity;
+        }
+    }
 
-        return null;
+    private String partialUpdate(BitSet columns) {
+        List<ColumnMapping<T>> valueColumns = plan.getValueColumns();
+        StringBuilder set = new StringBuilder();
+        for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+            if (set.length() > 0) {
+                set.append(", ");
+            }
+            set.append(valueColumns.get(i).getColumn()).append(" = ?");
+        }
+        return "update " + table + " set " + set + " where " + plan.getPrimaryKey().getColumn() + " = ?;";
+    }
+
+    /**
+     * Set one field of an entity, but only if it currently holds the expected value, in a single statement.
+     * The same statement reads what the field held beforehand, so a missing row and a row in some other state
+     * can be told apart without a second query or an exception from the database.
+     * @param id The entity's key.
+     * @param field The field or column name of a non-key column.
+     * @param expected The value the field must hold for the update to happen.
+     * @param value The new value.
+     * @return What happened, with the updated entity if it was updated.
+     * @throws IllegalArgumentException If the field isn't a mapped non-key field, or either value is null or of the wrong type.
+     */
+    @Override
+    public CompareAndSetResult<T> compareAndSet(int id, String field, Object expected, Object value) throws SQLException {
+        ColumnMapping<T> column = column(field);
+        if (column.isPrimaryKey()) {
+            throw new IllegalArgumentException("The key of " + plan.getType().getSimpleName() + " can't be updated.");
+        }
+        checked(column, expected);
+        checked(column, value);
+
+        String sql = compareAndSetSql.computeIfAbsent(column, this::compareAndSet);
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(sql)) {
+            column.getCodec().bind(statement, 1, value);
+            statement.setInt(2, id);
+            column.getCodec().bind(statement, 3, expected);
+            statement.setInt(4, id);
+
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                int previousIndex = plan.getColumns().size() + 1;
+                Object previous = column.getCodec().read(rs, previousIndex);
+                if (rs.wasNull()) {
+                    previous = null;
+                }
+                if (previous == null) {
+                    return new CompareAndSetResult<>(CompareAndSetResult.Outcome.NOT_FOUND, null, null);
+                }
+                // The updated row's key is null when the where clause matched nothing.
+                rs.getObject(plan.getPrimaryKey().getSelectIndex());
+                if (rs.wasNull()) {
+                    return new CompareAndSetResult<>(CompareAndSetResult.Outcome.MISMATCH, null, previous);
+                }
+                return new CompareAndSetResult<>(CompareAndSetResult.Outcome.UPDATED, mapper().map(rs), previous);
+            }
+        }
+    }
+
+    /**
+     * Compare-and-set the field of every entity matching the criteria, as one set-based statement.
+     * Matching entities whose field holds something other than the expected value are left alone and reported as mismatches.
+     * @param criteria Which entities to change. It must have at least one condition.
+     * @return The outcome for each matching entity, by id in key order. Ids the criteria asked for that have no
+     * entity are simply absent.
+     * @throws IllegalArgumentException For an empty criteria, or for the same reasons as {@link #compareAndSet(int, String, Object, Object)}.
+     */
+    @Override
+    public Map<Integer, CompareAndSetResult<T>> compareAndSetAll(Criteria criteria, String field, Object expected, Object value) throws SQLException {
+        if (criteria.isEmpty()) {
+            throw new IllegalArgumentException("Refusing to update every " + plan.getType().getSimpleName() + "; give at least one condition.");
+        }
+        ColumnMapping<T> column = column(field);
+        if (column.isPrimaryKey()) {
+            throw new IllegalArgumentException("The key of " + plan.getType().getSimpleName() + " can't be updated.");
+        }
+        checked(column, expected);
+        checked(column, value);
+
+        String key = plan.getPrimaryKey().getColumn();
+        String where = where(criteria);
+        StringBuilder updatedColumns = new StringBuilder();
+        for (ColumnMapping<T> mapped : plan.getColumns()) {
+            updatedColumns.append("u.").append(mapped.getColumn()).append(", ");
+        }
+        // As with compareAndSet, the matched subquery reads the rows as they were before the update.
+        String sql = "with updated as (update " + table + " set " + column.getColumn() + " = ? where " + where + " and " +
+                column.getColumn() + " = ? returning " + plan.selectList() + ") " +
+                "select " + updatedColumns + "matched.previous, matched.id from (select " + key + " as id, " + column.getColumn() +
+                " as previous from " + table + " where " + where + ") matched left join updated u on u." + key + " = matched.id " +
+                "order by matched.id;";
+
+        Map<Integer, CompareAndSetResult<T>> results = new LinkedHashMap<>();
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(sql)) {
+            column.getCodec().bind(statement, 1, value);
+            int index = bind(conn, statement, criteria, 2);
+            column.getCodec().bind(statement, index++, expected);
+            bind(conn, statement, criteria, index);
+
+            int previousIndex = plan.getColumns().size() + 1;
+            int keyIndex = plan.getPrimaryKey().getSelectIndex();
+            EntityMapper<T> rowMapper = mapper();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt(previousIndex + 1);
+                    Object previous = column.getCodec().read(rs, previousIndex);
+                    rs.getObject(keyIndex);
+                    results.put(id, rs.wasNull()
+                            ? new CompareAndSetResult<>(CompareAndSetResult.Outcome.MISMATCH, null, previous)
+                            : new CompareAndSetResult<>(CompareAndSetResult.Outcome.UPDATED, rowMapper.map(rs), previous));
+                }
+            }
+        }
+        return results;
+    }
+
+    // The outer select sees the table as it was before the update, so "previous" is the value the update compared against.
+    private String compareAndSet(ColumnMapping<T> column) {
+        String key = plan.getPrimaryKey().getColumn();
+        String selectList = plan.selectList();
+        return "with updated as (update " + table + " set " + column.getColumn() + " = ? where " + key + " = ? and " +
+                column.getColumn() + " = ? returning " + selectList + ") " +
+                "select " + selectList + ", found.previous from (select (select " + column.getColumn() + " from " + table +
+                " where " + key + " = ?) as previous) found left join updated on true;";
     }
 
     @Override
     public boolean deleteEntity(int id) throws SQLException {
-        try (Connection conn = PostgresConnection.getConnection()) {
-            PreparedStatement statement = conn.prepareStatement(deleteSql);
+        try (Connection conn = UnitOfWork.getConnection();
+             PreparedStatement statement = conn.prepareStatement(deleteSql)) {
             statement.setInt(1, id);
 
             int updated = statement.executeUpdate();
@@ -247,84 +807,149 @@ public class PostgresORM<T> implements DataWrapperORM<T>{
         }
     }
 
-    private T createNewEntity() throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
-        return this.typeClass.getDeclaredConstructor().newInstance();
+    @Override
+    public EntityPlan<T> getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return The most rows createEntities sends to the database in one batch.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize The most rows createEntities sends in one batch. Defaults to ORM_BATCH_SIZE, or 500.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The mapper used for reading rows and binding statements, resolved on first use.
+     * A mapper generated at compile time is set up front. Otherwise a runtime-generated mapper is used when requested
+     * and the entity supports it, and the mapping plan is walked as the last resort.
+     */
+    protected EntityMapper<T> mapper() {
+        EntityMapper<T> current = mapper;
+        if (current == null) {
+            synchronized (this) {
+                if (mapper == null) {
+                    EntityMapper<T> generated = generateMapper ? MapperGenerator.forPlan(plan) : null;
+                    mapper = generated != null ? generated : new PlanMapper<>(plan);
+                }
+                current = mapper;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return How many rows streamAllEntities fetches per round trip.
+     */
+    public int getFetchSize() {
+        return fetchSize;
     }
 
-    private void prepareStatementField(Field field, PreparedStatement statement, Object obj, int index) throws SQLException {
-        switch(field.getType().getName().toLowerCase()) {
-            case "long":
-            case "java.lang.long":
-                if (obj == null) {
-                    statement.setNull(index, Types.BIGINT);
-                } else {
-                    statement.setLong(index, (Long) obj);
+    /**
+     * @param fetchSize How many rows streamAllEntities fetches per round trip. Defaults to ORM_FETCH_SIZE, or 1000.
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * The open side of streamAllEntities: a result set read through a cursor, and the connection it lives on.
+     * The driver only uses a cursor inside a transaction, so autocommit is off until the cursor is closed.
+     */
+    private final class Cursor implements Iterator<T> {
+        private final Connection conn;
+        private final boolean autoCommit;
+        private final PreparedStatement statement;
+        private final ResultSet rs;
+        private final RowMapper<T> rowMapper = mapper();
+        private boolean fetched;
+        private boolean closed;
+
+        private Cursor(Connection conn) throws SQLException {
+            this.conn = conn;
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            statement = conn.prepareStatement(getAllSql);
+            try {
+                statement.setFetchSize(fetchSize);
+                rs = statement.executeQuery();
+                layout.verify(getAllSql, rs);
+            } catch (SQLException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+            if (!fetched) {
+                try {
+                    fetched = rs.next();
+                } catch (SQLException se) {
+                    close();
+                    throw new UncheckedSQLException(se);
+                }
+                if (!fetched) {
+                    close();
                 }
-                break;
-            case "int":
-            case "java.lang.integer":
-                if (obj == null) {
-                    statement.setNull(index, Types.INTEGER);
-                } else {
-                    statement.setInt(index, (Integer) obj);
+            }
+            return fetched;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            fetched = false;
+            try {
+                return rowMapper.map(rs);
+            } catch (SQLException se) {
+                close();
+                throw new UncheckedSQLException(se);
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (rs != null) {
+                    rs.close();
                 }
-                break;
-            case "java.lang.string":
-            case "dev.simmons.entities.expense$status":
-                if (obj == null) {
-                    statement.setNull(index, Types.VARCHAR);
-                } else {
-                    statement.setString(index, obj.toString());
+                if (statement != null) {
+                    statement.close();
                 }
-                break;
-            case "float":
-            case "java.lang.float":
-                if (obj == null) {
-                    statement.setNull(index, Types.FLOAT);
-                } else {
-                    statement.setFloat(index, (Float) obj);
+                // Nothing was written; ending the transaction just releases the cursor's snapshot.
+                conn.rollback();
+                conn.setAutoCommit(autoCommit);
+            } catch (SQLException se) {
+                Logger.log(Logger.Level.WARNING, "Unable to cleanly close the " + table.toUpperCase() + " cursor: " + se.getMessage());
+            } finally {
+                try {
+                    conn.close();
+                } catch (SQLException se) {
+                    Logger.log(Logger.Level.WARNING, se);
                 }
-                break;
-        }
-    }
-
-    private void fillFieldFromResult(ResultSet rs, T entity, Field field) throws SQLException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
-        String columnName = field.getAnnotation(DbField.class).name();
-        Method setter = getSetter(this.typeClass, field);
-        Object obj = null;
-        switch (field.getType().getName().toLowerCase()) {
-            case "long":
-            case "java.lang.long":
-                obj = rs.getLong(columnName);
-                break;
-            case "int":
-            case "java.lang.integer":
-                obj = rs.getInt(columnName);
-                break;
-            case "java.lang.string":
-                obj = rs.getString(columnName);
-                break;
-            case "float":
-            case "java.lang.float":
-                obj = rs.getFloat(columnName);
-                break;
-            case "dev.simmons.entities.expense$status":
-                obj = Expense.Status.valueOf(rs.getString(columnName));
-                break;
-        }
-        setter.invoke(entity, obj);
-    }
-
-    private Method getGetter(Class<T> clazz, String fieldName) throws NoSuchMethodException {
-        return clazz.getDeclaredMethod("get" + fixCasing(fieldName));
-    }
-    private Method getSetter(Class<T> clazz, Field field) throws NoSuchMethodException {
-        return clazz.getDeclaredMethod("set" + fixCasing(field.getName()), field.getType());
-    }
-
-    // The field.getName() preserves the casing used in declaration.
-    // May the Gods have mercy on my soul if I start randomly naming my getters and setters....
-    private String fixCasing(String original) {
-        return Character.toUpperCase(original.charAt(0)) + original.substring(1);
+            }
+        }
     }
 }
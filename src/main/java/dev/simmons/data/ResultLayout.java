@@ -0,0 +1,62 @@
+package dev.simmons.data;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The column order a row reader expects, for readers that go by position instead of by name.
+ * The first result of each statement is checked against the driver's metadata; after that the statement is trusted,
+ * so reading a row never pays for resolving column names.
+ */
+final class ResultLayout {
+    private final List<String> columns;
+    private final Set<String> verified = ConcurrentHashMap.newKeySet();
+
+    ResultLayout(List<String> columns) {
+        this.columns = Collections.unmodifiableList(columns);
+    }
+
+    ResultLayout(String... columns) {
+        this(Arrays.asList(columns));
+    }
+
+    /**
+     * @return The comma separated column names, in the expected order.
+     */
+    String selectList() {
+        return String.join(", ", columns);
+    }
+
+    /**
+     * Make sure the result set's columns are the expected ones, in the expected order.
+     * Only the first call for a given statement looks at the metadata.
+     * @param sql The statement that produced the result set.
+     * @param rs The result set about to be read by position.
+     * @throws SQLException If the columns don't line up, which would otherwise silently fill the wrong fields.
+     */
+    void verify(String sql, ResultSet rs) throws SQLException {
+        if (verified.contains(sql)) {
+            return;
+        }
+
+        ResultSetMetaData metaData = rs.getMetaData();
+        if (metaData.getColumnCount() != columns.size()) {
+            throw new SQLException("Expected " + columns.size() + " columns (" + selectList() + ") but got "
+                    + metaData.getColumnCount() + " from: " + sql, "42P10");
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            String label = metaData.getColumnLabel(i + 1);
+            if (!columns.get(i).equalsIgnoreCase(label)) {
+                throw new SQLException("Expected column " + columns.get(i) + " at position " + (i + 1)
+                        + " but got " + label + " from: " + sql, "42P10");
+            }
+        }
+        verified.add(sql);
+    }
+}
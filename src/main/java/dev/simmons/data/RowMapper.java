@@ -0,0 +1,12 @@
+package dev.simmons.data;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Turns the current row of a result set, selected with the entity's select list, into an entity.
+ * @param <T> The entity type.
+ */
+public interface RowMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+}
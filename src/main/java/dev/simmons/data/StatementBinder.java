@@ -0,0 +1,20 @@
+package dev.simmons.data;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds an entity's values to the parameters of the ORM's insert and update statements.
+ * @param <T> The entity type.
+ */
+public interface StatementBinder<T> {
+    /**
+     * Bind every non-key column, in the entity's column order, starting at parameter 1.
+     */
+    void bindValues(PreparedStatement statement, T entity) throws SQLException;
+
+    /**
+     * Bind the primary key at the given parameter index.
+     */
+    void bindKey(PreparedStatement statement, int index, T entity) throws SQLException;
+}
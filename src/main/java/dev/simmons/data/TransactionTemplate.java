@@ -0,0 +1,65 @@
+package dev.simmons.data;
+
+import java.sql.SQLException;
+
+/**
+ * Runs a piece of work in a {@link UnitOfWork}: committed if the work returns, rolled back if it throws.
+ * Run inside another unit of work, the work nests on a savepoint, so a failure only undoes its own part.
+ * Templates are immutable and can be shared.
+ */
+public final class TransactionTemplate {
+    /**
+     * Work to run in a transaction. Every ORM call it makes on the calling thread takes part in the transaction.
+     * @param <R> The result type.
+     */
+    @FunctionalInterface
+    public interface Work<R> {
+        R run() throws SQLException;
+    }
+
+    private final int isolation;
+    private final boolean readOnly;
+
+    /**
+     * A template using the connection's default isolation level, for work that writes.
+     */
+    public TransactionTemplate() {
+        this(-1, false);
+    }
+
+    private TransactionTemplate(int isolation, boolean readOnly) {
+        this.isolation = isolation;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * @param isolation A java.sql.Connection TRANSACTION_* level.
+     * @return A template running outermost transactions at that level.
+     */
+    public TransactionTemplate withIsolation(int isolation) {
+        return new TransactionTemplate(isolation, readOnly);
+    }
+
+    /**
+     * @return A template running outermost transactions read-only, which lets the database skip some bookkeeping.
+     */
+    public TransactionTemplate readOnly() {
+        return new TransactionTemplate(isolation, true);
+    }
+
+    /**
+     * Run the work in a transaction.
+     * @return What the work returned, once it is committed.
+     * @throws SQLException If the work or the commit failed; the work is rolled back.
+     */
+    public <R> R execute(Work<R> work) throws SQLException {
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            if (!unit.isNested() && (isolation >= 0 || readOnly)) {
+                unit.configure(isolation, readOnly);
+            }
+            R result = work.run();
+            unit.commit();
+            return result;
+        }
+    }
+}
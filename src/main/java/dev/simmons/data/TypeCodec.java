@@ -0,0 +1,52 @@
+package dev.simmons.data;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads and binds one Java type as a column value. Codecs are resolved once per mapped field through
+ * {@link TypeCodecs}, so reading or binding a cell is a single call with no type dispatch.
+ * @param <V> The Java type of the column.
+ */
+public interface TypeCodec<V> {
+    /**
+     * Read the column at the given position of the current row.
+     * @param rs The result set, positioned on a row.
+     * @param index The 1-based column position.
+     * @return The value, or null for SQL NULL unless the codec is for a primitive type.
+     */
+    V read(ResultSet rs, int index) throws SQLException;
+
+    /**
+     * Bind a non-null value to a statement parameter. Nulls are bound with {@link #sqlType()} by the caller.
+     * @param statement The statement to bind to.
+     * @param index The 1-based parameter index.
+     * @param value The value to bind.
+     */
+    void bind(PreparedStatement statement, int index, V value) throws SQLException;
+
+    /**
+     * @return The java.sql.Types constant of the column, used when binding null.
+     */
+    int sqlType();
+
+    /**
+     * Write a non-null value the way PostgreSQL's text format expects it, as used by COPY.
+     * @param value The value.
+     * @return Its text form, before any COPY escaping.
+     */
+    default String format(V value) {
+        return value.toString();
+    }
+
+    /**
+     * Read a non-null value back from its text form, as {@link #format} writes it or row_to_json writes a column.
+     * @param text The text form.
+     * @return The value.
+     * @throws IllegalArgumentException If the text isn't a value of this type.
+     */
+    default V parse(String text) {
+        throw new UnsupportedOperationException(getClass().getName() + " can't read values from text.");
+    }
+}
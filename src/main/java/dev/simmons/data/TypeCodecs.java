@@ -0,0 +1,285 @@
+package dev.simmons.data;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of column codecs by Java type. Primitive types get codecs that never produce null; their boxed
+ * counterparts report SQL NULL as null. Every enum is stored by name without needing to be registered.
+ */
+public final class TypeCodecs {
+    public static final TypeCodec<Long> LONG = new LongCodec(false);
+    public static final TypeCodec<Long> BOXED_LONG = new LongCodec(true);
+    public static final TypeCodec<Integer> INT = new IntCodec(false);
+    public static final TypeCodec<Integer> BOXED_INT = new IntCodec(true);
+    public static final TypeCodec<Float> FLOAT = new FloatCodec(false);
+    public static final TypeCodec<Float> BOXED_FLOAT = new FloatCodec(true);
+    public static final TypeCodec<String> STRING = new StringCodec();
+    public static final TypeCodec<Timestamp> TIMESTAMP = new TimestampCodec();
+    public static final TypeCodec<Instant> INSTANT = new InstantCodec();
+
+    private static final Map<Class<?>, TypeCodec<?>> codecs = new ConcurrentHashMap<>();
+
+    static {
+        codecs.put(long.class, LONG);
+        codecs.put(Long.class, BOXED_LONG);
+        codecs.put(int.class, INT);
+        codecs.put(Integer.class, BOXED_INT);
+        codecs.put(float.class, FLOAT);
+        codecs.put(Float.class, BOXED_FLOAT);
+        codecs.put(String.class, STRING);
+        codecs.put(Timestamp.class, TIMESTAMP);
+        codecs.put(Instant.class, INSTANT);
+    }
+
+    private TypeCodecs() {
+
+    }
+
+    /**
+     * Register the codec for a type, replacing any existing one. Only entities mapped afterwards pick it up.
+     * @param type The Java type.
+     * @param codec The codec used for fields of that type.
+     */
+    public static <V> void register(Class<V> type, TypeCodec<V> codec) {
+        codecs.put(type, codec);
+    }
+
+    /**
+     * Find the codec for a type.
+     * @param type The Java type of a mapped field.
+     * @return The codec.
+     * @throws IllegalArgumentException If no codec handles the type.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <V> TypeCodec<V> forType(Class<V> type) {
+        TypeCodec<?> codec = codecs.get(type);
+        if (codec == null && type.isEnum()) {
+            codec = codecs.computeIfAbsent(type, enumType -> new EnumCodec(enumType));
+        }
+        if (codec == null) {
+            throw new IllegalArgumentException("Unsupported field type for an ORM column: " + type.getName());
+        }
+        return (TypeCodec<V>) codec;
+    }
+
+    /**
+     * Read a timestamp in the form COPY writes it ("2022-03-01 09:30:00") or row_to_json does
+     * ("2022-03-01T09:30:00", with an offset such as "+00:00" for a timestamp with time zone).
+     */
+    static Timestamp parseTimestamp(String text) {
+        try {
+            return Timestamp.valueOf(text.replace('T', ' '));
+        } catch (IllegalArgumentException iae) {
+            try {
+                return Timestamp.from(OffsetDateTime.parse(text.replace(' ', 'T')).toInstant());
+            } catch (DateTimeParseException dtpe) {
+                throw new IllegalArgumentException("Not a timestamp: " + text, dtpe);
+            }
+        }
+    }
+
+    private static final class LongCodec implements TypeCodec<Long> {
+        private final boolean nullable;
+
+        private LongCodec(boolean nullable) {
+            this.nullable = nullable;
+        }
+
+        @Override
+        public Long read(ResultSet rs, int index) throws SQLException {
+            long value = rs.getLong(index);
+            return nullable && rs.wasNull() ? null : value;
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int index, Long value) throws SQLException {
+            statement.setLong(index, value);
+        }
+
+        @Override
+        public int sqlType() {
+            return Types.BIGINT;
+        }
+
+        @Override
+        public Long parse(String text) {
+            return Long.valueOf(text);
+        }
+    }
+
+    private static final class IntCodec implements TypeCodec<Integer> {
+        private final boolean nullable;
+
+        private IntCodec(boolean nullable) {
+            this.nullable = nullable;
+        }
+
+        @Override
+        public Integer read(ResultSet rs, int index) throws SQLException {
+            int value = rs.getInt(index);
+            return nullable && rs.wasNull() ? null : value;
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int index, Integer value) throws SQLException {
+            statement.setInt(index, value);
+        }
+
+        @Override
+        public int sqlType() {
+            return Types.INTEGER;
+        }
+
+        @Override
+        public Integer parse(String text) {
+            return Integer.valueOf(text);
+        }
+    }
+
+    private static final class FloatCodec implements TypeCodec<Float> {
+        private final boolean nullable;
+
+        private FloatCodec(boolean nullable) {
+            this.nullable = nullable;
+        }
+
+        @Override
+        public Float read(ResultSet rs, int index) throws SQLException {
+            float value = rs.getFloat(index);
+            return nullable && rs.wasNull() ? null : value;
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int index, Float value) throws SQLException {
+            statement.setFloat(index, value);
+        }
+
+        @Override
+        public int sqlType() {
+            return Types.FLOAT;
+        }
+
+        @Override
+        public Float parse(String text) {
+            return Float.valueOf(text);
+        }
+    }
+
+    private static final class StringCodec implements TypeCodec<String> {
+        @Override
+        public String read(ResultSet rs, int index) throws SQLException {
+            return rs.getString(index);
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int index, String value) throws SQLException {
+            statement.setString(index, value);
+        }
+
+        @Override
+        public int sqlType() {
+            return Types.VARCHAR;
+        }
+
+        @Override
+        public String parse(String text) {
+            return text;
+        }
+    }
+
+    private static final class TimestampCodec implements TypeCodec<Timestamp> {
+        @Override
+        public Timestamp read(ResultSet rs, int index) throws SQLException {
+            return rs.getTimestamp(index);
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int index, Timestamp value) throws SQLException {
+            statement.setTimestamp(index, value);
+        }
+
+        @Override
+        public int sqlType() {
+            return Types.TIMESTAMP;
+        }
+
+        @Override
+        public Timestamp parse(String text) {
+            return parseTimestamp(text);
+        }
+    }
+
+    private static final class InstantCodec implements TypeCodec<Instant> {
+        @Override
+        public Instant read(ResultSet rs, int index) throws SQLException {
+            Timestamp value = rs.getTimestamp(index);
+            return value == null ? null : value.toInstant();
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int index, Instant value) throws SQLException {
+            statement.setTimestamp(index, Timestamp.from(value));
+        }
+
+        @Override
+        public String format(Instant value) {
+            return Timestamp.from(value).toString();
+        }
+
+        @Override
+        public Instant parse(String text) {
+            return parseTimestamp(text).toInstant();
+        }
+
+        @Override
+        public int sqlType() {
+            return Types.TIMESTAMP;
+        }
+    }
+
+    /**
+     * Stores an enum constant by name, as the status column of an expense is.
+     */
+    private static final class EnumCodec<E extends Enum<E>> implements TypeCodec<E> {
+        private final Class<E> type;
+
+        private EnumCodec(Class<E> type) {
+            this.type = type;
+        }
+
+        @Override
+        public E read(ResultSet rs, int index) throws SQLException {
+            String name = rs.getString(index);
+            return name == null ? null : Enum.valueOf(type, name);
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int index, E value) throws SQLException {
+            statement.setString(index, value.name());
+        }
+
+        @Override
+        public String format(E value) {
+            return value.name();
+        }
+
+        @Override
+        public E parse(String text) {
+            return Enum.valueOf(type, text);
+        }
+
+        @Override
+        public int sqlType() {
+            return Types.VARCHAR;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package dev.simmons.data;
+
+import java.sql.SQLException;
+
+/**
+ * Carries an SQLException out of code that can't declare it, such as a Stream being consumed.
+ */
+public class UncheckedSQLException extends RuntimeException {
+    public UncheckedSQLException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,273 @@
+package dev.simmons.data;
+
+import dev.simmons.utilities.connection.PostgresConnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One database transaction shared by every ORM call made on the current thread until it is closed.
+ * Without a unit of work each ORM call borrows its own connection and commits on its own; inside one,
+ * they all use the unit's connection and nothing is committed until {@link #commit()}.
+ * <pre>{@code
+ * try (UnitOfWork work = UnitOfWork.begin()) {
+ *     expenses.deleteWhere(...);
+ *     employees.deleteEntity(id);
+ *     work.commit();
+ * }
+ * }</pre>
+ * Closing a unit that wasn't committed rolls it back. Beginning a unit inside another one nests it on a savepoint:
+ * committing the inner unit keeps its work as part of the outer one, and closing it uncommitted undoes only its own work.
+ * {@link TransactionTemplate} wraps the same thing around a callback.
+ */
+public final class UnitOfWork implements AutoCloseable {
+    private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+
+    private final UnitOfWork parent;
+    private final Connection connection;
+    private final Connection participant;
+    private final Savepoint savepoint;
+    private final List<Runnable> endActions;
+    private int isolation = -1;
+    private boolean readOnly;
+    private boolean committed;
+    private boolean closed;
+
+    private UnitOfWork(Connection connection) {
+        this.parent = null;
+        this.connection = connection;
+        this.participant = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Participant(connection));
+        this.savepoint = null;
+        this.endActions = new ArrayList<>();
+    }
+
+    private UnitOfWork(UnitOfWork parent, Savepoint savepoint) {
+        this.parent = parent;
+        this.connection = parent.connection;
+        this.participant = parent.participant;
+        this.savepoint = savepoint;
+        this.endActions = parent.endActions;
+    }
+
+    /**
+     * Start a unit of work on the current thread, or a nested one on a savepoint if the thread is already in one.
+     * @return The unit, to be closed by the caller.
+     * @throws SQLException If no connection could be had, or the savepoint couldn't be set.
+     */
+    public static UnitOfWork begin() throws SQLException {
+        UnitOfWork outer = current.get();
+        if (outer != null) {
+            UnitOfWork nested = new UnitOfWork(outer, outer.connection.setSavepoint());
+            current.set(nested);
+            return nested;
+        }
+
+        Connection conn = PostgresConnection.getConnection();
+        if (conn == null) {
+            throw new SQLException("Unable to connect to start a unit of work.", "08001");
+        }
+        try {
+            conn.setAutoCommit(false);
+        } catch (SQLException se) {
+            conn.close();
+            throw se;
+        }
+
+        UnitOfWork work = new UnitOfWork(conn);
+        current.set(work);
+        return work;
+    }
+
+    /**
+     * @return Whether the current thread is in a unit of work.
+     */
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+
+    /**
+     * Get the connection ORM calls should use: the current unit's, or a connection of their own outside one.
+     * Inside a unit, closing the returned connection does nothing, and the unit alone commits or rolls back.
+     * @return The connection, or null if one couldn't be had outside a unit.
+     */
+    public static Connection getConnection() {
+        UnitOfWork work = current.get();
+        return work == null ? PostgresConnection.getConnection() : work.participant;
+    }
+
+    /**
+     * Run an action once the current thread's outermost unit of work has ended, committed or not, or right away
+     * outside a unit. Caches use this to drop what a transaction wrote only once other threads can see it.
+     */
+    static void afterEnd(Runnable action) {
+        UnitOfWork work = current.get();
+        if (work == null) {
+            action.run();
+        } else {
+            work.endActions.add(action);
+        }
+    }
+
+    /**
+     * @return Whether this unit is nested in another one.
+     */
+    public boolean isNested() {
+        return parent != null;
+    }
+
+    /**
+     * Set the isolation level and read-only flag of the transaction. Only an outermost unit that hasn't run
+     * anything yet can do this; both are put back when the unit closes.
+     * @param isolation A java.sql.Connection TRANSACTION_* level, or -1 to keep the connection's default.
+     * @param readOnly Whether the transaction only reads.
+     */
+    void configure(int isolation, boolean readOnly) throws SQLException {
+        if (parent != null) {
+            throw new IllegalStateException("A nested unit of work runs in its outer unit's transaction and can't change it.");
+        }
+        if (isolation >= 0) {
+            this.isolation = connection.getTransactionIsolation();
+            connection.setTransactionIsolation(isolation);
+        }
+        if (readOnly) {
+            this.readOnly = true;
+            connection.setReadOnly(true);
+        }
+    }
+
+    /**
+     * Mark a point in the unit to roll back to later without giving up the rest of it.
+     */
+    public Savepoint savepoint() throws SQLException {
+        checkOpen();
+        return connection.setSavepoint();
+    }
+
+    /**
+     * Undo everything since the savepoint was set. The savepoint stays usable.
+     */
+    public void rollbackTo(Savepoint point) throws SQLException {
+        checkOpen();
+        connection.rollback(point);
+    }
+
+    /**
+     * Forget a savepoint that is no longer needed, keeping the work done since it was set.
+     */
+    public void release(Savepoint point) throws SQLException {
+        checkOpen();
+        connection.releaseSavepoint(point);
+    }
+
+    /**
+     * Commit everything done in the unit. A nested unit only releases its savepoint; its work is committed
+     * along with the outer unit. The unit still has to be closed.
+     */
+    public void commit() throws SQLException {
+        checkOpen();
+        if (savepoint != null) {
+            connection.releaseSavepoint(savepoint);
+        } else {
+            connection.commit();
+        }
+        committed = true;
+    }
+
+    /**
+     * End the unit: roll back unless it was committed, and for an outermost unit give the connection back.
+     * Units have to be closed innermost first.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        if (current.get() != this) {
+            throw new IllegalStateException("Units of work have to be closed innermost first.");
+        }
+        closed = true;
+
+        if (parent != null) {
+            current.set(parent);
+            if (!committed) {
+                connection.rollback(savepoint);
+            }
+            return;
+        }
+
+        current.remove();
+        try {
+            if (!committed) {
+                connection.rollback();
+            }
+            if (isolation >= 0) {
+                connection.setTransactionIsolation(isolation);
+            }
+            if (readOnly) {
+                connection.setReadOnly(false);
+            }
+            connection.setAutoCommit(true);
+        } finally {
+            try {
+                connection.close();
+            } finally {
+                for (Runnable action : endActions) {
+                    action.run();
+                }
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed || committed) {
+            throw new IllegalStateException("The unit of work is already " + (closed ? "closed." : "committed."));
+        }
+    }
+
+    /**
+     * What ORM calls get inside a unit. Their own transaction handling (closing, committing, rolling back,
+     * switching autocommit) is ignored, so they take part in the unit's transaction instead of ending it.
+     */
+    private static final class Participant implements InvocationHandler {
+        private final Connection connection;
+
+        private Participant(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                case "commit":
+                case "setAutoCommit":
+                    return null;
+                case "rollback":
+                    if (args == null) {
+                        return null;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "UnitOfWork(" + connection + ")";
+            }
+
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+}
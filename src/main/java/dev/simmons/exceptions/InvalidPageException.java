@@ -0,0 +1,7 @@
+package dev.simmons.exceptions;
+
+public class InvalidPageException extends RuntimeException {
+    public InvalidPageException(String message) {
+        super(message);
+    }
+}
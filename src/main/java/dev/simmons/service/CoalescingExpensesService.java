@@ -0,0 +1,228 @@
+package dev.simmons.service;
+
+import dev.simmons.data.CompareAndSetResult;
+import dev.simmons.entities.Employee;
+import dev.simmons.entities.Expense;
+import dev.simmons.utilities.cache.SingleFlight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent identical reads share one call to the service behind it, so a burst of clients polling the same
+ * list or entity costs one query instead of one each. Writes pass straight through.
+ * <p>
+ * A read only joins one that started after the last write through this service finished, so a client that writes
+ * and then reads sees its own write. Each caller gets its own copy of the result.
+ */
+public class CoalescingExpensesService implements ExpensesService {
+    private final ExpensesService delegate;
+    private final SingleFlight<List<Object>, Object> reads = new SingleFlight<>();
+    private final AtomicLong writes = new AtomicLong();
+
+    public CoalescingExpensesService(ExpensesService delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return The reads run, and the ones collapsed into another caller's.
+     */
+    public SingleFlight<List<Object>, Object> getReads() {
+        return reads;
+    }
+
+    @Override
+    public Expense getExpenseById(int id) {
+        Expense expense = read("getExpenseById", () -> delegate.getExpenseById(id), id);
+        return expense == null ? null : new Expense(expense);
+    }
+
+    @Override
+    public Employee getEmployeeById(int id) {
+        Employee employee = read("getEmployeeById", () -> delegate.getEmployeeById(id), id);
+        return employee == null ? null : new Employee(employee);
+    }
+
+    @Override
+    public Map<Integer, Expense> getExpensesByIds(int[] ids) {
+        Map<Integer, Expense> found = read("getExpensesByIds", () -> delegate.getExpensesByIds(ids), Arrays.toString(ids));
+        if (found == null) {
+            return null;
+        }
+        Map<Integer, Expense> copies = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Expense> expense : found.entrySet()) {
+            copies.put(expense.getKey(), new Expense(expense.getValue()));
+        }
+        return copies;
+    }
+
+    @Override
+    public List<Expense> getAllExpenses() {
+        return expenses(read("getAllExpenses", delegate::getAllExpenses));
+    }
+
+    @Override
+    public List<Expense> getExpensesByStatus(Expense.Status status) {
+        return expenses(read("getExpensesByStatus", () -> delegate.getExpensesByStatus(status), status));
+    }
+
+    @Override
+    public List<Expense> getExpensesByEmployee(int employeeId) {
+        return expenses(read("getExpensesByEmployee", () -> delegate.getExpensesByEmployee(employeeId), employeeId));
+    }
+
+    @Override
+    public List<Employee> getAllEmployees() {
+        return employees(read("getAllEmployees", delegate::getAllEmployees));
+    }
+
+    @Override
+    public List<Expense> getExpensesPage(int afterId, int limit) {
+        return expenses(read("getExpensesPage", () -> delegate.getExpensesPage(afterId, limit), afterId, limit));
+    }
+
+    @Override
+    public List<Expense> getExpensesByStatusPage(Expense.Status status, int afterId, int limit) {
+        return expenses(read("getExpensesByStatusPage", () -> delegate.getExpensesByStatusPage(status, afterId, limit), status, afterId, limit));
+    }
+
+    @Override
+    public List<Expense> getExpensesByEmployeePage(int employeeId, int afterId, int limit) {
+        return expenses(read("getExpensesByEmployeePage", () -> delegate.getExpensesByEmployeePage(employeeId, afterId, limit), employeeId, afterId, limit));
+    }
+
+    @Override
+    public List<Employee> getEmployeesPage(int afterId, int limit) {
+        return employees(read("getEmployeesPage", () -> delegate.getEmployeesPage(afterId, limit), afterId, limit));
+    }
+
+    @Override
+    public Expense createExpense(Expense expense) {
+        return write(() -> delegate.createExpense(expense));
+    }
+
+    @Override
+    public Employee createEmployee(Employee employee) {
+        return write(() -> delegate.createEmployee(employee));
+    }
+
+    @Override
+    public List<Expense> createExpenses(List<Expense> expenses) {
+        return write(() -> delegate.createExpenses(expenses));
+    }
+
+    @Override
+    public List<Employee> createEmployees(List<Employee> employees) {
+        return write(() -> delegate.createEmployees(employees));
+    }
+
+    @Override
+    public Expense upsertExpense(Expense expense) {
+        return write(() -> delegate.upsertExpense(expense));
+    }
+
+    @Override
+    public List<Employee> upsertEmployees(List<Employee> employees) {
+        return write(() -> delegate.upsertEmployees(employees));
+    }
+
+    @Override
+    public Employee replaceEmployee(Employee employee) {
+        return write(() -> delegate.replaceEmployee(employee));
+    }
+
+    @Override
+    public Expense replaceExpense(Expense expense) {
+        return write(() -> delegate.replaceExpense(expense));
+    }
+
+    @Override
+    public Employee updateEmployee(Employee employee, Set<String> fields) {
+        return write(() -> delegate.updateEmployee(employee, fields));
+    }
+
+    @Override
+    public Expense updateExpense(Expense expense, Set<String> fields) {
+        return write(() -> delegate.updateExpense(expense, fields));
+    }
+
+    @Override
+    public Expense transitionStatus(int id, Expense.Status from, Expense.Status to) {
+        return write(() -> delegate.transitionStatus(id, from, to));
+    }
+
+    @Override
+    public Map<Integer, CompareAndSetResult.Outcome> transitionStatuses(int[] ids, Expense.Status from, Expense.Status to) {
+        return write(() -> delegate.transitionStatuses(ids, from, to));
+    }
+
+    @Override
+    public Map<Integer, CompareAndSetResult.Outcome> transitionStatusesWhere(Integer issuer, Long dateFrom, Long dateTo, Expense.Status from, Expense.Status to) {
+        return write(() -> delegate.transitionStatusesWhere(issuer, dateFrom, dateTo, from, to));
+    }
+
+    @Override
+    public boolean assignExpense(int id, int employeeId) {
+        return write(() -> delegate.assignExpense(id, employeeId));
+    }
+
+    @Override
+    public boolean deleteEmployee(int id) {
+        return write(() -> delegate.deleteEmployee(id));
+    }
+
+    @Override
+    public boolean deleteExpense(int id) {
+        return write(() -> delegate.deleteExpense(id));
+    }
+
+    /**
+     * Run the read, or join an identical one started since the last write.
+     * @param method The service method, so reads of different methods with the same arguments never share a result.
+     * @param args The method's arguments.
+     */
+    @SuppressWarnings("unchecked")
+    private <V> V read(String method, Supplier<V> load, Object... args) {
+        List<Object> key = new ArrayList<>(args.length + 2);
+        key.add(writes.get());
+        key.add(method);
+        key.addAll(Arrays.asList(args));
+        return (V) reads.execute(key, (Supplier<Object>) load);
+    }
+
+    private <V> V write(Supplier<V> write) {
+        try {
+            return write.get();
+        } finally {
+            writes.incrementAndGet();
+        }
+    }
+
+    private static List<Expense> expenses(List<Expense> shared) {
+        if (shared == null) {
+            return null;
+        }
+        List<Expense> copies = new ArrayList<>(shared.size());
+        for (Expense expense : shared) {
+            copies.add(new Expense(expense));
+        }
+        return copies;
+    }
+
+    private static List<Employee> employees(List<Employee> shared) {
+        if (shared == null) {
+            return null;
+        }
+        List<Employee> copies = new ArrayList<>(shared.size());
+        for (Employee employee : shared) {
+            copies.add(new Employee(employee));
+        }
+        return copies;
+    }
+}
@@ -1,23 +1,49 @@
 package dev.simmons.service;
 
+import dev.simmons.data.CompareAndSetResult;
 import dev.simmons.entities.Employee;
 import dev.simmons.entities.Expense;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface ExpensesService {
     Expense createExpense(Expense expense);
     Employee createEmployee(Employee employee);
+    List<Expense> createExpenses(List<Expense> expenses);
+    List<Employee> createEmployees(List<Employee> employees);
+    // Create, or replace the one with the same id, without looking it up first; an id of 0 always creates.
+    Expense upsertExpense(Expense expense);
+    List<Employee> upsertEmployees(List<Employee> employees);
 
     Expense getExpenseById(int id);
     Employee getEmployeeById(int id);
+    // The expenses found, keyed by id in request order; ids with no expense are left out instead of throwing.
+    Map<Integer, Expense> getExpensesByIds(int[] ids);
     List<Expense> getAllExpenses();
     List<Expense> getExpensesByStatus(Expense.Status status);
     List<Expense> getExpensesByEmployee(int employeeId);
     List<Employee> getAllEmployees();
 
+    // Keyset pages: up to limit entities with an id above afterId, in id order.
+    List<Expense> getExpensesPage(int afterId, int limit);
+    List<Expense> getExpensesByStatusPage(Expense.Status status, int afterId, int limit);
+    List<Expense> getExpensesByEmployeePage(int employeeId, int afterId, int limit);
+    List<Employee> getEmployeesPage(int afterId, int limit);
+
     Employee replaceEmployee(Employee employee);
     Expense replaceExpense(Expense expense);
+    // Write only the named fields of an otherwise complete entity; the rest of its row is left as it is.
+    Employee updateEmployee(Employee employee, Set<String> fields);
+    Expense updateExpense(Expense expense, Set<String> fields);
+    // Move an expense from one status to another in one step; throws if it doesn't exist or isn't in the from status.
+    Expense transitionStatus(int id, Expense.Status from, Expense.Status to);
+    // Change only who issued an expense; throws if the expense or the employee doesn't exist.
+    boolean assignExpense(int id, int employeeId);
+    // The same for many expenses at once, picked by id or by issuer and/or an inclusive date range; the outcome for each id.
+    Map<Integer, CompareAndSetResult.Outcome> transitionStatuses(int[] ids, Expense.Status from, Expense.Status to);
+    Map<Integer, CompareAndSetResult.Outcome> transitionStatusesWhere(Integer issuer, Long dateFrom, Long dateTo, Expense.Status from, Expense.Status to);
 
     boolean deleteEmployee(int id);
     boolean deleteExpense(int id);
@@ -1,5 +1,6 @@
 package dev.simmons.service;
 
+import dev.simmons.data.CompareAndSetResult;
 import dev.simmons.data.EmployeeDAO;
 import dev.simmons.data.ExpenseDAO;
 import dev.simmons.entities.Employee;
@@ -7,7 +8,14 @@ import dev.simmons.entities.Expense;
 import dev.simmons.exceptions.*;
 import dev.simmons.utilities.logging.Logger;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
 
 public class ExpensesServiceImpl implements ExpensesService{
     private EmployeeDAO empDao;
@@ -45,11 +53,76 @@ public class ExpensesServiceImpl implements ExpensesService{
         return empDao.createEmployee(employee);
     }
 
+    @Override
+    public List<Expense> createExpenses(List<Expense> expenses) {
+        List<Expense> created = new ArrayList<>();
+        for (Expense expense : expenses) {
+            Expense received = createExpense(expense);
+            if (received == null) {
+                return null;
+            }
+            created.add(received);
+        }
+        return created;
+    }
+
+    @Override
+    public List<Employee> createEmployees(List<Employee> employees) {
+        List<Employee> created = new ArrayList<>();
+        for (Employee employee : employees) {
+            Employee received = createEmployee(employee);
+            if (received == null) {
+                return null;
+            }
+            created.add(received);
+        }
+        return created;
+    }
+
+    // The DAOs have no upsert, so these pick between create and replace by id.
+    @Override
+    public Expense upsertExpense(Expense expense) {
+        return expense.getId() > 0 ? replaceExpense(expense) : createExpense(expense);
+    }
+
+    @Override
+    public List<Employee> upsertEmployees(List<Employee> employees) {
+        List<Employee> received = new ArrayList<>();
+        for (Employee employee : employees) {
+            Employee stored = employee.getId() > 0 ? replaceEmployee(employee) : createEmployee(employee);
+            if (stored == null) {
+                return null;
+            }
+            received.add(stored);
+        }
+        return received;
+    }
+
     @Override
     public Expense getExpenseById(int id) {
         return expDao.getExpenseById(id);
     }
 
+    @Override
+    public Map<Integer, Expense> getExpensesByIds(int[] ids) {
+        Map<Integer, Expense> found = new LinkedHashMap<>();
+        for (int id : ids) {
+            if (found.containsKey(id)) {
+                continue;
+            }
+            try {
+                Expense expense = expDao.getExpenseById(id);
+                if (expense == null) {
+                    return null;
+                }
+                found.put(id, expense);
+            } catch (NoSuchExpenseException nse) {
+                // Missing ids are left out of the result.
+            }
+        }
+        return found;
+    }
+
     @Override
     public Employee getEmployeeById(int id) {
         return empDao.getEmployeeById(id);
@@ -75,6 +148,35 @@ public class ExpensesServiceImpl implements ExpensesService{
         return empDao.getAllEmployees();
     }
 
+    // The DAOs have no paged queries, so pages are cut from the full lists.
+    @Override
+    public List<Expense> getExpensesPage(int afterId, int limit) {
+        return page(getAllExpenses(), Expense::getId, afterId, limit);
+    }
+
+    @Override
+    public List<Expense> getExpensesByStatusPage(Expense.Status status, int afterId, int limit) {
+        return page(getExpensesByStatus(status), Expense::getId, afterId, limit);
+    }
+
+    @Override
+    public List<Expense> getExpensesByEmployeePage(int employeeId, int afterId, int limit) {
+        return page(getExpensesByEmployee(employeeId), Expense::getId, afterId, limit);
+    }
+
+    @Override
+    public List<Employee> getEmployeesPage(int afterId, int limit) {
+        return page(getAllEmployees(), Employee::getId, afterId, limit);
+    }
+
+    private static <T> List<T> page(List<T> all, ToIntFunction<T> id, int afterId, int limit) {
+        return all.stream()
+                .filter(e -> id.applyAsInt(e) > afterId)
+                .sorted(Comparator.comparingInt(id))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Employee replaceEmployee(Employee employee) {
         if (employee.getFirstName() == null || employee.getLastName() == null ||
@@ -102,6 +204,64 @@ public class ExpensesServiceImpl implements ExpensesService{
         return expDao.replaceExpense(expense);
     }
 
+    // The DAOs only write whole rows, so these are full replacements.
+    @Override
+    public Employee updateEmployee(Employee employee, Set<String> fields) {
+        return replaceEmployee(employee);
+    }
+
+    @Override
+    public Expense updateExpense(Expense expense, Set<String> fields) {
+        return replaceExpense(expense);
+    }
+
+    @Override
+    public Expense transitionStatus(int id, Expense.Status from, Expense.Status to) {
+        if (from == null || to == null) {
+            throw new InvalidExpenseStatusException("Unable to parse the status passed in. Check for typos.");
+        }
+        Expense expense = expDao.getExpenseById(id);
+        if (expense == null) {
+            return null;
+        }
+        if (expense.getStatus() != from) {
+            throw new ExpenseNotPendingException(id);
+        }
+        expense.setStatus(to);
+        return expDao.replaceExpense(expense);
+    }
+
+    @Override
+    public Map<Integer, CompareAndSetResult.Outcome> transitionStatuses(int[] ids, Expense.Status from, Expense.Status to) {
+        Map<Integer, CompareAndSetResult.Outcome> outcomes = new LinkedHashMap<>();
+        for (int id : ids) {
+            try {
+                outcomes.put(id, transitionStatus(id, from, to) == null ? CompareAndSetResult.Outcome.NOT_FOUND : CompareAndSetResult.Outcome.UPDATED);
+            } catch (NoSuchExpenseException nse) {
+                outcomes.put(id, CompareAndSetResult.Outcome.NOT_FOUND);
+            } catch (ExpenseNotPendingException enp) {
+                outcomes.put(id, CompareAndSetResult.Outcome.MISMATCH);
+            }
+        }
+        return outcomes;
+    }
+
+    @Override
+    public Map<Integer, CompareAndSetResult.Outcome> transitionStatusesWhere(Integer issuer, Long dateFrom, Long dateTo,
+                                                                           Expense.Status from, Expense.Status to) {
+        if (issuer == null && dateFrom == null && dateTo == null) {
+            throw new InvalidExpenseException("Unable to change expenses without a filter. Give an issuer or a date range.");
+        }
+        int[] ids = expDao.getAllExpenses().stream()
+                .filter(e -> issuer == null || e.getIssuer() == issuer)
+                .filter(e -> dateFrom == null || e.getDate() >= dateFrom)
+                .filter(e -> dateTo == null || e.getDate() <= dateTo)
+                .mapToInt(Expense::getId)
+                .sorted()
+                .toArray();
+        return transitionStatuses(ids, from, to);
+    }
+
     @Override
     public boolean deleteEmployee(int id) {
         List<Expense> expenses = getExpensesByEmployee(id);
@@ -121,6 +281,17 @@ public class ExpensesServiceImpl implements ExpensesService{
         return empDao.deleteEmployee(id);
     }
 
+    // The DAO only writes whole rows, so this reads the expense and writes it back with the new issuer.
+    @Override
+    public boolean assignExpense(int id, int employeeId) {
+        Expense expense = expDao.getExpenseById(id);
+        if (expense == null) {
+            return false;
+        }
+        expense.setIssuer(employeeId);
+        return replaceExpense(expense) != null;
+    }
+
     @Override
     public boolean deleteExpense(int id) {
         return expDao.deleteExpense(id);
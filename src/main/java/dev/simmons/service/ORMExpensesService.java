@@ -1,43 +1,84 @@
 package dev.simmons.service;
 
-import dev.simmons.data.PostgresORM;
+import dev.simmons.data.BulkLoadReport;
+import dev.simmons.data.BulkLoader;
+import dev.simmons.data.CompareAndSetResult;
+import dev.simmons.data.Criteria;
+import dev.simmons.data.DataWrapperORM;
+import dev.simmons.data.TransactionTemplate;
 import dev.simmons.entities.Employee;
 import dev.simmons.entities.Expense;
 import dev.simmons.exceptions.*;
+import dev.simmons.utilities.cache.QueryResultCache;
 import dev.simmons.utilities.logging.Logger;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 public class ORMExpensesService implements ExpensesService{
-    protected PostgresORM<Employee> empORM;
-    protected PostgresORM<Expense> expORM;
+    // Rough heap cost of a cached expense and its list slot, which is what the result cache's budget is counted in.
+    private static final int expenseBytes = 48;
+    private static final long defaultResultCacheBytes = 32L * 1024 * 1024;
+    private static final String allExpenses = "expenses";
+    // Every list by issuer depends on this as well as on its own issuer's tag.
+    private static final String anyIssuer = "issuers";
+
+    protected DataWrapperORM<Employee> empORM;
+    protected DataWrapperORM<Expense> expORM;
+    private final TransactionTemplate transaction = new TransactionTemplate();
+    private final QueryResultCache results;
+
+    @FunctionalInterface
+    private interface ExpenseQuery {
+        List<Expense> run() throws SQLException;
+    }
+
+    public ORMExpensesService(DataWrapperORM<Employee> emp, DataWrapperORM<Expense> exp) {
+        this(emp, exp, defaultResultCacheBytes);
+    }
 
-    public ORMExpensesService(PostgresORM<Employee> emp, PostgresORM<Expense> exp) {
+    /**
+     * @param resultCacheBytes About how much memory the cached expense lists may take.
+     */
+    public ORMExpensesService(DataWrapperORM<Employee> emp, DataWrapperORM<Expense> exp, long resultCacheBytes) {
         empORM = emp;
         expORM = exp;
+        results = new QueryResultCache(resultCacheBytes);
+    }
+
+    /**
+     * @return The cache of expense lists, for its hit ratio.
+     */
+    public QueryResultCache getResultCache() {
+        return results;
+    }
+
+    /**
+     * Make stale the cached lists holding expenses another process wrote.
+     * @param expenses The expenses as they were before and are after the writes.
+     */
+    public void expensesChangedElsewhere(Collection<Expense> expenses) {
+        expensesChanged(expenses.toArray(new Expense[0]));
     }
 
     @Override
     public Expense createExpense(Expense expense) {
-        if (expense.getStatus() == null) {
-            throw new InvalidExpenseStatusException("Unable to parse the status passed in. Check for typos.");
-        }
-        if (expense.getStatus() != Expense.Status.PENDING) {
-            throw new InvalidExpenseException("Unable to submit a non-pending expense. Submitted expenses must be approved or denied separately.");
-        }
-        if (expense.getIssuer() <= 0) {
-            throw new InvalidExpenseException("Unable to submit a expense with no associated employee. Please identify the owning employee.");
-        }
-        if (expense.getAmount() <= 0) {
-            throw new NonpositiveExpenseException(expense.getAmount());
-        }
+        validateNewExpense(expense);
 
         Expense received = null;
         try {
             received = expORM.createEntity(expense);
+            expensesChanged(received);
         } catch (SQLException se) {
             if (se.getSQLState().equals("23503")) {
                 Logger.log(Logger.Level.WARNING, "Attempt to create expense for a non-existent employee with id " + expense.getIssuer());
@@ -50,11 +91,7 @@ public class ORMExpensesService implements ExpensesService{
 
     @Override
     public Employee createEmployee(Employee employee) {
-        if (employee.getFirstName() == null || employee.getLastName() == null ||
-                employee.getFirstName().equals("") || employee.getLastName().equals("")) {
-            Logger.log(Logger.Level.WARNING, "Attempt to create an employee with invalid first/last name.");
-            throw new InvalidEmployeeException();
-        }
+        validateNewEmployee(employee);
 
         Employee received = null;
         try {
@@ -65,6 +102,162 @@ public class ORMExpensesService implements ExpensesService{
         return received;
     }
 
+    @Override
+    public List<Expense> createExpenses(List<Expense> expenses) {
+        for (Expense expense : expenses) {
+            validateNewExpense(expense);
+        }
+
+        List<Expense> received = null;
+        try {
+            received = expORM.createEntities(expenses);
+            expensesChanged(received.toArray(new Expense[0]));
+        } catch (SQLException se) {
+            if ("23503".equals(sqlState(se))) {
+                // The batch doesn't say which row failed, so find the first issuer that doesn't exist.
+                for (Expense expense : expenses) {
+                    getEmployeeById(expense.getIssuer());
+                }
+            }
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return received;
+    }
+
+    @Override
+    public List<Employee> createEmployees(List<Employee> employees) {
+        for (Employee employee : employees) {
+            validateNewEmployee(employee);
+        }
+
+        List<Employee> received = null;
+        try {
+            received = empORM.createEntities(employees);
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return received;
+    }
+
+    @Override
+    public Expense upsertExpense(Expense expense) {
+        if (expense.getId() <= 0) {
+            validateNewExpense(expense);
+        } else {
+            validateReplacement(expense);
+        }
+
+        Expense received = null;
+        try {
+            received = expORM.upsertEntity(expense);
+            if (expense.getId() > 0) {
+                existingExpenseChanged(received);
+            } else {
+                expensesChanged(received);
+            }
+        } catch (SQLException se) {
+            if ("23503".equals(se.getSQLState())) {
+                throw new NoSuchEmployeeException(expense.getIssuer());
+            } else if ("P0001".equals(se.getSQLState())) {
+                Logger.log(Logger.Level.WARNING, "Attempt to replace contents of non-pending expense.");
+                throw new ExpenseNotPendingException(expense.getId());
+            }
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return received;
+    }
+
+    @Override
+    public List<Employee> upsertEmployees(List<Employee> employees) {
+        for (Employee employee : employees) {
+            validateNewEmployee(employee);
+        }
+
+        List<Employee> received = null;
+        try {
+            received = empORM.upsertEntities(employees);
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return received;
+    }
+
+    /**
+     * Load expenses with COPY, applying the same rules as createExpense to every row.
+     * Rows with an issuer that doesn't exist are rejected up front, so one bad row can't abort the load.
+     * @param expenses The expenses, read lazily.
+     * @return What was loaded and rejected, or null if the load failed.
+     */
+    public BulkLoadReport bulkLoadExpenses(Iterator<Expense> expenses) {
+        try {
+            // The issuer check and the COPY share one connection and commit together.
+            BulkLoadReport report = transaction.execute(() -> {
+                Set<Integer> issuers = new HashSet<>();
+                for (Employee employee : empORM.getAllEntities()) {
+                    issuers.add(employee.getId());
+                }
+                return new BulkLoader<>(expORM.getPlan(), expense -> {
+                    validateNewExpense(expense);
+                    if (!issuers.contains(expense.getIssuer())) {
+                        throw new NoSuchEmployeeException(expense.getIssuer());
+                    }
+                }).load(expenses);
+            });
+            results.invalidateAll();
+            return report;
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return null;
+    }
+
+    /**
+     * Load employees with COPY, applying the same rules as createEmployee to every row.
+     * @param employees The employees, read lazily.
+     * @return What was loaded and rejected, or null if the load failed.
+     */
+    public BulkLoadReport bulkLoadEmployees(Iterator<Employee> employees) {
+        try {
+            return new BulkLoader<>(empORM.getPlan(), ORMExpensesService::validateNewEmployee).load(employees);
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return null;
+    }
+
+    private static void validateNewExpense(Expense expense) {
+        if (expense.getStatus() == null) {
+            throw new InvalidExpenseStatusException("Unable to parse the status passed in. Check for typos.");
+        }
+        if (expense.getStatus() != Expense.Status.PENDING) {
+            throw new InvalidExpenseException("Unable to submit a non-pending expense. Submitted expenses must be approved or denied separately.");
+        }
+        if (expense.getIssuer() <= 0) {
+            throw new InvalidExpenseException("Unable to submit a expense with no associated employee. Please identify the owning employee.");
+        }
+        if (expense.getAmount() <= 0) {
+            throw new NonpositiveExpenseException(expense.getAmount());
+        }
+    }
+
+    private static void validateNewEmployee(Employee employee) {
+        if (employee.getFirstName() == null || employee.getLastName() == null ||
+                employee.getFirstName().equals("") || employee.getLastName().equals("")) {
+            Logger.log(Logger.Level.WARNING, "Attempt to create an employee with invalid first/last name.");
+            throw new InvalidEmployeeException();
+        }
+    }
+
+    // Batch failures carry the server's state on the chained exception.
+    private static String sqlState(SQLException se) {
+        for (SQLException current = se; current != null; current = current.getNextException()) {
+            if (current.getSQLState() != null) {
+                return current.getSQLState();
+            }
+        }
+        return null;
+    }
+
     @Override
     public Expense getExpenseById(int id) {
         Expense received = null;
@@ -81,6 +274,16 @@ public class ORMExpensesService implements ExpensesService{
         return received;
     }
 
+    @Override
+    public Map<Integer, Expense> getExpensesByIds(int[] ids) {
+        try {
+            return expORM.getEntitiesByIds(ids);
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return null;
+    }
+
     @Override
     public Employee getEmployeeById(int id) {
         Employee received = null;
@@ -101,7 +304,7 @@ public class ORMExpensesService implements ExpensesService{
     public List<Expense> getAllExpenses() {
         List<Expense> expenses;
         try {
-            expenses = expORM.getAllEntities();
+            expenses = cached(Collections.singletonList(allExpenses), expORM::getAllEntities, allExpenses);
         } catch (SQLException se) {
             expenses = new ArrayList<>();
         }
@@ -112,16 +315,11 @@ public class ORMExpensesService implements ExpensesService{
     public List<Expense> getExpensesByStatus(Expense.Status status) {
         List<Expense> expenses;
 
+        // Filtered by the database, so only the matching expenses are read.
         try {
-            expenses = expORM.getAllEntities();
-            if (expenses == null) {
-                return new ArrayList<>();
-            }
-
-            expenses = expenses.stream().
-                    filter(e -> e.getStatus().equals(status)).
-                    collect(Collectors.toList());
+            expenses = cached(Arrays.asList("status", status), () -> expORM.findBy("status", status), statusTag(status));
         } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
             expenses = new ArrayList<>();
         }
         return expenses;
@@ -132,15 +330,9 @@ public class ORMExpensesService implements ExpensesService{
         List<Expense> expenses;
 
         try {
-            expenses = expORM.getAllEntities();
-            if (expenses == null) {
-                return new ArrayList<>();
-            }
-
-            expenses = expenses.stream().
-                    filter(e -> e.getIssuer() == employeeId).
-                    collect(Collectors.toList());
+            expenses = cached(Arrays.asList("issuer", employeeId), () -> expORM.findBy("issuer", employeeId), issuerTag(employeeId), anyIssuer);
         } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
             expenses = new ArrayList<>();
         }
         return expenses;
@@ -160,12 +352,50 @@ public class ORMExpensesService implements ExpensesService{
     }
 
     @Override
-    public Employee replaceEmployee(Employee employee) {
-        if (employee.getFirstName() == null || employee.getLastName() == null ||
-                employee.getFirstName().equals("") || employee.getLastName().equals("")) {
-            Logger.log(Logger.Level.WARNING, "Attempt to replace an employee with invalid first/last name.");
-            throw new InvalidEmployeeException();
+    public List<Expense> getExpensesPage(int afterId, int limit) {
+        try {
+            return cached(Arrays.asList(allExpenses, afterId, limit), () -> expORM.getPage(afterId, limit), allExpenses);
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<Expense> getExpensesByStatusPage(Expense.Status status, int afterId, int limit) {
+        try {
+            return cached(Arrays.asList("status", status, afterId, limit),
+                    () -> expORM.getPage(Criteria.where("status", status), afterId, limit), statusTag(status));
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<Expense> getExpensesByEmployeePage(int employeeId, int afterId, int limit) {
+        try {
+            return cached(Arrays.asList("issuer", employeeId, afterId, limit),
+                    () -> expORM.getPage(Criteria.where("issuer", employeeId), afterId, limit), issuerTag(employeeId), anyIssuer);
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<Employee> getEmployeesPage(int afterId, int limit) {
+        try {
+            return empORM.getPage(afterId, limit);
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
         }
+        return new ArrayList<>();
+    }
+
+    @Override
+    public Employee replaceEmployee(Employee employee) {
+        validateReplacement(employee);
 
         Employee emp = null;
         try {
@@ -179,22 +409,12 @@ public class ORMExpensesService implements ExpensesService{
 
     @Override
     public Expense replaceExpense(Expense expense) {
-        if (expense.getStatus() == null) {
-            Logger.log(Logger.Level.WARNING, "Null/misspelled status was passed in to replace expense.");
-            throw new InvalidExpenseStatusException("Unable to parse the status passed in. Check for typos.");
-        }
-        if (expense.getIssuer() <= 0) {
-            Logger.log(Logger.Level.WARNING, "Attempt to submit an expense with no issuer assigned.");
-            throw new InvalidExpenseException("Unable to submit an expense not yet assigned an issuer.");
-        }
-        if (expense.getAmount() <= 0) {
-            Logger.log(Logger.Level.WARNING, "Attempt to submit an expense with a negative amount.");
-            throw new NonpositiveExpenseException(expense.getAmount());
-        }
+        validateReplacement(expense);
 
         Expense exp = null;
         try {
             exp = expORM.replaceEntity(expense);
+            existingExpenseChanged(exp);
         } catch (SQLException se) {
             if (se.getSQLState().equals("23503")) {
                 throw new NoSuchEmployeeException(expense.getIssuer());
@@ -208,24 +428,217 @@ public class ORMExpensesService implements ExpensesService{
     }
 
     @Override
-    public boolean deleteEmployee(int id) {
+    public Employee updateEmployee(Employee employee, Set<String> fields) {
+        validateReplacement(employee);
+
+        Employee emp = null;
         try {
-            List<Expense> expenses = getExpensesByEmployee(id);
+            emp = empORM.updateFields(employee, fields);
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
+        }
+
+        return emp;
+    }
 
-            if (expenses != null) {
-                int nonpendingCount = expenses.stream().mapToInt(e -> (e.getStatus().equals(Expense.Status.PENDING)) ? 0 : 1).reduce(0, (i,j) -> i+j);
-                if (nonpendingCount > 0) {
+    @Override
+    public Expense updateExpense(Expense expense, Set<String> fields) {
+        validateReplacement(expense);
+
+        Expense exp = null;
+        try {
+            exp = expORM.updateFields(expense, fields);
+            existingExpenseChanged(exp);
+        } catch (SQLException se) {
+            if (se.getSQLState().equals("23503")) {
+                throw new NoSuchEmployeeException(expense.getIssuer());
+            } else if (se.getSQLState().equals("P0001")) {
+                Logger.log(Logger.Level.WARNING, "Attempt to update contents of non-pending expense.");
+                throw new ExpenseNotPendingException(expense.getId());
+            }
+            Logger.log(Logger.Level.ERROR, se);
+        }
+
+        return exp;
+    }
+
+    /**
+     * Change an expense's status with a single compare-and-set statement, instead of reading the expense
+     * and writing it back. A concurrent change between the two can't slip through, and the outcome says
+     * whether the expense was missing or in another status without a round trip through the trigger's error.
+     */
+    @Override
+    public Expense transitionStatus(int id, Expense.Status from, Expense.Status to) {
+        if (from == null || to == null) {
+            throw new InvalidExpenseStatusException("Unable to parse the status passed in. Check for typos.");
+        }
+
+        try {
+            CompareAndSetResult<Expense> result = expORM.compareAndSet(id, "status", from, to);
+            switch (result.getOutcome()) {
+                case NOT_FOUND:
+                    Logger.log(Logger.Level.WARNING, "Attempt to change the status of non-existent expense with id " + id);
+                    throw new NoSuchExpenseException(id);
+                case MISMATCH:
+                    Logger.log(Logger.Level.WARNING, "Attempt to change the status of expense " + id + ", which is " + result.getPrevious() + ", not " + from + ".");
+                    throw new ExpenseNotPendingException(id);
+                default:
+                    results.invalidate(statusTag(from));
+                    expensesChanged(result.getEntity());
+                    return result.getEntity();
+            }
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return null;
+    }
+
+    /**
+     * Move every listed expense from one status to another with a single set-based update.
+     * @return The outcome for each id, in the order given: NOT_FOUND for ids with no expense, MISMATCH for expenses
+     * in another status. Null if the update failed.
+     */
+    @Override
+    public Map<Integer, CompareAndSetResult.Outcome> transitionStatuses(int[] ids, Expense.Status from, Expense.Status to) {
+        List<Integer> idList = new ArrayList<>();
+        for (int id : ids) {
+            idList.add(id);
+        }
+        Map<Integer, CompareAndSetResult.Outcome> matched = transitionStatuses(Criteria.whereIn("id", idList), from, to);
+        if (matched == null) {
+            return null;
+        }
+
+        Map<Integer, CompareAndSetResult.Outcome> outcomes = new LinkedHashMap<>();
+        for (int id : ids) {
+            outcomes.put(id, matched.getOrDefault(id, CompareAndSetResult.Outcome.NOT_FOUND));
+        }
+        return outcomes;
+    }
+
+    /**
+     * Move every expense matching the filter from one status to another with a single set-based update.
+     * At least one of the filter's parts must be given.
+     * @return The outcome for each matching expense, by id. Null if the update failed.
+     */
+    @Override
+    public Map<Integer, CompareAndSetResult.Outcome> transitionStatusesWhere(Integer issuer, Long dateFrom, Long dateTo,
+                                                                           Expense.Status from, Expense.Status to) {
+        Criteria criteria = Criteria.all();
+        if (issuer != null) {
+            criteria = criteria.and("issuer", issuer);
+        }
+        if (dateFrom != null) {
+            criteria = criteria.andAtLeast("date", dateFrom);
+        }
+        if (dateTo != null) {
+            criteria = criteria.andAtMost("date", dateTo);
+        }
+        if (criteria.isEmpty()) {
+            throw new InvalidExpenseException("Unable to change expenses without a filter. Give an issuer or a date range.");
+        }
+        return transitionStatuses(criteria, from, to);
+    }
+
+    private Map<Integer, CompareAndSetResult.Outcome> transitionStatuses(Criteria criteria, Expense.Status from, Expense.Status to) {
+        if (from == null || to == null) {
+            throw new InvalidExpenseStatusException("Unable to parse the status passed in. Check for typos.");
+        }
+
+        try {
+            Map<Integer, CompareAndSetResult.Outcome> outcomes = new LinkedHashMap<>();
+            for (Map.Entry<Integer, CompareAndSetResult<Expense>> result : expORM.compareAndSetAll(criteria, "status", from, to).entrySet()) {
+                outcomes.put(result.getKey(), result.getValue().getOutcome());
+                if (result.getValue().isUpdated()) {
+                    expensesChanged(result.getValue().getEntity());
+                }
+            }
+            results.invalidate(statusTag(from));
+            return outcomes;
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return null;
+    }
+
+    private static void validateReplacement(Employee employee) {
+        if (employee.getFirstName() == null || employee.getLastName() == null ||
+                employee.getFirstName().equals("") || employee.getLastName().equals("")) {
+            Logger.log(Logger.Level.WARNING, "Attempt to replace an employee with invalid first/last name.");
+            throw new InvalidEmployeeException();
+        }
+    }
+
+    private static void validateReplacement(Expense expense) {
+        if (expense.getStatus() == null) {
+            Logger.log(Logger.Level.WARNING, "Null/misspelled status was passed in to replace expense.");
+            throw new InvalidExpenseStatusException("Unable to parse the status passed in. Check for typos.");
+        }
+        if (expense.getIssuer() <= 0) {
+            Logger.log(Logger.Level.WARNING, "Attempt to submit an expense with no issuer assigned.");
+            throw new InvalidExpenseException("Unable to submit an expense not yet assigned an issuer.");
+        }
+        if (expense.getAmount() <= 0) {
+            Logger.log(Logger.Level.WARNING, "Attempt to submit an expense with a negative amount.");
+            throw new NonpositiveExpenseException(expense.getAmount());
+        }
+    }
+
+    /**
+     * Delete an employee and their expenses in one transaction: a check for decided expenses,
+     * one delete for all of the expenses and one for the employee, all on a single connection.
+     * Either everything is deleted or nothing is.
+     */
+    @Override
+    public boolean deleteEmployee(int id) {
+        try {
+            boolean deleted = transaction.execute(() -> {
+                Criteria issued = Criteria.where("issuer", id);
+                if (expORM.exists(issued.andIn("status", EnumSet.complementOf(EnumSet.of(Expense.Status.PENDING))))) {
                     Logger.log(Logger.Level.WARNING, "Attempt to delete employee matching (id: " + id + ") which has non-pending expense requests.");
                     throw new EmployeeExpenseNotPendingException();
                 }
 
-                for (Expense e : expenses) {
-                    deleteExpense(e.getId());
-                }
+                expORM.deleteWhere(issued);
+                return empORM.deleteEntity(id);
+            });
+            // Only pending expenses can have been deleted along with the employee.
+            results.invalidate(allExpenses, statusTag(Expense.Status.PENDING), issuerTag(id));
+            return deleted;
+        } catch (SQLException se) {
+            if ("P0001".equals(se.getSQLState())) {
+                // An expense was approved or denied after the check; the trigger refused to delete it.
+                Logger.log(Logger.Level.WARNING, "Attempt to delete employee matching (id: " + id + ") which has non-pending expense requests.");
+                throw new EmployeeExpenseNotPendingException();
             }
+            Logger.log(Logger.Level.ERROR, se);
+        }
+        return false;
+    }
 
-            return empORM.deleteEntity(id);
+    /**
+     * Reassign an expense by writing its issuer column alone, so the rest of the stored expense is left as it is.
+     */
+    @Override
+    public boolean assignExpense(int id, int employeeId) {
+        Expense assignment = new Expense();
+        assignment.setId(id);
+        assignment.setIssuer(employeeId);
+        try {
+            if (expORM.updateFields(assignment, Collections.singleton("issuer")) == null) {
+                Logger.log(Logger.Level.WARNING, "Attempt to assign non-existent expense with id " + id);
+                throw new NoSuchExpenseException(id);
+            }
+            existingExpenseChanged(null);
+            return true;
         } catch (SQLException se) {
+            if ("23503".equals(se.getSQLState())) {
+                Logger.log(Logger.Level.WARNING, "Attempt to assign an expense to a non-existent employee with id " + employeeId);
+                throw new NoSuchEmployeeException(employeeId);
+            } else if ("P0001".equals(se.getSQLState())) {
+                Logger.log(Logger.Level.WARNING, "Attempt to reassign non-pending expense.");
+                throw new ExpenseNotPendingException(id);
+            }
             Logger.log(Logger.Level.ERROR, se);
         }
         return false;
@@ -234,7 +647,9 @@ public class ORMExpensesService implements ExpensesService{
     @Override
     public boolean deleteExpense(int id) {
         try {
-            return expORM.deleteEntity(id);
+            boolean deleted = expORM.deleteEntity(id);
+            existingExpenseChanged(null);
+            return deleted;
         } catch (SQLException se) {
             if (se.getSQLState().equals("P0001")) {
                 Logger.log(Logger.Level.WARNING, "Attempt to delete non-pending expense.");
@@ -246,4 +661,63 @@ public class ORMExpensesService implements ExpensesService{
 
         return false;
     }
+
+    /**
+     * Serve an expense list from the result cache, or run the query and cache what it returns.
+     * Callers get their own copies, so nothing they change leaks into the cache.
+     * @param key What identifies the query and its parameters.
+     * @param tags What the query reads from; writes to any of them make the cached result stale.
+     */
+    private List<Expense> cached(List<Object> key, ExpenseQuery query, String... tags) throws SQLException {
+        List<Expense> cached = results.get(key);
+        if (cached != null) {
+            return copies(cached);
+        }
+        QueryResultCache.Stamp stamp = results.stamp((Object[]) tags);
+        List<Expense> loaded = query.run();
+        results.put(key, Collections.unmodifiableList(copies(loaded)), (long) (loaded.size() + 1) * expenseBytes, stamp);
+        return loaded;
+    }
+
+    private static List<Expense> copies(List<Expense> expenses) {
+        List<Expense> copies = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            copies.add(new Expense(expense));
+        }
+        return copies;
+    }
+
+    /**
+     * Make stale every cached list a write to an existing expense could have moved it out of or into, without
+     * reading the expense before the write. The checkExpenseStatus trigger only lets pending expenses be written,
+     * so it was pending; its old issuer isn't known, so every list by issuer is dropped.
+     * @param expense The expense as written, or null if it was deleted or only its issuer changed.
+     */
+    private void existingExpenseChanged(Expense expense) {
+        results.invalidate(allExpenses, statusTag(Expense.Status.PENDING), anyIssuer);
+        if (expense != null && expense.getStatus() != null) {
+            results.invalidate(statusTag(expense.getStatus()));
+        }
+    }
+
+    /**
+     * Make stale every cached list the expenses are, or were, part of.
+     * @param expenses The expenses as they are, or were before a write; nulls are skipped.
+     */
+    private void expensesChanged(Expense... expenses) {
+        results.invalidate(allExpenses);
+        for (Expense expense : expenses) {
+            if (expense != null) {
+                results.invalidate(statusTag(expense.getStatus()), issuerTag(expense.getIssuer()));
+            }
+        }
+    }
+
+    private static String statusTag(Expense.Status status) {
+        return "status:" + status;
+    }
+
+    private static String issuerTag(int issuer) {
+        return "issuer:" + issuer;
+    }
 }
@@ -0,0 +1,39 @@
+package dev.simmons.utilities;
+
+import dev.simmons.utilities.logging.Logger;
+
+/**
+ * Reads the numeric settings the application takes from environment variables.
+ */
+public final class Environment {
+    private Environment() {
+
+    }
+
+    /**
+     * Read a whole-number setting. A value that isn't a number, or is below the minimum, is ignored with a warning.
+     * @param name The environment variable.
+     * @param fallback The value to use when the variable is unset or ignored.
+     * @param min The smallest value the setting accepts.
+     * @return The setting, or the fallback.
+     */
+    public static int getInt(String name, int fallback, int min) {
+        return parseInt(name, System.getenv(name), fallback, min);
+    }
+
+    static int parseInt(String name, String value, int fallback, int min) {
+        if (value == null || value.isEmpty()) {
+            return fallback;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= min) {
+                return parsed;
+            }
+            Logger.log(Logger.Level.WARNING, "Ignoring " + name + " (" + value + "), which must be at least " + min + "; using " + fallback + ".");
+        } catch (NumberFormatException nfe) {
+            Logger.log(Logger.Level.WARNING, "Ignoring non-numeric " + name + " (" + value + "), using " + fallback + ".");
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,244 @@
+package dev.simmons.utilities.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, thread-safe LRU cache whose entries expire a fixed time after they were stored.
+ * Keys are spread over independently locked segments, so threads working on different keys rarely wait
+ * for each other; each segment evicts its own least recently used entry once it is full.
+ * Hits, misses, evictions and expirations are counted without locking.
+ * @param <K> The key type.
+ * @param <V> The value type.
+ */
+public class LruCache<K, V> {
+    private static final int maxSegments = 16;
+    private static final int minSegmentSize = 8;
+
+    private final Segment<K, V>[] segments;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param maxSize The most entries to keep. The cache may hold slightly fewer, as each segment is bounded on its own.
+     * @param ttlMillis How long an entry is served after it was stored.
+     */
+    public LruCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, Math.max(1, Math.min(maxSegments, maxSize / minSegmentSize)), System::nanoTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    LruCache(int maxSize, long ttlMillis, int segmentCount, LongSupplier clock) {
+        if (maxSize <= 0 || ttlMillis <= 0 || segmentCount <= 0) {
+            throw new IllegalArgumentException("The cache size, time to live and segment count have to be positive.");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.clock = clock;
+        this.segments = new Segment[segmentCount];
+        int perSegment = (maxSize + segmentCount - 1) / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(perSegment);
+        }
+    }
+
+    /**
+     * @return The live value for the key, or null if there is none or it has expired.
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            Entry<V> entry = segment.entries.get(key);
+            if (entry == null) {
+                value = null;
+            } else if (clock.getAsLong() - entry.storedAt >= ttlNanos) {
+                segment.entries.remove(key);
+                expirations.increment();
+                value = null;
+            } else {
+                value = entry.value;
+            }
+        }
+        (value == null ? misses : hits).increment();
+        return value;
+    }
+
+    /**
+     * Take a stamp before loading a value that will be stored with {@link #put(Object, Object, long)}.
+     * @return A token telling whether the key has been invalidated since.
+     */
+    public long stamp(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.generation;
+        }
+    }
+
+    /**
+     * Store a value loaded after taking the stamp, unless an invalidation came in meanwhile.
+     * That keeps a slow load of an old value from overwriting the invalidation of a newer write.
+     * @return Whether the value was stored.
+     */
+    public boolean put(K key, V value, long stamp) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            if (segment.generation != stamp) {
+                return false;
+            }
+            store(segment, key, value);
+            return true;
+        }
+    }
+
+    /**
+     * Store a value unconditionally.
+     */
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            store(segment, key, value);
+        }
+    }
+
+    /**
+     * Drop the key, and make loads of it already in progress not store their value.
+     */
+    public void invalidate(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.entries.remove(key);
+            segment.generation++;
+        }
+    }
+
+    /**
+     * Drop every entry, and make every load in progress not store its value.
+     */
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.generation++;
+            }
+        }
+    }
+
+    /**
+     * @return How many entries are held, including expired ones not yet dropped.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), size());
+    }
+
+    private void store(Segment<K, V> segment, K key, V value) {
+        segment.entries.put(key, new Entry<>(value, clock.getAsLong()));
+        Iterator<Map.Entry<K, Entry<V>>> eldest = segment.entries.entrySet().iterator();
+        while (segment.entries.size() > segment.capacity && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[Math.floorMod(hash, segments.length)];
+    }
+
+    private static final class Segment<K, V> {
+        private final int capacity;
+        // Access order, so iteration starts at the least recently used entry.
+        private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long generation;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long storedAt;
+
+        private Entry(V value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+
+    /**
+     * A snapshot of the cache's counters.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final int size;
+
+        Stats(long hits, long misses, long evictions, long expirations, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return How many entries were dropped to make room.
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return How many entries were dropped for having outlived their time to live.
+         */
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses (%.1f%% hit), %d evictions, %d expirations, %d entries",
+                    hits, misses, getHitRatio() * 100, evictions, expirations, size);
+        }
+    }
+}
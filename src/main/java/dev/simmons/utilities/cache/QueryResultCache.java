@@ -0,0 +1,205 @@
+package dev.simmons.utilities.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches query results under a weight budget, invalidated through version counters rather than by finding the
+ * affected entries. Each result depends on tags naming the data it was read from (say, "expenses of issuer 3");
+ * a write bumps the version of every tag it touched, and a result whose tags moved on since it was read is dropped
+ * the next time it is looked up. The least recently used results are dropped when the budget is exceeded.
+ * <pre>{@code
+ * List<Expense> page = cache.get(key);
+ * if (page == null) {
+ *     QueryResultCache.Stamp stamp = cache.stamp("issuer:3");
+ *     page = run the query;
+ *     cache.put(key, page, page.size(), stamp);
+ * }
+ * }</pre>
+ * Taking the stamp before running the query means a write that lands meanwhile leaves the result stale, not cached.
+ */
+public class QueryResultCache {
+    private final long maxWeight;
+    private final ConcurrentMap<Object, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    // Access order, so iteration starts at the least recently used result. Guarded by this.
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+
+    /**
+     * @param maxWeight The most weight, in whatever unit results are weighed in, to keep.
+     */
+    public QueryResultCache(long maxWeight) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("The cache's weight budget has to be positive.");
+        }
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @return The result cached under the key, or null if there is none or its tags have changed since.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(Object key) {
+        Object value = null;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.stamp.isCurrent()) {
+                    value = entry.value;
+                } else {
+                    drop(key, entry);
+                    stale.increment();
+                }
+            }
+        }
+        (value == null ? misses : hits).increment();
+        return (V) value;
+    }
+
+    /**
+     * Record the current versions of the tags a query is about to read.
+     */
+    public Stamp stamp(Object... tags) {
+        long[] seen = new long[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            AtomicLong version = versions.get(tags[i]);
+            seen[i] = version == null ? 0 : version.get();
+        }
+        return new Stamp(tags, seen, epoch.get());
+    }
+
+    /**
+     * Cache a result read after taking the stamp. Results heavier than the whole budget aren't kept.
+     * @param weight The result's share of the budget.
+     */
+    public synchronized void put(Object key, Object value, long weight, Stamp stamp) {
+        if (weight > maxWeight || !stamp.isCurrent()) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(value, weight, stamp));
+        if (previous != null) {
+            this.weight -= previous.weight;
+        }
+        this.weight += weight;
+
+        Iterator<Map.Entry<Object, Entry>> eldest = entries.entrySet().iterator();
+        while (this.weight > maxWeight && eldest.hasNext()) {
+            this.weight -= eldest.next().getValue().weight;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Mark everything read from the tags as stale.
+     */
+    public void invalidate(Object... tags) {
+        for (Object tag : tags) {
+            versions.computeIfAbsent(tag, t -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Mark every result as stale, for writes that can't tell what they touched.
+     */
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return How many results were dropped to stay within the budget.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return How many results were dropped because a write changed what they were read from.
+     */
+    public long getStale() {
+        return stale.sum();
+    }
+
+    /**
+     * @return The weight of the results held, stale ones included until they are looked up or evicted.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses (%.1f%% hit), %d evictions, %d stale, %d/%d weight",
+                getHits(), getMisses(), getHitRatio() * 100, getEvictions(), getStale(), getWeight(), maxWeight);
+    }
+
+    private void drop(Object key, Entry entry) {
+        entries.remove(key);
+        weight -= entry.weight;
+    }
+
+    /**
+     * The versions of a query's tags when it was run.
+     */
+    public final class Stamp {
+        private final Object[] tags;
+        private final long[] seen;
+        private final long seenEpoch;
+
+        private Stamp(Object[] tags, long[] seen, long seenEpoch) {
+            this.tags = tags;
+            this.seen = seen;
+            this.seenEpoch = seenEpoch;
+        }
+
+        private boolean isCurrent() {
+            if (epoch.get() != seenEpoch) {
+                return false;
+            }
+            for (int i = 0; i < tags.length; i++) {
+                AtomicLong version = versions.get(tags[i]);
+                if ((version == null ? 0 : version.get()) != seen[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long weight;
+        private final Stamp stamp;
+
+        private Entry(Object value, long weight, Stamp stamp) {
+            this.value = value;
+            this.weight = weight;
+            this.stamp = stamp;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package dev.simmons.utilities.connection;
+
+import dev.simmons.utilities.logging.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of physical database connections.
+ * Borrowed connections are handed out as proxies whose close() returns the physical connection to the pool.
+ * Each physical connection can keep its own cache of prepared statements, which outlives any single borrow.
+ * A connection that reports a connection exception, through itself or any of its statements, is closed rather than
+ * returned, and a returned connection gets back the isolation level and read-only setting it was opened with.
+ */
+public class ConnectionPool implements AutoCloseable {
+    /**
+     * Opens a new physical connection for the pool.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    // Connections handed back within this window are trusted without a round trip to the server.
+    private static final long validationBypassMillis = 500;
+    private static final int validationTimeoutSeconds = 5;
+
+    private final ConnectionFactory factory;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final int statementCacheSize;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    /**
+     * Create a pool without statement caching and fill it up to its minimum size.
+     * @param factory Source of new physical connections.
+     * @param minSize The number of connections kept open even when idle.
+     * @param maxSize The maximum number of physical connections the pool will open.
+     * @param idleTimeoutMillis How long a connection above the minimum may sit idle before it is closed.
+     * @param borrowTimeoutMillis How long a borrower waits for a free connection before giving up.
+     */
+    public ConnectionPool(ConnectionFactory factory, int minSize, int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis) {
+        this(factory, minSize, maxSize, idleTimeoutMillis, borrowTimeoutMillis, 0);
+    }
+
+    /**
+     * Create a pool and fill it up to its minimum size.
+     * @param factory Source of new physical connections.
+     * @param minSize The number of connections kept open even when idle.
+     * @param maxSize The maximum number of physical connections the pool will open.
+     * @param idleTimeoutMillis How long a connection above the minimum may sit idle before it is closed.
+     * @param borrowTimeoutMillis How long a borrower waits for a free connection before giving up.
+     * @param statementCacheSize How many prepared statements each connection keeps for reuse, 0 to turn caching off.
+     */
+    public ConnectionPool(ConnectionFactory factory, int minSize, int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis, int statementCacheSize) {
+        if (maxSize <= 0 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool bounds: min " + minSize + ", max " + maxSize + ".");
+        }
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        fillToMinimum();
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection, waiting up to the borrow timeout for one to become free.
+     * @return A connection that is returned to the pool when closed.
+     * @throws SQLException If no connection became free in time, or a new one could not be opened.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been shut down.", "08003");
+        }
+
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + "ms waiting for a pooled connection " +
+                        "(" + maxSize + " in use).", "08001");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection.", "08001", ie);
+        }
+
+        try {
+            while (true) {
+                PooledConnection pooled;
+                while ((pooled = idle.pollFirst()) != null) {
+                    if (isUsable(pooled)) {
+                        return pooled.lease();
+                    }
+                    discard(pooled);
+                }
+                pooled = open(maxSize);
+                if (pooled != null) {
+                    return pooled.lease();
+                }
+                // Every slot is open, but with our permit held at least one of them is on its way to the idle list.
+                Thread.yield();
+            }
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getTotalCount() {
+        return total.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Close every idle connection and stop handing out new ones.
+     * Borrowed connections are closed as they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (closed || pooled.broken || pooled.physical.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                // A borrower left a transaction open; never hand uncommitted work to the next borrower.
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            if (pooled.settingsChanged) {
+                pooled.physical.setTransactionIsolation(pooled.isolation);
+                pooled.physical.setReadOnly(pooled.readOnly);
+                pooled.settingsChanged = false;
+            }
+            pooled.lastReturned = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.WARNING, se);
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Open a new connection if fewer than the limit are open. The slot is counted before the connection is opened
+     * and given back if opening fails, so borrowers and the evictor together never go over the maximum.
+     * @return The connection, or null if the limit has been reached.
+     */
+    private PooledConnection open(int limit) throws SQLException {
+        int count;
+        do {
+            count = total.get();
+            if (count >= limit) {
+                return null;
+            }
+        } while (!total.compareAndSet(count, count + 1));
+
+        Connection physical = null;
+        try {
+            physical = factory.open();
+            return new PooledConnection(physical);
+        } catch (SQLException | RuntimeException e) {
+            total.decrementAndGet();
+            if (physical != null) {
+                try {
+                    physical.close();
+                } catch (SQLException se) {
+                    e.addSuppressed(se);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastReturned < validationBypassMillis) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException se) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        total.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.WARNING, se);
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        // Oldest connections sit at the tail since returns are pushed onto the head.
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && total.get() > minSize) {
+            PooledConnection pooled = it.next();
+            if (pooled.lastReturned < cutoff && idle.remove(pooled)) {
+                discard(pooled);
+            }
+        }
+        fillToMinimum();
+    }
+
+    private void fillToMinimum() {
+        while (!closed) {
+            try {
+                PooledConnection pooled = open(minSize);
+                if (pooled == null) {
+                    return;
+                }
+                idle.offerLast(pooled);
+            } catch (SQLException se) {
+                Logger.log(Logger.Level.WARNING, se);
+                return;
+            }
+        }
+    }
+
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statements;
+        private final int isolation;
+        private final boolean readOnly;
+        private volatile long lastReturned;
+        private volatile boolean broken;
+        private volatile boolean settingsChanged;
+
+        private PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.isolation = physical.getTransactionIsolation();
+            this.readOnly = physical.isReadOnly();
+            this.statements = statementCacheSize > 0 ? new StatementCache(physical, statementCacheSize) : null;
+            this.lastReturned = System.currentTimeMillis();
+        }
+
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Lease(this));
+        }
+    }
+
+    /**
+     * The handler behind one borrow of a pooled connection. Closing it gives the connection back exactly once.
+     */
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final List<PreparedStatement> borrowedStatements = new ArrayList<>();
+        private boolean returned;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        // Like a real close, this closes any statements the borrower left open.
+                        StatementCache.returnAll(borrowedStatements);
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "unwrap":
+                    return pooled.physical.unwrap((Class<?>) args[0]);
+                case "isWrapperFor":
+                    return pooled.physical.isWrapperFor((Class<?>) args[0]);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled(" + pooled.physical + ")";
+            }
+
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool.", "08003");
+            }
+
+            if ("setTransactionIsolation".equals(method.getName()) || "setReadOnly".equals(method.getName())) {
+                pooled.settingsChanged = true;
+            }
+
+            if (pooled.statements != null && "prepareStatement".equals(method.getName())) {
+                if (args.length == 1) {
+                    return watch(pooled.statements.prepare((Connection) proxy, (String) args[0], Statement.NO_GENERATED_KEYS, borrowedStatements));
+                }
+                if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+                    return watch(pooled.statements.prepare((Connection) proxy, (String) args[0], (Integer) args[1], borrowedStatements));
+                }
+            }
+
+            Object result = call(pooled, pooled.physical, method, args);
+            return result instanceof Statement ? watch((Statement) result) : result;
+        }
+
+        /**
+         * Wrap a statement so a connection exception it raises marks the connection broken, as one raised by the
+         * connection itself does.
+         */
+        private Statement watch(Statement statement) {
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return (Statement) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> call(pooled, statement, method, args));
+        }
+    }
+
+    private static Object call(PooledConnection pooled, Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ite) {
+            Throwable cause = ite.getCause();
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                // Class 08 is a connection exception; the physical connection can't be trusted afterwards.
+                if (state != null && state.startsWith("08")) {
+                    pooled.broken = true;
+                }
+            }
+            throw cause;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package dev.simmons.utilities.connection;
 
+import dev.simmons.utilities.Environment;
 import dev.simmons.utilities.logging.Logger;
 
 import java.sql.Connection;
@@ -8,6 +9,7 @@ import java.sql.SQLException;
 
 /**
  * Static class holding connection information for connection to the postgreSQL database.
+ * Connections are pooled unless POSTGRES_POOLED is set to false; the POSTGRES_POOL_* variables size the pool.
  */
 public class PostgresConnection {
 	private static final String db = "expenses";
@@ -15,19 +17,60 @@ public class PostgresConnection {
     private static final String username = System.getenv("POSTGRES_USERNAME");
     private static final String url = System.getenv("POSTGRES_AWS") + "/" + db;
 
+    private static final boolean pooled = !"false".equalsIgnoreCase(System.getenv("POSTGRES_POOLED"));
+    private static final int poolMin = Environment.getInt("POSTGRES_POOL_MIN", 2, 0);
+    private static final int poolMax = Environment.getInt("POSTGRES_POOL_MAX", 10, 1);
+    private static final long poolIdleTimeout = Environment.getInt("POSTGRES_POOL_IDLE_TIMEOUT_MS", 300_000, 1);
+    private static final long poolBorrowTimeout = Environment.getInt("POSTGRES_POOL_BORROW_TIMEOUT_MS", 5_000, 0);
+    private static final int statementCacheSize = Environment.getInt("POSTGRES_STATEMENT_CACHE_SIZE", 64, 0);
+
     private PostgresConnection() {
 
     }
     /**
      * Get connection with stored connection information.
+     * In pooled mode, closing the connection hands it back to the pool instead of disconnecting.
      * @return A database connection if successfully connected, null otherwise.
      */
     public static Connection getConnection() {
         try {
-            return DriverManager.getConnection(url, username, password);
+            return pooled ? PoolHolder.pool.borrow() : openConnection();
         } catch (SQLException e) {
             Logger.log(Logger.Level.WARNING, e);
             return null;
         }
     }
+
+    /**
+     * Get the shared connection pool, creating it on first use.
+     * @return The pool, or null when pooling is turned off.
+     */
+    public static ConnectionPool getPool() {
+        return pooled ? PoolHolder.pool : null;
+    }
+
+    /**
+     * Open a connection of its own, outside the pool, for a long-lived session such as a LISTEN.
+     * The caller closes it.
+     * @return The driver's connection, unwrapped, so driver extensions are reachable.
+     */
+    public static Connection getDedicatedConnection() throws SQLException {
+        return openConnection();
+    }
+
+    private static Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    // Lazily created so that nothing connects until the first connection is asked for.
+    private static class PoolHolder {
+        private static final ConnectionPool pool = createPool();
+
+        private static ConnectionPool createPool() {
+            ConnectionPool created = new ConnectionPool(PostgresConnection::openConnection,
+                    poolMin, poolMax, poolIdleTimeout, poolBorrowTimeout, statementCacheSize);
+            Runtime.getRuntime().addShutdownHook(new Thread(created::close, "connection-pool-shutdown"));
+            return created;
+        }
+    }
 }
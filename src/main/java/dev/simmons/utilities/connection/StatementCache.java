@@ -0,0 +1,181 @@
+package dev.simmons.utilities.connection;
+
+import dev.simmons.utilities.logging.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * LRU cache of prepared statements belonging to a single physical connection, keyed by SQL text.
+ * Only the borrower of the owning connection touches it, so it is not synchronized.
+ */
+class StatementCache {
+    private final Connection physical;
+    private final int capacity;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    StatementCache(Connection physical, int capacity) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Hand out the cached statement for the SQL, preparing and caching it on a miss.
+     * If the cached statement is still checked out, an uncached one is prepared instead.
+     * @param connection The connection proxy the statement should report as its owner.
+     * @param sql The SQL text.
+     * @param autoGeneratedKeys Either Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS.
+     * @param onBorrow Told about every statement handed out, so it can be reclaimed if the borrower forgets to close it.
+     * @return A statement whose close() returns it to the cache.
+     */
+    PreparedStatement prepare(Connection connection, String sql, int autoGeneratedKeys, List<PreparedStatement> onBorrow) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "#keys#" + sql : sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && cached.inUse) {
+            PreparedStatement uncached = physical.prepareStatement(sql, autoGeneratedKeys);
+            onBorrow.add(uncached);
+            return uncached;
+        }
+        if (cached == null) {
+            cached = new CachedStatement(key, physical.prepareStatement(sql, autoGeneratedKeys));
+            statements.put(key, cached);
+            evictOverCapacity();
+        }
+
+        cached.inUse = true;
+        PreparedStatement handle = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new Handle(cached, connection));
+        onBorrow.add(handle);
+        return handle;
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    private void evictOverCapacity() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (statements.size() > capacity && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            it.remove();
+            eldest.evicted = true;
+            if (!eldest.inUse) {
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException se) {
+            Logger.log(Logger.Level.WARNING, se);
+        }
+    }
+
+    /**
+     * Close every statement handed out during one borrow of the connection, returning cached ones to the cache.
+     * @param borrowed The statements collected through prepare().
+     */
+    static void returnAll(List<PreparedStatement> borrowed) {
+        for (PreparedStatement statement : new ArrayList<>(borrowed)) {
+            closeQuietly(statement);
+        }
+        borrowed.clear();
+    }
+
+    private static final class CachedStatement {
+        private final String key;
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(String key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+    }
+
+    /**
+     * One checkout of a cached statement. Closing it resets the statement and puts it back, or
+     * really closes it if the cache evicted it in the meantime.
+     */
+    private final class Handle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection connection;
+        private boolean returned;
+
+        private Handle(CachedStatement cached, Connection connection) {
+            this.cached = cached;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    giveBack();
+                    return null;
+                case "isClosed":
+                    return returned || cached.statement.isClosed();
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached(" + cached.statement + ")";
+            }
+
+            if (returned) {
+                throw new SQLException("Statement has already been closed.");
+            }
+
+            try {
+                return method.invoke(cached.statement, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+
+        private void giveBack() {
+            if (returned) {
+                return;
+            }
+            returned = true;
+            cached.inUse = false;
+            if (cached.evicted) {
+                closeQuietly(cached.statement);
+                return;
+            }
+            try {
+                ResultSet rs = cached.statement.getResultSet();
+                if (rs != null) {
+                    rs.close();
+                }
+                cached.statement.clearParameters();
+                cached.statement.clearWarnings();
+                // A streaming read may have asked for a cursor; the next borrower shouldn't inherit it.
+                cached.statement.setFetchSize(0);
+            } catch (SQLException se) {
+                // Can't be sure what state it is in; drop it rather than hand it out again.
+                statements.remove(cached.key);
+                cached.evicted = true;
+                closeQuietly(cached.statement);
+            }
+        }
+    }
+}
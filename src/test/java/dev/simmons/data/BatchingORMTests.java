@@ -0,0 +1,109 @@
+package dev.simmons.data;
+
+import dev.simmons.entities.Expense;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class BatchingORMTests {
+    @Test
+    void concurrentLookupsShareOneQuery() throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        BatchingORM<Expense> orm = new BatchingORM<>(database(queries, 100), 200_000, 1000);
+        ExecutorService pool = Executors.newFixedThreadPool(20);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Expense>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                // Two callers for each id, each wanting an expense of their own.
+                int id = i % 10 + 1;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return orm.getEntityById(id);
+                }));
+            }
+            start.countDown();
+            List<Expense> found = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                Expense expense = results.get(i).get(5, TimeUnit.SECONDS);
+                Assertions.assertEquals(i % 10 + 1, expense.getId());
+                for (Expense other : found) {
+                    Assertions.assertNotSame(other, expense);
+                }
+                found.add(expense);
+            }
+            Assertions.assertTrue(queries.get() < 5, queries.get() + " queries for 20 lookups");
+            Assertions.assertEquals(20, orm.getLookups());
+            Assertions.assertEquals(queries.get(), orm.getBatches());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void fullBatchesRunWithoutWaiting() throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        // A window far longer than the test: only the key limit can run the batch in time.
+        BatchingORM<Expense> orm = new BatchingORM<>(database(queries, 100), TimeUnit.SECONDS.toMicros(30), 2);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Expense> first = pool.submit(() -> orm.getEntityById(1));
+            Future<Expense> second = pool.submit(() -> orm.getEntityById(2));
+            Assertions.assertEquals(2, second.get(5, TimeUnit.SECONDS).getId());
+            Assertions.assertEquals(1, first.get(5, TimeUnit.SECONDS).getId());
+            Assertions.assertEquals(1, queries.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void missingIdsFailOnlyTheirOwnCallers() throws Exception {
+        BatchingORM<Expense> orm = new BatchingORM<>(database(new AtomicInteger(), 5), 1000, 100);
+        SQLException missing = Assertions.assertThrows(SQLException.class, () -> orm.getEntityById(6));
+        Assertions.assertEquals("24000", missing.getSQLState());
+        Assertions.assertEquals(5, orm.getEntityById(5).getId());
+    }
+
+    /**
+     * An ORM holding expenses 1 to rows, counting the lookups it answers.
+     */
+    @SuppressWarnings("unchecked")
+    private static DataWrapperORM<Expense> database(AtomicInteger queries, int rows) {
+        EntityPlan<Expense> plan = EntityPlan.of(Expense.class);
+        return (DataWrapperORM<Expense>) Proxy.newProxyInstance(BatchingORMTests.class.getClassLoader(),
+                new Class<?>[]{DataWrapperORM.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getPlan":
+                            return plan;
+                        case "getEntitiesByIds":
+                            queries.incrementAndGet();
+                            Map<Integer, Expense> found = new LinkedHashMap<>();
+                            for (int id : (int[]) args[0]) {
+                                if (id >= 1 && id <= rows) {
+                                    Expense expense = new Expense();
+                                    expense.setId(id);
+                                    expense.setAmount(id * 10L);
+                                    expense.setIssuer(1);
+                                    found.put(id, expense);
+                                }
+                            }
+                            return found;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,89 @@
+package dev.simmons.data;
+
+import dev.simmons.entities.Employee;
+import dev.simmons.entities.Expense;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+class BulkLoaderTests {
+    @Test
+    void parsesCsvByFieldOrColumnName() {
+        EntityPlan<Expense> plan = EntityPlan.of(Expense.class);
+        Iterator<Expense> rows = BulkSources.csv(new StringReader(
+                "amount,STATUS,date,issuer,note\n" +
+                "100,PENDING,5,1,\"a, quoted \"\"note\"\"\"\n" +
+                "\n" +
+                "not a number,PENDING,5,1,x\n" +
+                "200,,6,1,y\n"), plan);
+
+        Expense first = rows.next();
+        Assertions.assertEquals(100, first.getAmount());
+        Assertions.assertEquals(Expense.Status.PENDING, first.getStatus());
+        Assertions.assertEquals(1, first.getIssuer());
+        Assertions.assertThrows(RuntimeException.class, rows::next);
+        Expense third = rows.next();
+        Assertions.assertEquals(200, third.getAmount());
+        Assertions.assertFalse(rows.hasNext());
+    }
+
+    @Test
+    void splitsQuotedValues() {
+        Assertions.assertEquals(Arrays.asList("a", "b,c", "d\"e", ""), BulkSources.split("a,\"b,c\",\"d\"\"e\","));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BulkSources.split("\"open"));
+    }
+
+    @Test
+    void loadsValidRowsAndReportsRejects() {
+        PostgresORM<Employee> orm = new PostgresORM<>(Employee.class);
+        String marker = "Bulk" + System.nanoTime();
+        Iterator<Employee> rows = BulkSources.ndjson(new StringReader(
+                "{\"firstName\": \"" + marker + "\", \"lastName\": \"Tab\\there\"}\n" +
+                "{\"firstName\": \"\", \"lastName\": \"Empty\"}\n" +
+                "{not json\n" +
+                "{\"firstName\": \"" + marker + "\", \"lastName\": \"Back\\\\slash\"}\n"), Employee.class);
+
+        BulkLoader<Employee> loader = new BulkLoader<>(orm.getPlan(), employee -> {
+            if (employee.getFirstName().isEmpty()) {
+                throw new IllegalArgumentException("No first name.");
+            }
+        });
+        try {
+            BulkLoadReport report = loader.load(rows);
+            Assertions.assertEquals(2, report.getLoaded());
+            Assertions.assertEquals(2, report.getRejected());
+            Assertions.assertEquals(2, report.getRejects().get(0).getRow());
+            Assertions.assertEquals("No first name.", report.getRejects().get(0).getReason());
+            Assertions.assertEquals(3, report.getRejects().get(1).getRow());
+            Assertions.assertTrue(report.getRowsPerSecond() > 0);
+
+            List<String> lastNames = new ArrayList<>();
+            for (Employee employee : orm.getAllEntities()) {
+                if (employee.getFirstName().equals(marker)) {
+                    lastNames.add(employee.getLastName());
+                    Assertions.assertTrue(orm.deleteEntity(employee.getId()));
+                }
+            }
+            lastNames.sort(null);
+            Assertions.assertEquals(Arrays.asList("Back\\slash", "Tab\there"), lastNames);
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    void serverErrorsAbortTheLoad() {
+        PostgresORM<Expense> orm = new PostgresORM<>(Expense.class);
+        Expense orphan = new Expense();
+        orphan.setAmount(10);
+        orphan.setIssuer(Integer.MAX_VALUE);
+        BulkLoader<Expense> loader = new BulkLoader<>(orm.getPlan(), expense -> { });
+        Assertions.assertThrows(SQLException.class, () -> loader.load(Arrays.asList(orphan).iterator()));
+    }
+}
@@ -0,0 +1,118 @@
+package dev.simmons.data;
+
+import dev.simmons.entities.Employee;
+import dev.simmons.entities.Expense;
+import dev.simmons.utilities.connection.PostgresConnection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+class ChangeListenerTests {
+    @Test
+    void reportsRowChangesWithBeforeAndAfter() throws SQLException, InterruptedException {
+        PostgresORM<Expense> orm = new PostgresORM<>(Expense.class);
+        BlockingQueue<EntityChange<Expense>> received = new LinkedBlockingQueue<>();
+        try (ChangeListener listener = new ChangeListener()) {
+            listener.subscribe(orm.getPlan(), new ChangeListener.Subscriber<Expense>() {
+                @Override
+                public void changed(List<EntityChange<Expense>> changes) {
+                    received.addAll(changes);
+                }
+
+                @Override
+                public void missed() {
+                    Assertions.fail("No notification should go missing.");
+                }
+            }).start();
+            for (int i = 0; i < 50 && !listener.isListening(); i++) {
+                Thread.sleep(100);
+            }
+            Assertions.assertTrue(listener.isListening());
+
+            Expense expense = new Expense();
+            expense.setAmount(80);
+            expense.setDate(1646092800L);
+            expense.setIssuer(1);
+            expense = orm.createEntity(expense);
+            Expense changed = new Expense(expense);
+            changed.setAmount(90);
+            orm.replaceEntity(changed);
+            orm.deleteEntity(expense.getId());
+
+            EntityChange<Expense> insert = next(received, expense.getId());
+            Assertions.assertEquals(EntityChange.Operation.INSERT, insert.getOperation());
+            Assertions.assertNull(insert.getBefore());
+            Assertions.assertEquals(expense, insert.getAfter());
+
+            EntityChange<Expense> update = next(received, expense.getId());
+            Assertions.assertEquals(EntityChange.Operation.UPDATE, update.getOperation());
+            Assertions.assertEquals(expense, update.getBefore());
+            Assertions.assertEquals(changed, update.getAfter());
+
+            EntityChange<Expense> delete = next(received, expense.getId());
+            Assertions.assertEquals(EntityChange.Operation.DELETE, delete.getOperation());
+            Assertions.assertEquals(changed, delete.getBefore());
+            Assertions.assertNull(delete.getAfter());
+        }
+    }
+
+    @Test
+    void reportsEachRowOfAStatementAndBulkStatementsAsMissed() throws SQLException, InterruptedException {
+        BlockingQueue<EntityChange<Employee>> received = new LinkedBlockingQueue<>();
+        CountDownLatch missed = new CountDownLatch(1);
+        try (ChangeListener listener = new ChangeListener()) {
+            listener.subscribe(EntityPlan.of(Employee.class), new ChangeListener.Subscriber<Employee>() {
+                @Override
+                public void changed(List<EntityChange<Employee>> changes) {
+                    received.addAll(changes);
+                }
+
+                @Override
+                public void missed() {
+                    missed.countDown();
+                }
+            }).start();
+            for (int i = 0; i < 50 && !listener.isListening(); i++) {
+                Thread.sleep(100);
+            }
+            Assertions.assertTrue(listener.isListening());
+
+            try (Connection conn = PostgresConnection.getConnection(); Statement statement = conn.createStatement()) {
+                statement.executeUpdate("insert into employee (first_name, last_name) select 'Few', 'Listened' || g from generate_series(1, 3) g");
+                for (int i = 0; i < 3; i++) {
+                    EntityChange<Employee> insert = received.poll(5, TimeUnit.SECONDS);
+                    Assertions.assertNotNull(insert, "Each inserted row should be reported.");
+                    Assertions.assertEquals(EntityChange.Operation.INSERT, insert.getOperation());
+                    Assertions.assertEquals("Few", insert.getAfter().getFirstName());
+                }
+                statement.executeUpdate("delete from employee where first_name = 'Few' and last_name like 'Listened%'");
+                Assertions.assertEquals(1, missed.getCount(), "Three rows are few enough to list.");
+
+                statement.executeUpdate("insert into employee (first_name, last_name) select 'Bulk', 'Listened' || g from generate_series(1, 101) g");
+                statement.executeUpdate("delete from employee where first_name = 'Bulk' and last_name like 'Listened%'");
+                Assertions.assertTrue(missed.await(5, TimeUnit.SECONDS), "A bulk statement should be reported as missed.");
+            }
+        }
+    }
+
+    /**
+     * @return The next change to the expense, skipping changes other tests make meanwhile.
+     */
+    private static EntityChange<Expense> next(BlockingQueue<EntityChange<Expense>> received, int id) throws InterruptedException {
+        while (true) {
+            EntityChange<Expense> change = received.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(change, "No change to expense " + id + " arrived.");
+            if (change.getId() == id) {
+                return change;
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dev.simmons.data;
+
+import dev.simmons.entities.Expense;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class CriteriaTests {
+    private final PostgresORM<Expense> orm = new PostgresORM<>(Expense.class);
+
+    @Test
+    void rendersParameterizedWhereClauses() {
+        Assertions.assertEquals("status = ?", orm.where(Criteria.where("status", Expense.Status.PENDING)));
+        Assertions.assertEquals("issuer = ? and status = any(?)", orm.where(
+                Criteria.where("issuer", 1).andIn("status", Arrays.asList(Expense.Status.APPROVED, Expense.Status.DENIED))));
+        Assertions.assertEquals("expense_id = any(?) and issuer is null", orm.where(
+                Criteria.whereIn("id", Arrays.asList(1, 2)).and("issuer", null)));
+        Assertions.assertEquals("date >= ? and date <= ?", orm.where(Criteria.all().andAtLeast("date", 1L).andAtMost("date", 2L)));
+        Assertions.assertEquals("true", orm.where(Criteria.all()));
+    }
+
+    // None of these reach the database: the criteria are checked before a connection is borrowed.
+    @Test
+    void rejectsUnknownFieldsAndMistypedValues() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> orm.where(Criteria.where("1 = 1 or status", "x")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> orm.where(Criteria.where("issuer", "1")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> orm.findBy("issuer", "1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> orm.find(Criteria.whereIn("amount", Arrays.asList(1L, "2"))));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> orm.exists(Criteria.where("status", "PENDING")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> orm.deleteWhere(Criteria.all().andAtLeast("date", "yesterday")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> orm.getPage(Criteria.whereIn("issuer", Arrays.asList(1, null)), 0, 10));
+    }
+
+    @Test
+    void filtersInTheDatabase() {
+        try {
+            List<Expense> all = orm.getAllEntities();
+
+            List<Expense> approved = orm.findBy("status", Expense.Status.APPROVED);
+            Assertions.assertEquals(all.stream().filter(e -> e.getStatus() == Expense.Status.APPROVED).count(), approved.size());
+
+            List<Expense> decided = orm.find(Criteria.where("issuer", 1)
+                    .andIn("status", Arrays.asList(Expense.Status.APPROVED, Expense.Status.DENIED)));
+            Assertions.assertEquals(all.stream().filter(e -> e.getIssuer() == 1 && e.getStatus() != Expense.Status.PENDING).count(),
+                    decided.size());
+
+            Assertions.assertEquals(Collections.singletonList(orm.getEntityById(1)), orm.find(Criteria.whereIn("expense_id", Collections.singletonList(1))));
+            Assertions.assertTrue(orm.find(Criteria.whereIn("id", Collections.emptyList())).isEmpty());
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package dev.simmons.data;
+
+import dev.simmons.entities.Employee;
+import dev.simmons.entities.Expense;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class EntityPlanTests {
+    @Test
+    void expensePlanFollowsDeclarationOrder() {
+        EntityPlan<Expense> plan = EntityPlan.of(Expense.class);
+        Assertions.assertEquals("Expense", plan.getTable());
+        Assertions.assertEquals("expense_id", plan.getPrimaryKey().getColumn());
+        Assertions.assertEquals(1, plan.getPrimaryKey().getSelectIndex());
+        Assertions.assertEquals("expense_id, amount, status, date, issuer", plan.selectList());
+        Assertions.assertEquals(4, plan.getValueColumns().size());
+    }
+
+    @Test
+    void accessorsRoundTrip() {
+        EntityPlan<Expense> plan = EntityPlan.of(Expense.class);
+        Expense exp = plan.newInstance();
+        for (ColumnMapping<Expense> column : plan.getColumns()) {
+            switch (column.getFieldName()) {
+                case "id":
+                    column.set(exp, 7);
+                    break;
+                case "amount":
+                    column.set(exp, 1500L);
+                    break;
+                case "status":
+                    column.set(exp, Expense.Status.DENIED);
+                    break;
+                case "date":
+                    column.set(exp, 99L);
+                    break;
+                case "issuer":
+                    column.set(exp, 3);
+                    break;
+            }
+        }
+
+        Assertions.assertEquals(7, exp.getId());
+        Assertions.assertEquals(1500L, exp.getAmount());
+        Assertions.assertEquals(Expense.Status.DENIED, exp.getStatus());
+        Assertions.assertEquals(99L, exp.getDate());
+        Assertions.assertEquals(3, exp.getIssuer());
+
+        EntityPlan<Employee> empPlan = EntityPlan.of(Employee.class);
+        Employee emp = new Employee();
+        emp.setFirstName("First");
+        Assertions.assertEquals("First", empPlan.getValueColumns().get(0).get(emp));
+    }
+
+    @Test
+    void rejectsClassesWithoutAnnotations() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> EntityPlan.of(String.class));
+    }
+}
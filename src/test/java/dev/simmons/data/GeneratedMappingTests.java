@@ -0,0 +1,73 @@
+package dev.simmons.data;
+
+import dev.simmons.entities.Employee;
+import dev.simmons.entities.Employee_Mapping;
+import dev.simmons.entities.Expense;
+import dev.simmons.entities.Expense_Mapping;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class GeneratedMappingTests {
+    @Test
+    void discoversCompileTimeMappings() {
+        Assertions.assertTrue(PostgresORM.generatedMapping(Expense.class) instanceof Expense_Mapping);
+        Assertions.assertTrue(PostgresORM.generatedMapping(Employee.class) instanceof Employee_Mapping);
+        Assertions.assertNull(PostgresORM.generatedMapping(String.class));
+    }
+
+    @Test
+    void generatedPlanMatchesRuntimePlan() {
+        assertSamePlan(EntityPlan.of(Expense.class), new Expense_Mapping().plan());
+        assertSamePlan(EntityPlan.of(Employee.class), new Employee_Mapping().plan());
+    }
+
+    @Test
+    void ormUsesGeneratedSql() {
+        PostgresORM<Expense> orm = new PostgresORM<>(Expense.class);
+        Assertions.assertEquals(Expense_Mapping.GET_BY_ID_SQL, orm.getByIdSql);
+        Assertions.assertEquals(Expense_Mapping.UPDATE_SQL, orm.updateSql);
+        Assertions.assertEquals("select expense_id, amount, status, date, issuer from Expense where expense_id = ?;", orm.getByIdSql);
+        Assertions.assertSame(new Expense_Mapping().mapper(), orm.mapper());
+    }
+
+    @Test
+    void exposesForeignKeys() {
+        Assertions.assertEquals("Employee", Expense_Mapping.FK_ISSUER_TABLE);
+        Assertions.assertEquals("employee_id", Expense_Mapping.FK_ISSUER_COLUMN);
+        Assertions.assertEquals("first_name", Employee_Mapping.COLUMN_FIRST_NAME);
+    }
+
+    @Test
+    void generatedAccessorsRoundTrip() {
+        EntityPlan<Expense> plan = new Expense_Mapping().plan();
+        Expense expense = plan.newInstance();
+        for (ColumnMapping<Expense> column : plan.getColumns()) {
+            if (column.getJavaType() == Expense.Status.class) {
+                column.set(expense, Expense.Status.APPROVED);
+            } else if (column.getJavaType() == long.class) {
+                column.set(expense, 7L);
+            } else {
+                column.set(expense, 3);
+            }
+        }
+        Assertions.assertEquals(3, expense.getId());
+        Assertions.assertEquals(7L, expense.getAmount());
+        Assertions.assertEquals(Expense.Status.APPROVED, plan.getColumns().get(2).get(expense));
+    }
+
+    private static <T> void assertSamePlan(EntityPlan<T> expected, EntityPlan<T> actual) {
+        Assertions.assertEquals(expected.getTable(), actual.getTable());
+        Assertions.assertEquals(expected.selectList(), actual.selectList());
+        Assertions.assertEquals(expected.getPrimaryKey().toString(), actual.getPrimaryKey().toString());
+        List<ColumnMapping<T>> columns = actual.getColumns();
+        Assertions.assertEquals(expected.getColumns().size(), columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnMapping<T> column = expected.getColumns().get(i);
+            Assertions.assertEquals(column.toString(), columns.get(i).toString());
+            Assertions.assertEquals(column.getJavaType(), columns.get(i).getJavaType());
+            Assertions.assertEquals(column.getSqlType(), columns.get(i).getSqlType());
+        }
+    }
+}
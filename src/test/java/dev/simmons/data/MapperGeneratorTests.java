@@ -0,0 +1,24 @@
+package dev.simmons.data;
+
+import dev.simmons.entities.Employee;
+import dev.simmons.entities.Expense;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MapperGeneratorTests {
+    @Test
+    void generatesStraightLineSource() {
+        String source = MapperGenerator.generateSource(EntityPlan.of(Expense.class));
+        Assertions.assertNotNull(source);
+        Assertions.assertTrue(source.contains("entity.setAmount(rs.getLong(2));"));
+        Assertions.assertTrue(source.contains("dev.simmons.entities.Expense.Status.valueOf(v)"));
+        Assertions.assertTrue(source.contains("statement.setInt(index, entity.getId());"));
+    }
+
+    @Test
+    void compilesMappersForEntities() {
+        Assertions.assertNotNull(MapperGenerator.forPlan(EntityPlan.of(Expense.class)));
+        Assertions.assertNotNull(MapperGenerator.forPlan(EntityPlan.of(Employee.class)));
+        Assertions.assertSame(MapperGenerator.forPlan(EntityPlan.of(Expense.class)), MapperGenerator.forPlan(EntityPlan.of(Expense.class)));
+    }
+}
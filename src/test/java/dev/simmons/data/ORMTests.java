@@ -2,11 +2,21 @@ package dev.simmons.data;
 
 import dev.simmons.entities.Employee;
 import dev.simmons.entities.Expense;
+import dev.simmons.utilities.connection.PostgresConnection;
 import org.junit.jupiter.api.*;
 import org.postgresql.util.PSQLException;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 class ORMTests {
@@ -187,4 +197,352 @@ class ORMTests {
             Assertions.fail(e);
         }
     }
+
+    @Test
+    @Order(11)
+    void generatedMapperMatchesPlan() {
+        // The compile-time mapping is always picked up, so force the plan-walking mapper for comparison.
+        DataWrapperORM<Expense> planned = new PostgresORM<Expense>(Expense.class) {
+            private final EntityMapper<Expense> planMapper = new PlanMapper<>(plan);
+
+            @Override
+            protected EntityMapper<Expense> mapper() {
+                return planMapper;
+            }
+        };
+        DataWrapperORM<Expense> generated = new PostgresORM<>(Expense.class);
+        try {
+            Assertions.assertEquals(planned.getAllEntities(), generated.getAllEntities());
+        } catch (Exception e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    @Order(12)
+    void createEntitiesInChunks() {
+        PostgresORM<Employee> orm = new PostgresORM<>(Employee.class);
+        orm.setBatchSize(2);
+        List<Employee> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Employee emp = new Employee();
+            emp.setFirstName("Batch" + i);
+            emp.setLastName("Testing");
+            batch.add(emp);
+        }
+
+        try {
+            List<Employee> received = orm.createEntities(batch);
+            Assertions.assertEquals(5, received.size());
+            Assertions.assertEquals(5, received.stream().mapToInt(Employee::getId).filter(id -> id > 0).distinct().count());
+            for (Employee emp : received) {
+                Assertions.assertEquals(emp, orm.getEntityById(emp.getId()));
+                Assertions.assertTrue(orm.deleteEntity(emp.getId()));
+            }
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    @Order(13)
+    void createEntitiesRollsBackOnFailure() {
+        PostgresORM<Expense> orm = new PostgresORM<>(Expense.class);
+        orm.setBatchSize(2);
+        List<Expense> batch = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Expense exp = new Expense();
+            exp.setAmount(100 + i);
+            exp.setDate(1);
+            // The last row, in the second chunk, has no such employee.
+            exp.setIssuer(i == 3 ? Integer.MAX_VALUE : 1);
+            batch.add(exp);
+        }
+
+        try {
+            int before = orm.getAllEntities().size();
+            Assertions.assertThrows(SQLException.class, () -> orm.createEntities(batch));
+            Assertions.assertEquals(before, orm.getAllEntities().size());
+            Assertions.assertTrue(batch.stream().allMatch(e -> e.getId() == 0));
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    @Order(14)
+    void streamAllEntitiesThroughCursor() {
+        PostgresORM<Expense> orm = new PostgresORM<>(Expense.class);
+        orm.setFetchSize(1);
+        int active = PostgresConnection.getPool().getActiveCount();
+        try {
+            List<Expense> all = orm.getAllEntities();
+            try (Stream<Expense> stream = orm.streamAllEntities()) {
+                Assertions.assertEquals(active + 1, PostgresConnection.getPool().getActiveCount());
+                Assertions.assertEquals(new HashSet<>(all), stream.collect(Collectors.toSet()));
+            }
+            Assertions.assertEquals(active, PostgresConnection.getPool().getActiveCount());
+
+            // Abandoning the stream part way still hands the connection back on close.
+            try (Stream<Expense> stream = orm.streamAllEntities()) {
+                Assertions.assertTrue(stream.findFirst().isPresent());
+            }
+            Assertions.assertEquals(active, PostgresConnection.getPool().getActiveCount());
+            Assertions.assertEquals(all.size(), orm.getAllEntities().size());
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    @Order(15)
+    void pagesByKey() {
+        PostgresORM<Expense> orm = new PostgresORM<>(Expense.class);
+        try {
+            List<Expense> all = orm.getAllEntities();
+            all.sort(Comparator.comparingInt(Expense::getId));
+
+            List<Expense> paged = new ArrayList<>();
+            int afterId = 0;
+            List<Expense> page;
+            do {
+                page = orm.getPage(afterId, 2);
+                Assertions.assertTrue(page.size() <= 2);
+                paged.addAll(page);
+                if (!page.isEmpty()) {
+                    afterId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == 2);
+            Assertions.assertEquals(all, paged);
+
+            List<Expense> approved = orm.getPage("status", Expense.Status.APPROVED, 0, 1000);
+            Assertions.assertFalse(approved.isEmpty());
+            Assertions.assertTrue(approved.stream().allMatch(e -> e.getStatus() == Expense.Status.APPROVED));
+            Assertions.assertEquals(orm.getPage("issuer", 1, 0, 1000), orm.getPage("issuer", 1, 0, 1000));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> orm.getPage("amount; drop table expense", 1, 0, 1));
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    @Order(16)
+    void getsManyByIdInOneQuery() {
+        PostgresORM<Expense> orm = new PostgresORM<>(Expense.class);
+        try {
+            Map<Integer, Expense> found = orm.getEntitiesByIds(new int[]{2, -1, 1, 2});
+            Assertions.assertEquals(Arrays.asList(2, 1), new ArrayList<>(found.keySet()));
+            Assertions.assertEquals(orm.getEntityById(1), found.get(1));
+            Assertions.assertEquals(orm.getEntityById(2), found.get(2));
+            Assertions.assertFalse(found.containsKey(-1));
+            Assertions.assertTrue(orm.getEntitiesByIds(new int[0]).isEmpty());
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    @Order(17)
+    void updatesOnlyNamedFields() {
+        DataWrapperORM<Employee> orm = new PostgresORM<>(Employee.class);
+        try {
+            Employee emp = new Employee();
+            emp.setFirstName("Partial");
+            emp.setLastName("Update");
+            emp = orm.createEntity(emp);
+
+            Employee changed = new Employee();
+            changed.setId(emp.getId());
+            changed.setFirstName("Patched");
+            changed.setLastName("Ignored");
+            Assertions.assertSame(changed, orm.updateFields(changed, Collections.singleton("firstName")));
+
+            Employee stored = orm.getEntityById(emp.getId());
+            Assertions.assertEquals("Patched", stored.getFirstName());
+            Assertions.assertEquals("Update", stored.getLastName());
+
+            changed.setFirstName("Again");
+            orm.updateFields(changed, Arrays.asList("last_name", "firstName"));
+            Assertions.assertEquals(changed, orm.getEntityById(emp.getId()));
+
+            Assertions.assertSame(changed, orm.updateFields(changed, Collections.emptyList()));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> orm.updateFields(changed, Collections.singleton("id")));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> orm.updateFields(changed, Collections.singleton("salary")));
+
+            changed.setId(-1);
+            Assertions.assertNull(orm.updateFields(changed, Collections.singleton("firstName")));
+            orm.deleteEntity(emp.getId());
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    @Order(18)
+    void compareAndSetsInOneStatement() {
+        DataWrapperORM<Expense> orm = new PostgresORM<>(Expense.class);
+        try {
+            Expense exp = new Expense();
+            exp.setAmount(500);
+            exp.setIssuer(1);
+            exp.setStatus(Expense.Status.PENDING);
+            exp = orm.createEntity(exp);
+
+            CompareAndSetResult<Expense> result = orm.compareAndSet(exp.getId(), "status", Expense.Status.PENDING, Expense.Status.APPROVED);
+            Assertions.assertEquals(CompareAndSetResult.Outcome.UPDATED, result.getOutcome());
+            Assertions.assertEquals(Expense.Status.PENDING, result.getPrevious());
+            Assertions.assertEquals(Expense.Status.APPROVED, result.getEntity().getStatus());
+            Assertions.assertEquals(result.getEntity(), orm.getEntityById(exp.getId()));
+
+            result = orm.compareAndSet(exp.getId(), "status", Expense.Status.PENDING, Expense.Status.DENIED);
+            Assertions.assertEquals(CompareAndSetResult.Outcome.MISMATCH, result.getOutcome());
+            Assertions.assertEquals(Expense.Status.APPROVED, result.getPrevious());
+            Assertions.assertNull(result.getEntity());
+
+            result = orm.compareAndSet(-1, "status", Expense.Status.PENDING, Expense.Status.DENIED);
+            Assertions.assertEquals(CompareAndSetResult.Outcome.NOT_FOUND, result.getOutcome());
+
+            Assertions.assertThrows(IllegalArgumentException.class, () -> orm.compareAndSet(1, "id", 1, 2));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> orm.compareAndSet(1, "status", "PENDING", Expense.Status.DENIED));
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    @Order(19)
+    void compareAndSetsManyInOneStatement() {
+        DataWrapperORM<Expense> orm = new PostgresORM<>(Expense.class);
+        try {
+            List<Expense> pending = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Expense exp = new Expense();
+                exp.setAmount(700 + i);
+                exp.setIssuer(1);
+                exp.setStatus(Expense.Status.PENDING);
+                pending.add(exp);
+            }
+            pending = orm.createEntities(pending);
+            List<Integer> ids = pending.stream().map(Expense::getId).collect(Collectors.toList());
+            ids.add(1);
+            ids.add(-1);
+
+            Map<Integer, CompareAndSetResult<Expense>> results = orm.compareAndSetAll(
+                    Criteria.whereIn("id", ids), "status", Expense.Status.PENDING, Expense.Status.DENIED);
+            Assertions.assertEquals(4, results.size());
+            Assertions.assertFalse(results.containsKey(-1));
+            Assertions.assertEquals(CompareAndSetResult.Outcome.MISMATCH, results.get(1).getOutcome());
+            for (Expense exp : pending) {
+                Assertions.assertTrue(results.get(exp.getId()).isUpdated());
+                Assertions.assertEquals(Expense.Status.DENIED, orm.getEntityById(exp.getId()).getStatus());
+            }
+
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> orm.compareAndSetAll(Criteria.all(), "status", Expense.Status.PENDING, Expense.Status.DENIED));
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    @Order(20)
+    void upsertsInsertOrUpdateInOneStatement() {
+        DataWrapperORM<Employee> orm = new PostgresORM<>(Employee.class);
+        try {
+            Employee fresh = new Employee();
+            fresh.setFirstName("Upsert");
+            fresh.setLastName("New");
+            fresh = orm.upsertEntity(fresh);
+            Assertions.assertNotEquals(0, fresh.getId());
+            Assertions.assertEquals(fresh, orm.getEntityById(fresh.getId()));
+
+            fresh.setLastName("Existing");
+            orm.upsertEntity(fresh);
+            Assertions.assertEquals("Existing", orm.getEntityById(fresh.getId()).getLastName());
+
+            // A chosen id that isn't taken yet is inserted as is, and the sequence moves past it.
+            int chosen = orm.getAllEntities().stream().mapToInt(Employee::getId).max().getAsInt() + 50;
+            Employee explicit = new Employee();
+            explicit.setId(chosen);
+            explicit.setFirstName("Upsert");
+            explicit.setLastName("Chosen");
+            Employee added = new Employee();
+            added.setFirstName("Upsert");
+            added.setLastName("Batch");
+            fresh.setLastName("Batched");
+            List<Employee> batch = orm.upsertEntities(Arrays.asList(fresh, explicit, added));
+            Assertions.assertEquals(chosen, batch.get(1).getId());
+            Assertions.assertTrue(batch.get(2).getId() > 0);
+            Assertions.assertEquals("Batched", orm.getEntityById(fresh.getId()).getLastName());
+            Assertions.assertEquals(explicit, orm.getEntityById(chosen));
+
+            Employee after = new Employee();
+            after.setFirstName("Upsert");
+            after.setLastName("After");
+            after = orm.createEntity(after);
+            Assertions.assertTrue(after.getId() > chosen);
+
+            for (Employee emp : Arrays.asList(fresh, explicit, added, after)) {
+                orm.deleteEntity(emp.getId());
+            }
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    @Order(21)
+    void cachesLookupsAndDropsThemOnWrites() {
+        AtomicInteger loads = new AtomicInteger();
+        DataWrapperORM<Employee> counting = new ForwardingORM<Employee>(new PostgresORM<>(Employee.class)) {
+            @Override
+            public Employee getEntityById(int id) throws SQLException {
+                loads.incrementAndGet();
+                return super.getEntityById(id);
+            }
+
+            @Override
+            public Map<Integer, Employee> getEntitiesByIds(int[] ids) throws SQLException {
+                loads.addAndGet(ids.length);
+                return super.getEntitiesByIds(ids);
+            }
+        };
+        CachingORM<Employee> orm = new CachingORM<>(counting, 100, 60000);
+        try {
+            Employee emp = new Employee();
+            emp.setFirstName("Cached");
+            emp.setLastName("Before");
+            emp = orm.createEntity(emp);
+
+            Employee first = orm.getEntityById(emp.getId());
+            first.setLastName("Changed by the caller");
+            Assertions.assertEquals("Before", orm.getEntityById(emp.getId()).getLastName());
+            Assertions.assertEquals(1, loads.get());
+
+            emp.setLastName("After");
+            orm.replaceEntity(emp);
+            Assertions.assertEquals("After", orm.getEntityById(emp.getId()).getLastName());
+            Assertions.assertEquals(2, loads.get());
+
+            // Only the id that isn't cached yet is looked up.
+            Map<Integer, Employee> found = orm.getEntitiesByIds(new int[]{emp.getId(), 1, -1});
+            Assertions.assertEquals(Arrays.asList(emp.getId(), 1), new ArrayList<>(found.keySet()));
+            Assertions.assertEquals(4, loads.get());
+
+            // Inside a unit of work the transaction's own writes have to show, so the cache is skipped.
+            try (UnitOfWork work = UnitOfWork.begin()) {
+                emp.setLastName("Uncommitted");
+                orm.replaceEntity(emp);
+                Assertions.assertEquals("Uncommitted", orm.getEntityById(emp.getId()).getLastName());
+            }
+            Assertions.assertEquals("After", orm.getEntityById(emp.getId()).getLastName());
+
+            orm.deleteEntity(emp.getId());
+            int id = emp.getId();
+            Assertions.assertThrows(SQLException.class, () -> orm.getEntityById(id));
+            Assertions.assertTrue(orm.getStats().getHits() >= 2);
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
 }
@@ -0,0 +1,132 @@
+package dev.simmons.data;
+
+import dev.simmons.entities.Expense;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class OffHeapExpenseStoreTests {
+    @Test
+    void readsThroughAndDecodesStoredExpenses() throws SQLException {
+        Map<Integer, Expense> table = table(10);
+        AtomicInteger loads = new AtomicInteger();
+        OffHeapExpenseStore store = new OffHeapExpenseStore(database(table, loads), 100, 60);
+
+        Assertions.assertEquals(table.get(3), store.getEntityById(3));
+        Assertions.assertEquals(table.get(3), store.getEntityById(3));
+        Assertions.assertEquals(1, loads.get());
+
+        Expense view = new Expense();
+        Assertions.assertTrue(store.readInto(3, view));
+        Assertions.assertEquals(table.get(3), view);
+        Assertions.assertFalse(store.readInto(4, view));
+        Assertions.assertEquals(3, view.getId());
+
+        Map<Integer, Expense> found = store.getEntitiesByIds(new int[]{5, 3, 42, 5});
+        Assertions.assertEquals(Arrays.asList(5, 3), Arrays.asList(found.keySet().toArray()));
+        Assertions.assertEquals(table.get(5), found.get(5));
+        Assertions.assertEquals(2, loads.get());
+        Assertions.assertEquals(2, store.size());
+    }
+
+    @Test
+    void writesDropStoredExpenses() throws SQLException {
+        Map<Integer, Expense> table = table(10);
+        AtomicInteger loads = new AtomicInteger();
+        OffHeapExpenseStore store = new OffHeapExpenseStore(database(table, loads), 100, 60);
+        store.getEntityById(2);
+
+        Expense changed = new Expense(table.get(2));
+        changed.setStatus(Expense.Status.APPROVED);
+        store.replaceEntity(changed);
+        Assertions.assertEquals(Expense.Status.APPROVED, store.getEntityById(2).getStatus());
+        Assertions.assertEquals(2, loads.get());
+
+        store.deleteEntity(2);
+        Assertions.assertEquals(0, store.size());
+        Assertions.assertThrows(SQLException.class, () -> store.getEntityById(2));
+    }
+
+    @Test
+    void staysWithinCapacity() throws SQLException {
+        Map<Integer, Expense> table = table(5000);
+        OffHeapExpenseStore store = new OffHeapExpenseStore(database(table, new AtomicInteger()), 1000, 60);
+        for (int id = 1; id <= 5000; id++) {
+            Assertions.assertEquals(table.get(id), store.getEntityById(id));
+        }
+        Assertions.assertEquals(1000, store.size());
+        Assertions.assertEquals(4000, store.getEvictions());
+
+        // Removing ids shifts the index back; every id left must still be found, and none that were removed.
+        for (int id = 1; id <= 5000; id += 3) {
+            store.deleteEntity(id);
+        }
+        Expense view = new Expense();
+        int stored = 0;
+        for (int id = 1; id <= 5000; id++) {
+            if (store.readInto(id, view)) {
+                Assertions.assertNotEquals(1, id % 3);
+                Assertions.assertEquals(table.get(id), view);
+                stored++;
+            }
+        }
+        Assertions.assertEquals(store.size(), stored);
+    }
+
+    private static Map<Integer, Expense> table(int rows) {
+        Map<Integer, Expense> table = new HashMap<>();
+        for (int id = 1; id <= rows; id++) {
+            Expense expense = new Expense();
+            expense.setId(id);
+            expense.setIssuer(id % 7 + 1);
+            expense.setAmount(id * 100L);
+            expense.setDate(1640995200L + id);
+            expense.setStatus(Expense.Status.values()[id % 3]);
+            table.put(id, expense);
+        }
+        return table;
+    }
+
+    /**
+     * An ORM answering lookups, replaces and deletes from the map, and counting the lookups.
+     */
+    @SuppressWarnings("unchecked")
+    private static DataWrapperORM<Expense> database(Map<Integer, Expense> table, AtomicInteger loads) {
+        return (DataWrapperORM<Expense>) Proxy.newProxyInstance(OffHeapExpenseStoreTests.class.getClassLoader(),
+                new Class<?>[]{DataWrapperORM.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getEntityById":
+                            loads.incrementAndGet();
+                            Expense expense = table.get((Integer) args[0]);
+                            if (expense == null) {
+                                throw new SQLException("No EXPENSE matching (id: " + args[0] + ").", "24000");
+                            }
+                            return new Expense(expense);
+                        case "getEntitiesByIds":
+                            loads.incrementAndGet();
+                            Map<Integer, Expense> found = new LinkedHashMap<>();
+                            for (int id : (int[]) args[0]) {
+                                if (table.containsKey(id)) {
+                                    found.put(id, new Expense(table.get(id)));
+                                }
+                            }
+                            return found;
+                        case "replaceEntity":
+                            Expense replacement = (Expense) args[0];
+                            table.put(replacement.getId(), new Expense(replacement));
+                            return replacement;
+                        case "deleteEntity":
+                            return table.remove((Integer) args[0]) != null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,59 @@
+package dev.simmons.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ResultLayoutTests {
+    @Test
+    void acceptsMatchingColumnsOncePerStatement() {
+        ResultLayout layout = new ResultLayout("employee_id", "first_name", "last_name");
+        AtomicInteger lookups = new AtomicInteger();
+        ResultSet rs = resultSet(lookups, "employee_id", "FIRST_NAME", "last_name");
+        try {
+            layout.verify("select employee_id, first_name, last_name from employee;", rs);
+            layout.verify("select employee_id, first_name, last_name from employee;", rs);
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+        Assertions.assertEquals(1, lookups.get());
+    }
+
+    @Test
+    void rejectsMismatchedColumns() {
+        ResultLayout layout = new ResultLayout("employee_id", "first_name", "last_name");
+        SQLException reordered = Assertions.assertThrows(SQLException.class,
+                () -> layout.verify("reordered", resultSet(new AtomicInteger(), "employee_id", "last_name", "first_name")));
+        Assertions.assertEquals("42P10", reordered.getSQLState());
+        Assertions.assertThrows(SQLException.class,
+                () -> layout.verify("short", resultSet(new AtomicInteger(), "employee_id", "first_name")));
+        Assertions.assertEquals("employee_id, first_name, last_name", layout.selectList());
+    }
+
+    private static ResultSet resultSet(AtomicInteger lookups, String... labels) {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultLayoutTests.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return labels.length;
+                        case "getColumnLabel":
+                            return labels[(Integer) args[0] - 1];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return (ResultSet) Proxy.newProxyInstance(ResultLayoutTests.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getMetaData")) {
+                        lookups.incrementAndGet();
+                        return metaData;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
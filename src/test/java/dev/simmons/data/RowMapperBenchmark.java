@@ -0,0 +1,79 @@
+package dev.simmons.data;
+
+import dev.simmons.entities.Expense;
+import dev.simmons.utilities.connection.PostgresConnection;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ways of turning expense rows into objects: the hand-written mapping in PostgresExpenseDAO,
+ * the ORM's plan-based mapper and the mapper generated at compile time.
+ * Every variant reads the same driver result set, held in memory, so only the mapping itself is measured.
+ * Needs the same database environment as the rest of the tests. Run with: mvn -P benchmark test-compile exec:exec
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+    private static final int rows = 1000;
+
+    private Connection conn;
+    private PreparedStatement statement;
+    private ResultSet rs;
+    private RowMapper<Expense> planMapper;
+    private RowMapper<Expense> generatedMapper;
+
+    @Setup
+    public void setup() throws SQLException {
+        EntityPlan<Expense> plan = EntityPlan.of(Expense.class);
+        planMapper = new PlanMapper<>(plan);
+        generatedMapper = PostgresORM.generatedMapping(Expense.class).mapper();
+
+        conn = PostgresConnection.getConnection();
+        // One real expense repeated, in the ORM's select-list order, which the DAO reads by position too.
+        statement = conn.prepareStatement("select " + plan.selectList() + " from (select * from expense limit 1) e, " +
+                "generate_series(1, ?)", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        statement.setInt(1, rows);
+        rs = statement.executeQuery();
+    }
+
+    @TearDown
+    public void teardown() throws SQLException {
+        rs.close();
+        statement.close();
+        conn.close();
+    }
+
+    @Benchmark
+    public void handWritten(Blackhole bh) throws SQLException {
+        rs.beforeFirst();
+        while (rs.next()) {
+            bh.consume(PostgresExpenseDAO.readExpense(rs));
+        }
+    }
+
+    @Benchmark
+    public void planMapper(Blackhole bh) throws SQLException {
+        rs.beforeFirst();
+        while (rs.next()) {
+            bh.consume(planMapper.map(rs));
+        }
+    }
+
+    @Benchmark
+    public void generatedMapper(Blackhole bh) throws SQLException {
+        rs.beforeFirst();
+        while (rs.next()) {
+            bh.consume(generatedMapper.map(rs));
+        }
+    }
+}
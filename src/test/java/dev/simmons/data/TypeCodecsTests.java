@@ -0,0 +1,101 @@
+package dev.simmons.data;
+
+import dev.simmons.entities.Expense;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+
+class TypeCodecsTests {
+    @Test
+    void resolvesCodecsByType() {
+        Assertions.assertSame(TypeCodecs.INT, TypeCodecs.forType(int.class));
+        Assertions.assertSame(TypeCodecs.BOXED_INT, TypeCodecs.forType(Integer.class));
+        Assertions.assertSame(TypeCodecs.INSTANT, TypeCodecs.forType(Instant.class));
+        Assertions.assertSame(TypeCodecs.forType(Expense.Status.class), TypeCodecs.forType(Expense.Status.class));
+        Assertions.assertEquals(Types.VARCHAR, TypeCodecs.forType(Expense.Status.class).sqlType());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TypeCodecs.forType(Object.class));
+    }
+
+    @Test
+    void readsNullsByPrimitiveness() {
+        ResultSet nulls = nullRow();
+        try {
+            Assertions.assertEquals(0, TypeCodecs.INT.read(nulls, 1));
+            Assertions.assertNull(TypeCodecs.BOXED_INT.read(nulls, 1));
+            Assertions.assertEquals(0L, TypeCodecs.LONG.read(nulls, 1));
+            Assertions.assertNull(TypeCodecs.BOXED_LONG.read(nulls, 1));
+            Assertions.assertNull(TypeCodecs.forType(Expense.Status.class).read(nulls, 1));
+            Assertions.assertNull(TypeCodecs.INSTANT.read(nulls, 1));
+        } catch (SQLException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    void parsesWhatRowToJsonWrites() {
+        Assertions.assertEquals(42, TypeCodecs.INT.parse("42"));
+        Assertions.assertEquals(1646092800L, TypeCodecs.BOXED_LONG.parse("1646092800"));
+        Assertions.assertEquals(2.5f, TypeCodecs.FLOAT.parse("2.5"));
+        Assertions.assertEquals(2.5f, TypeCodecs.BOXED_FLOAT.parse("2.5"));
+        Assertions.assertEquals("Listened", TypeCodecs.STRING.parse("Listened"));
+        Assertions.assertEquals(Expense.Status.APPROVED, TypeCodecs.forType(Expense.Status.class).parse("APPROVED"));
+        Timestamp timestamp = Timestamp.valueOf("2022-03-01 09:30:00.25");
+        Assertions.assertEquals(timestamp, TypeCodecs.TIMESTAMP.parse("2022-03-01T09:30:00.25"));
+        Assertions.assertEquals(timestamp, TypeCodecs.TIMESTAMP.parse(TypeCodecs.TIMESTAMP.format(timestamp)));
+        Assertions.assertEquals(Instant.parse("2022-03-01T09:30:00Z"), TypeCodecs.INSTANT.parse("2022-03-01T09:30:00+00:00"));
+        Assertions.assertEquals(timestamp.toInstant(), TypeCodecs.INSTANT.parse(TypeCodecs.INSTANT.format(timestamp.toInstant())));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TypeCodecs.INSTANT.parse("yesterday"));
+        Assertions.assertThrows(NumberFormatException.class, () -> TypeCodecs.INT.parse("lots"));
+    }
+
+    @Test
+    void registersCustomCodecs() {
+        TypeCodec<StringBuilder> codec = new TypeCodec<StringBuilder>() {
+            @Override
+            public StringBuilder read(ResultSet rs, int index) throws SQLException {
+                String value = rs.getString(index);
+                return value == null ? null : new StringBuilder(value);
+            }
+
+            @Override
+            public void bind(java.sql.PreparedStatement statement, int index, StringBuilder value) throws SQLException {
+                statement.setString(index, value.toString());
+            }
+
+            @Override
+            public int sqlType() {
+                return Types.VARCHAR;
+            }
+        };
+        TypeCodecs.register(StringBuilder.class, codec);
+        Assertions.assertSame(codec, TypeCodecs.forType(StringBuilder.class));
+    }
+
+    // A row where every column is SQL NULL.
+    private static ResultSet nullRow() {
+        return (ResultSet) Proxy.newProxyInstance(TypeCodecsTests.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getInt":
+                            return 0;
+                        case "getLong":
+                            return 0L;
+                        case "getFloat":
+                            return 0f;
+                        case "getString":
+                        case "getTimestamp":
+                            return null;
+                        case "wasNull":
+                            return true;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
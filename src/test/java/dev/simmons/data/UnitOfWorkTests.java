@@ -0,0 +1,146 @@
+package dev.simmons.data;
+
+import dev.simmons.entities.Employee;
+import dev.simmons.entities.Expense;
+import dev.simmons.utilities.connection.PostgresConnection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+class UnitOfWorkTests {
+    private final PostgresORM<Employee> employees = new PostgresORM<>(Employee.class);
+    private final PostgresORM<Expense> expenses = new PostgresORM<>(Expense.class);
+
+    private static Employee employee(String name) {
+        Employee emp = new Employee();
+        emp.setFirstName(name);
+        emp.setLastName("UnitOfWork");
+        return emp;
+    }
+
+    @Test
+    void rollsBackUnlessCommitted() throws SQLException {
+        int id;
+        try (UnitOfWork work = UnitOfWork.begin()) {
+            Assertions.assertTrue(UnitOfWork.isActive());
+            id = employees.createEntity(employee("RolledBack")).getId();
+            Assertions.assertEquals("RolledBack", employees.getEntityById(id).getFirstName());
+        }
+        Assertions.assertFalse(UnitOfWork.isActive());
+        Assertions.assertTrue(employees.getEntitiesByIds(new int[]{id}).isEmpty());
+    }
+
+    @Test
+    void commitsEverythingTogether() throws SQLException {
+        int employeeId;
+        try (UnitOfWork work = UnitOfWork.begin()) {
+            employeeId = employees.createEntity(employee("Committed")).getId();
+            Expense exp = new Expense();
+            exp.setAmount(10);
+            exp.setIssuer(employeeId);
+            exp.setStatus(Expense.Status.PENDING);
+            expenses.createEntities(Arrays.asList(exp, new Expense(exp)));
+            work.commit();
+        }
+        Assertions.assertEquals(2, expenses.findBy("issuer", employeeId).size());
+
+        Assertions.assertEquals(2, expenses.deleteWhere(Criteria.where("issuer", employeeId)));
+        Assertions.assertFalse(expenses.exists(Criteria.where("issuer", employeeId)));
+        Assertions.assertTrue(employees.deleteEntity(employeeId));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> expenses.deleteWhere(Criteria.all()));
+    }
+
+    @Test
+    void sharesOneConnection() throws SQLException {
+        int active = PostgresConnection.getPool().getActiveCount();
+        try (UnitOfWork work = UnitOfWork.begin()) {
+            Connection first = UnitOfWork.getConnection();
+            first.close();
+            Assertions.assertSame(first, UnitOfWork.getConnection());
+            Assertions.assertFalse(first.isClosed());
+            Assertions.assertEquals(active + 1, PostgresConnection.getPool().getActiveCount());
+            try (UnitOfWork nested = UnitOfWork.begin()) {
+                Assertions.assertTrue(nested.isNested());
+                Assertions.assertSame(first, UnitOfWork.getConnection());
+            }
+            Assertions.assertEquals(active + 1, PostgresConnection.getPool().getActiveCount());
+        }
+        Assertions.assertEquals(active, PostgresConnection.getPool().getActiveCount());
+    }
+
+    @Test
+    void nestedUnitsRollBackOnlyTheirOwnWork() throws SQLException {
+        int kept;
+        int undone;
+        int committedInside;
+        try (UnitOfWork work = UnitOfWork.begin()) {
+            kept = employees.createEntity(employee("Kept")).getId();
+            try (UnitOfWork nested = UnitOfWork.begin()) {
+                undone = employees.createEntity(employee("Undone")).getId();
+            }
+            try (UnitOfWork nested = UnitOfWork.begin()) {
+                committedInside = employees.createEntity(employee("Nested")).getId();
+                nested.commit();
+            }
+            work.commit();
+        }
+
+        Map<Integer, Employee> found = employees.getEntitiesByIds(new int[]{kept, undone, committedInside});
+        Assertions.assertEquals(Arrays.asList(kept, committedInside), new ArrayList<>(found.keySet()));
+        employees.deleteEntity(kept);
+        employees.deleteEntity(committedInside);
+    }
+
+    @Test
+    void savepointsUndoPartOfAUnit() throws SQLException {
+        try (UnitOfWork work = UnitOfWork.begin()) {
+            int id = employees.createEntity(employee("Saved")).getId();
+            java.sql.Savepoint point = work.savepoint();
+            employees.deleteEntity(id);
+            Assertions.assertFalse(employees.exists(Criteria.where("id", id)));
+            work.rollbackTo(point);
+            Assertions.assertTrue(employees.exists(Criteria.where("id", id)));
+        }
+    }
+
+    @Test
+    void templateCommitsOrRollsBack() throws SQLException {
+        TransactionTemplate template = new TransactionTemplate();
+        int id = template.execute(() -> employees.createEntity(employee("Template")).getId());
+        Assertions.assertTrue(employees.exists(Criteria.where("id", id)));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> template.execute(() -> {
+            employees.deleteEntity(id);
+            throw new IllegalStateException("abandon");
+        }));
+        Assertions.assertTrue(employees.exists(Criteria.where("id", id)));
+
+        // A failing statement inside a nested template is rolled back to its savepoint; the outer work carries on.
+        int other = template.execute(() -> {
+            Assertions.assertThrows(SQLException.class, () -> template.execute(() -> {
+                Expense orphan = new Expense();
+                orphan.setAmount(1);
+                orphan.setIssuer(Integer.MAX_VALUE);
+                orphan.setStatus(Expense.Status.PENDING);
+                return expenses.createEntity(orphan);
+            }));
+            return employees.createEntity(employee("AfterFailure")).getId();
+        });
+        Assertions.assertTrue(employees.exists(Criteria.where("id", other)));
+
+        Assertions.assertEquals(Boolean.TRUE, template.withIsolation(Connection.TRANSACTION_SERIALIZABLE).readOnly()
+                .execute(() -> employees.exists(Criteria.where("id", id))));
+        try (Connection conn = UnitOfWork.getConnection()) {
+            Assertions.assertFalse(conn.isReadOnly());
+            Assertions.assertEquals(Connection.TRANSACTION_READ_COMMITTED, conn.getTransactionIsolation());
+        }
+
+        employees.deleteEntity(id);
+        employees.deleteEntity(other);
+    }
+}
@@ -1,5 +1,7 @@
 package dev.simmons.service;
 
+import dev.simmons.data.BulkLoadReport;
+import dev.simmons.data.CompareAndSetResult;
 import dev.simmons.data.PostgresORM;
 import dev.simmons.entities.Employee;
 import dev.simmons.entities.Expense;
@@ -9,7 +11,9 @@ import org.junit.jupiter.api.*;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.stream.Collectors;
 
@@ -229,4 +233,241 @@ class TestORMServiceClass {
                 "Issue with InvalidExpenseException test: " +
                         "expense with no issuer allowed to overwrite existing expense.");
     }
+
+    @Test
+    void createExpensesInBatch() {
+        List<Expense> batch = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Expense exp = new Expense();
+            exp.setDate(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC));
+            exp.setAmount(1000 + i);
+            exp.setIssuer(employees.get(i).getId());
+            batch.add(exp);
+        }
+
+        List<Expense> received = service.createExpenses(batch);
+        Assertions.assertNotNull(received);
+        expenses.addAll(received);
+        for (Expense exp : received) {
+            Assertions.assertEquals(exp, service.getExpenseById(exp.getId()));
+        }
+    }
+
+    @Test
+    void createExpensesWithMissingIssuerThrows() {
+        Expense valid = new Expense();
+        valid.setAmount(10);
+        valid.setIssuer(employees.get(0).getId());
+        Expense orphan = new Expense();
+        orphan.setAmount(10);
+        orphan.setIssuer(Integer.MAX_VALUE);
+
+        int before = service.getAllExpenses().size();
+        List<Expense> batch = new ArrayList<>();
+        batch.add(valid);
+        batch.add(orphan);
+        Assertions.assertThrows(NoSuchEmployeeException.class, () -> service.createExpenses(batch));
+        Assertions.assertEquals(before, service.getAllExpenses().size());
+    }
+
+    @Test
+    void bulkLoadRejectsInvalidRows() {
+        long amount = 900_000_000L + rand.nextInt(1_000_000);
+        Expense valid = new Expense();
+        valid.setAmount(amount);
+        valid.setIssuer(employees.get(0).getId());
+        Expense orphan = new Expense();
+        orphan.setAmount(amount);
+        orphan.setIssuer(Integer.MAX_VALUE);
+        Expense negative = new Expense();
+        negative.setAmount(-1);
+        negative.setIssuer(employees.get(0).getId());
+
+        List<Expense> rows = new ArrayList<>();
+        rows.add(valid);
+        rows.add(orphan);
+        rows.add(negative);
+        BulkLoadReport report = ((ORMExpensesService) service).bulkLoadExpenses(rows.iterator());
+        Assertions.assertNotNull(report);
+        Assertions.assertEquals(1, report.getLoaded());
+        Assertions.assertEquals(2, report.getRejected());
+
+        List<Expense> loaded = service.getAllExpenses().stream().filter(e -> e.getAmount() == amount).collect(Collectors.toList());
+        Assertions.assertEquals(1, loaded.size());
+        expenses.addAll(loaded);
+    }
+
+    @Test
+    void getExpensesByIdsLeavesOutMissingIds() {
+        Map<Integer, Expense> found = service.getExpensesByIds(new int[]{approvedId, Integer.MAX_VALUE, deniedId});
+        Assertions.assertNotNull(found);
+        Assertions.assertEquals(2, found.size());
+        Assertions.assertEquals(Expense.Status.APPROVED, found.get(approvedId).getStatus());
+        Assertions.assertEquals(Expense.Status.DENIED, found.get(deniedId).getStatus());
+        Assertions.assertFalse(found.containsKey(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void transitionStatusOnlyMovesPendingExpenses() {
+        Expense pending = new Expense();
+        pending.setAmount(25);
+        pending.setIssuer(employeeId);
+        pending.setStatus(Expense.Status.PENDING);
+        pending = service.createExpense(pending);
+        Assertions.assertNotNull(pending);
+
+        Expense approved = service.transitionStatus(pending.getId(), Expense.Status.PENDING, Expense.Status.APPROVED);
+        Assertions.assertEquals(Expense.Status.APPROVED, approved.getStatus());
+
+        int id = pending.getId();
+        Assertions.assertThrows(ExpenseNotPendingException.class, () -> service.transitionStatus(id, Expense.Status.PENDING, Expense.Status.DENIED));
+        Assertions.assertThrows(NoSuchExpenseException.class, () -> service.transitionStatus(Integer.MAX_VALUE, Expense.Status.PENDING, Expense.Status.DENIED));
+        Assertions.assertEquals(Expense.Status.APPROVED, service.getExpenseById(id).getStatus());
+    }
+
+    @Test
+    void transitionStatusesReportsEachId() {
+        Expense pending = new Expense();
+        pending.setAmount(30);
+        pending.setIssuer(employeeId);
+        pending.setStatus(Expense.Status.PENDING);
+        pending = service.createExpense(pending);
+
+        Map<Integer, CompareAndSetResult.Outcome> outcomes = service.transitionStatuses(
+                new int[]{pending.getId(), approvedId, Integer.MAX_VALUE}, Expense.Status.PENDING, Expense.Status.APPROVED);
+        Assertions.assertEquals(CompareAndSetResult.Outcome.UPDATED, outcomes.get(pending.getId()));
+        Assertions.assertEquals(CompareAndSetResult.Outcome.MISMATCH, outcomes.get(approvedId));
+        Assertions.assertEquals(CompareAndSetResult.Outcome.NOT_FOUND, outcomes.get(Integer.MAX_VALUE));
+
+        Assertions.assertThrows(InvalidExpenseException.class,
+                () -> service.transitionStatusesWhere(null, null, null, Expense.Status.PENDING, Expense.Status.APPROVED));
+    }
+
+    @Test
+    void deleteEmployeeRemovesExpensesTogether() {
+        Employee emp = new Employee();
+        emp.setFirstName("Cascade");
+        emp.setLastName("Delete");
+        emp = service.createEmployee(emp);
+        for (int i = 0; i < 3; i++) {
+            Expense exp = new Expense();
+            exp.setAmount(40 + i);
+            exp.setIssuer(emp.getId());
+            exp.setStatus(Expense.Status.PENDING);
+            Assertions.assertNotNull(service.createExpense(exp));
+        }
+
+        Assertions.assertTrue(service.deleteEmployee(emp.getId()));
+        Assertions.assertTrue(service.getExpensesByEmployee(emp.getId()).isEmpty());
+        int id = emp.getId();
+        Assertions.assertThrows(NoSuchEmployeeException.class, () -> service.getEmployeeById(id));
+    }
+
+    @Test
+    void deleteEmployeeWithDecidedExpenseChangesNothing() {
+        Employee emp = new Employee();
+        emp.setFirstName("Cascade");
+        emp.setLastName("Refused");
+        emp = service.createEmployee(emp);
+        Expense pending = new Expense();
+        pending.setAmount(50);
+        pending.setIssuer(emp.getId());
+        pending.setStatus(Expense.Status.PENDING);
+        Expense decided = new Expense(pending);
+        pending = service.createExpense(pending);
+        decided = service.createExpense(decided);
+        service.transitionStatus(decided.getId(), Expense.Status.PENDING, Expense.Status.DENIED);
+
+        int id = emp.getId();
+        Assertions.assertThrows(EmployeeExpenseNotPendingException.class, () -> service.deleteEmployee(id));
+        Assertions.assertEquals(pending, service.getExpenseById(pending.getId()));
+        Assertions.assertEquals(emp, service.getEmployeeById(id));
+    }
+
+    @Test
+    void upsertCreatesOrReplaces() {
+        Expense exp = new Expense();
+        exp.setAmount(60);
+        exp.setIssuer(employees.get(0).getId());
+        exp.setStatus(Expense.Status.PENDING);
+        exp = service.upsertExpense(exp);
+        Assertions.assertNotEquals(0, exp.getId());
+        expenses.add(exp);
+
+        exp.setAmount(65);
+        Assertions.assertEquals(exp, service.upsertExpense(exp));
+        Assertions.assertEquals(65, service.getExpenseById(exp.getId()).getAmount());
+
+        Expense decided = new Expense(service.getExpenseById(approvedId));
+        Assertions.assertThrows(ExpenseNotPendingException.class, () -> service.upsertExpense(decided));
+
+        Employee renamed = new Employee(employees.get(1));
+        renamed.setLastName("Upserted");
+        Employee added = new Employee();
+        added.setFirstName("Upserted");
+        added.setLastName("Employee");
+        List<Employee> saved = service.upsertEmployees(Arrays.asList(renamed, added));
+        Assertions.assertEquals(renamed, service.getEmployeeById(renamed.getId()));
+        Assertions.assertNotEquals(0, saved.get(1).getId());
+        employees.set(1, renamed);
+        employees.add(saved.get(1));
+    }
+
+    @Test
+    void cachedListsFollowWrites() {
+        int issuer = employees.get(2).getId();
+        List<Expense> before = service.getExpensesByEmployee(issuer);
+        Assertions.assertEquals(before, service.getExpensesByEmployee(issuer));
+        List<Expense> pending = service.getExpensesByStatus(Expense.Status.PENDING);
+
+        Expense exp = new Expense();
+        exp.setAmount(70);
+        exp.setIssuer(issuer);
+        exp.setStatus(Expense.Status.PENDING);
+        exp = service.createExpense(exp);
+        Assertions.assertEquals(before.size() + 1, service.getExpensesByEmployee(issuer).size());
+        Assertions.assertEquals(pending.size() + 1, service.getExpensesByStatus(Expense.Status.PENDING).size());
+
+        // Moving the expense to another issuer takes it out of the old issuer's list too.
+        int otherIssuer = employees.get(3).getId();
+        int otherCount = service.getExpensesByEmployee(otherIssuer).size();
+        exp.setIssuer(otherIssuer);
+        service.replaceExpense(exp);
+        Assertions.assertEquals(before.size(), service.getExpensesByEmployee(issuer).size());
+        Assertions.assertEquals(otherCount + 1, service.getExpensesByEmployee(otherIssuer).size());
+
+        // The service doesn't read the expense before reassigning it, yet the list it leaves still drops it.
+        Assertions.assertTrue(service.assignExpense(exp.getId(), issuer));
+        Assertions.assertEquals(otherCount, service.getExpensesByEmployee(otherIssuer).size());
+        Assertions.assertEquals(before.size() + 1, service.getExpensesByEmployee(issuer).size());
+
+        Assertions.assertTrue(service.deleteExpense(exp.getId()));
+        Assertions.assertEquals(pending.size(), service.getExpensesByStatus(Expense.Status.PENDING).size());
+        Assertions.assertEquals(before.size(), service.getExpensesByEmployee(issuer).size());
+        Assertions.assertTrue(((ORMExpensesService) service).getResultCache().getHitRatio() > 0);
+    }
+
+    @Test
+    void assignChangesOnlyTheIssuer() {
+        Expense exp = new Expense();
+        exp.setDate(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC));
+        exp.setAmount(70);
+        exp.setIssuer(employees.get(0).getId());
+        exp.setStatus(Expense.Status.PENDING);
+        exp = service.createExpense(exp);
+        expenses.add(exp);
+
+        Assertions.assertTrue(service.assignExpense(exp.getId(), employees.get(1).getId()));
+        Expense assigned = service.getExpenseById(exp.getId());
+        expenses.set(expenses.size() - 1, assigned);
+        Assertions.assertEquals(employees.get(1).getId(), assigned.getIssuer());
+        Assertions.assertEquals(exp.getAmount(), assigned.getAmount());
+        Assertions.assertEquals(exp.getDate(), assigned.getDate());
+        Assertions.assertEquals(Expense.Status.PENDING, assigned.getStatus());
+
+        int id = exp.getId();
+        Assertions.assertThrows(NoSuchExpenseException.class, () -> service.assignExpense(Integer.MAX_VALUE, employees.get(1).getId()));
+        Assertions.assertThrows(NoSuchEmployeeException.class, () -> service.assignExpense(id, Integer.MAX_VALUE));
+        Assertions.assertThrows(ExpenseNotPendingException.class, () -> service.assignExpense(approvedId, employees.get(1).getId()));
+    }
 }
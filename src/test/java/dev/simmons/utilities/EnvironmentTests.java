@@ -0,0 +1,21 @@
+package dev.simmons.utilities;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class EnvironmentTests {
+    @Test
+    void readsSettingsAtOrAboveTheMinimum() {
+        Assertions.assertEquals(250, Environment.parseInt("SIZE", "250", 500, 1));
+        Assertions.assertEquals(0, Environment.parseInt("SIZE", "0", 64, 0));
+        Assertions.assertEquals(500, Environment.parseInt("SIZE", null, 500, 1));
+        Assertions.assertEquals(500, Environment.parseInt("SIZE", "", 500, 1));
+    }
+
+    @Test
+    void ignoresBadSettings() {
+        Assertions.assertEquals(500, Environment.parseInt("SIZE", "0", 500, 1));
+        Assertions.assertEquals(1000, Environment.parseInt("SIZE", "-1", 1000, 1));
+        Assertions.assertEquals(500, Environment.parseInt("SIZE", "lots", 500, 1));
+    }
+}
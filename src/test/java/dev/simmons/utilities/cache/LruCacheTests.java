@@ -0,0 +1,81 @@
+package dev.simmons.utilities.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class LruCacheTests {
+    @Test
+    void evictsLeastRecentlyUsed() {
+        LruCache<Integer, String> cache = new LruCache<>(2, 1000, 1, System::nanoTime);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        Assertions.assertEquals("one", cache.get(1));
+        cache.put(3, "three");
+
+        Assertions.assertNull(cache.get(2));
+        Assertions.assertEquals("one", cache.get(1));
+        Assertions.assertEquals("three", cache.get(3));
+        LruCache.Stats stats = cache.getStats();
+        Assertions.assertEquals(3, stats.getHits());
+        Assertions.assertEquals(1, stats.getMisses());
+        Assertions.assertEquals(1, stats.getEvictions());
+        Assertions.assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    void expiresEntries() {
+        AtomicLong now = new AtomicLong();
+        LruCache<Integer, String> cache = new LruCache<>(10, 100, 2, now::get);
+        cache.put(1, "one");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(99));
+        Assertions.assertEquals("one", cache.get(1));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        Assertions.assertNull(cache.get(1));
+        Assertions.assertEquals(1, cache.getStats().getExpirations());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidationRejectsStaleLoads() {
+        LruCache<Integer, String> cache = new LruCache<>(10, 1000);
+        long stamp = cache.stamp(1);
+        cache.invalidate(1);
+        Assertions.assertFalse(cache.put(1, "old", stamp));
+        Assertions.assertNull(cache.get(1));
+
+        Assertions.assertTrue(cache.put(1, "new", cache.stamp(1)));
+        Assertions.assertEquals("new", cache.get(1));
+        cache.invalidateAll();
+        Assertions.assertNull(cache.get(1));
+    }
+
+    @Test
+    void staysBoundedUnderConcurrentUse() throws InterruptedException {
+        LruCache<Integer, Integer> cache = new LruCache<>(64, 1000);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t * 1000;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    cache.put(offset + i, i);
+                    cache.get(offset + i / 2);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertTrue(cache.size() <= 64);
+        Assertions.assertEquals(8000, cache.getStats().getHits() + cache.getStats().getMisses());
+    }
+
+    @Test
+    void rejectsNonPositiveSettings() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LruCache<Integer, String>(0, 1000));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LruCache<Integer, String>(10, 0));
+    }
+}
@@ -0,0 +1,47 @@
+package dev.simmons.utilities.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class QueryResultCacheTests {
+    @Test
+    void invalidatesOnlyResultsOfChangedTags() {
+        QueryResultCache cache = new QueryResultCache(100);
+        cache.put("issuer 1", "first", 1, cache.stamp("issuer:1"));
+        cache.put("issuer 2", "second", 1, cache.stamp("issuer:2"));
+
+        cache.invalidate("issuer:1");
+        Assertions.assertNull(cache.get("issuer 1"));
+        Assertions.assertEquals("second", cache.get("issuer 2"));
+        Assertions.assertEquals(1, cache.getStale());
+        Assertions.assertEquals(0.5, cache.getHitRatio());
+
+        cache.invalidateAll();
+        Assertions.assertNull(cache.get("issuer 2"));
+    }
+
+    @Test
+    void dropsResultsReadBeforeAWrite() {
+        QueryResultCache cache = new QueryResultCache(100);
+        QueryResultCache.Stamp stamp = cache.stamp("status:PENDING");
+        cache.invalidate("status:PENDING");
+        cache.put("pending", "old", 1, stamp);
+        Assertions.assertNull(cache.get("pending"));
+    }
+
+    @Test
+    void staysWithinBudget() {
+        QueryResultCache cache = new QueryResultCache(10);
+        cache.put("a", "a", 4, cache.stamp("t"));
+        cache.put("b", "b", 4, cache.stamp("t"));
+        Assertions.assertEquals("a", cache.get("a"));
+        cache.put("c", "c", 4, cache.stamp("t"));
+        cache.put("huge", "huge", 11, cache.stamp("t"));
+
+        Assertions.assertNull(cache.get("b"));
+        Assertions.assertNull(cache.get("huge"));
+        Assertions.assertEquals("a", cache.get("a"));
+        Assertions.assertEquals(1, cache.getEvictions());
+        Assertions.assertEquals(8, cache.getWeight());
+    }
+}
@@ -0,0 +1,90 @@
+package dev.simmons.utilities.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SingleFlightTests {
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<Integer> leader = pool.submit(() -> flight.execute("pending", () -> {
+                loading.countDown();
+                await(release);
+                return runs.incrementAndGet();
+            }));
+            Assertions.assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            List<Future<Integer>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(pool.submit(() -> flight.execute("pending", runs::incrementAndGet)));
+            }
+            while (flight.getCollapsed() < 7) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            Assertions.assertEquals(1, leader.get(5, TimeUnit.SECONDS));
+            for (Future<Integer> follower : followers) {
+                Assertions.assertEquals(1, follower.get(5, TimeUnit.SECONDS));
+            }
+            Assertions.assertEquals(1, flight.getLoads());
+            Assertions.assertEquals(0, flight.getInFlight());
+
+            // Once the load is done, the next call runs again.
+            Assertions.assertEquals(2, flight.execute("pending", runs::incrementAndGet));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failuresReachEveryCallerAndAreNotKept() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> leader = pool.submit(() -> flight.execute("missing", () -> {
+                loading.countDown();
+                await(release);
+                throw new IllegalStateException("no such row");
+            }));
+            Assertions.assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<Integer> follower = pool.submit(() -> flight.execute("missing", () -> 0));
+            while (flight.getCollapsed() < 1) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            Exception led = Assertions.assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+            Exception followed = Assertions.assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(led.getCause() instanceof IllegalStateException);
+            Assertions.assertTrue(followed.getCause() instanceof IllegalStateException);
+            Assertions.assertEquals(3, flight.execute("missing", () -> 3));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
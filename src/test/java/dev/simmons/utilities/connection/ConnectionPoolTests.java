@@ -0,0 +1,223 @@
+package dev.simmons.utilities.connection;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ConnectionPoolTests {
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger physicallyClosed = new AtomicInteger();
+    private final AtomicInteger prepared = new AtomicInteger();
+    private final AtomicInteger statementsClosed = new AtomicInteger();
+    private final List<int[]> isolations = Collections.synchronizedList(new ArrayList<>());
+
+    // A stand-in for a real connection: tracks whether it was closed and hands out fake statements.
+    private Connection fakeConnection() {
+        opened.incrementAndGet();
+        boolean[] isClosed = {false};
+        int[] isolation = {Connection.TRANSACTION_READ_COMMITTED};
+        isolations.add(isolation);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!isClosed[0]) {
+                                isClosed[0] = true;
+                                physicallyClosed.incrementAndGet();
+                            }
+                            return null;
+                        case "isClosed":
+                            return isClosed[0];
+                        case "isValid":
+                        case "getAutoCommit":
+                            return true;
+                        case "getTransactionIsolation":
+                            return isolation[0];
+                        case "setTransactionIsolation":
+                            isolation[0] = (Integer) args[0];
+                            return null;
+                        case "isReadOnly":
+                            return false;
+                        case "prepareStatement":
+                            return fakeStatement();
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private PreparedStatement fakeStatement() {
+        prepared.incrementAndGet();
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            statementsClosed.incrementAndGet();
+                            return null;
+                        case "isClosed":
+                            return false;
+                        case "executeQuery":
+                            throw new SQLException("An I/O error occurred while sending to the backend.", "08006");
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    @Test
+    void reusesReturnedConnections() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::fakeConnection, 0, 2, 60_000, 100)) {
+            Connection first = pool.borrow();
+            first.close();
+            Connection second = pool.borrow();
+            second.close();
+
+            Assertions.assertEquals(1, opened.get());
+            Assertions.assertEquals(0, physicallyClosed.get());
+            Assertions.assertEquals(1, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    void borrowTimesOutWhenExhausted() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::fakeConnection, 0, 1, 60_000, 50)) {
+            Connection held = pool.borrow();
+            Assertions.assertThrows(SQLException.class, pool::borrow);
+            held.close();
+            pool.borrow().close();
+            Assertions.assertEquals(1, opened.get());
+        }
+    }
+
+    @Test
+    void fillsToMinimumAndClosesOnShutdown() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(this::fakeConnection, 3, 5, 60_000, 100);
+        Assertions.assertEquals(3, pool.getTotalCount());
+        Assertions.assertEquals(3, pool.getIdleCount());
+
+        Connection borrowed = pool.borrow();
+        Assertions.assertEquals(1, pool.getActiveCount());
+        pool.close();
+        borrowed.close();
+
+        Assertions.assertEquals(3, physicallyClosed.get());
+        Assertions.assertEquals(0, pool.getTotalCount());
+    }
+
+    @Test
+    void closedLeaseCannotBeReused() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::fakeConnection, 0, 1, 60_000, 100)) {
+            Connection conn = pool.borrow();
+            conn.close();
+            conn.close();
+            Assertions.assertTrue(conn.isClosed());
+            Assertions.assertThrows(SQLException.class, () -> conn.prepareStatement("select 1"));
+            Assertions.assertEquals(1, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    void cachesStatementsAcrossBorrows() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::fakeConnection, 0, 1, 60_000, 100, 2)) {
+            for (int i = 0; i < 3; i++) {
+                try (Connection conn = pool.borrow();
+                     PreparedStatement statement = conn.prepareStatement("select 1")) {
+                    Assertions.assertSame(conn, statement.getConnection());
+                }
+            }
+            Assertions.assertEquals(1, prepared.get());
+            Assertions.assertEquals(0, statementsClosed.get());
+
+            try (Connection conn = pool.borrow()) {
+                PreparedStatement held = conn.prepareStatement("select 1");
+                // Still checked out, so the same SQL gets a statement of its own.
+                conn.prepareStatement("select 1");
+                Assertions.assertEquals(2, prepared.get());
+                held.close();
+
+                conn.prepareStatement("select 2").close();
+                conn.prepareStatement("select 3").close();
+            }
+            // Capacity 2 pushes "select 1" out, and the unclosed uncached statement is closed with the connection.
+            Assertions.assertEquals(2, statementsClosed.get());
+        }
+    }
+
+    @Test
+    void statementConnectionErrorsDiscardTheConnection() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::fakeConnection, 0, 1, 60_000, 100, 2)) {
+            try (Connection conn = pool.borrow();
+                 PreparedStatement statement = conn.prepareStatement("select 1")) {
+                Assertions.assertThrows(SQLException.class, statement::executeQuery);
+            }
+            Assertions.assertEquals(0, pool.getIdleCount());
+            Assertions.assertEquals(1, physicallyClosed.get());
+
+            pool.borrow().close();
+            Assertions.assertEquals(2, opened.get());
+        }
+    }
+
+    @Test
+    void returnedConnectionsGetTheirSettingsBack() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::fakeConnection, 0, 1, 60_000, 100)) {
+            try (Connection conn = pool.borrow()) {
+                conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            }
+            Assertions.assertEquals(Connection.TRANSACTION_READ_COMMITTED, isolations.get(0)[0]);
+        }
+    }
+
+    @Test
+    void failedOpensGiveTheirSlotBack() throws SQLException {
+        AtomicInteger attempts = new AtomicInteger();
+        ConnectionPool.ConnectionFactory flaky = () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new SQLException("Connection refused.", "08001");
+            }
+            return fakeConnection();
+        };
+        try (ConnectionPool pool = new ConnectionPool(flaky, 0, 1, 60_000, 100)) {
+            Assertions.assertThrows(SQLException.class, pool::borrow);
+            Assertions.assertEquals(0, pool.getTotalCount());
+            pool.borrow().close();
+            Assertions.assertEquals(1, pool.getTotalCount());
+        }
+    }
+
+    @Test
+    void neverOpensMoreThanTheMaximum() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(this::fakeConnection, 1, 3, 60_000, 5_000)) {
+            Thread[] threads = new Thread[8];
+            List<Throwable> failures = new ArrayList<>();
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            pool.borrow().close();
+                            Assertions.assertTrue(opened.get() - physicallyClosed.get() <= 3);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assertions.assertEquals(new ArrayList<Throwable>(), failures);
+            Assertions.assertTrue(pool.getTotalCount() <= 3);
+        }
+    }
+}